@@ -1,23 +1,33 @@
 package com.edduarte.similarity;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
+import com.edduarte.similarity.converter.TokenShingler;
+import com.edduarte.similarity.execution.ExecutionStrategy;
 import com.edduarte.similarity.hash.HashProvider.HashMethod;
 import com.edduarte.similarity.internal.JaccardSetSimilarity;
 import com.edduarte.similarity.internal.JaccardStringSimilarity;
 import com.edduarte.similarity.internal.LSHSetSimilarity;
 import com.edduarte.similarity.internal.LSHStringSimilarity;
+import com.edduarte.similarity.internal.LSHTokenSimilarity;
+import com.edduarte.similarity.internal.MinHashBufferSimilarity;
 import com.edduarte.similarity.internal.MinHashSetSimilarity;
 import com.edduarte.similarity.internal.MinHashStringSimilarity;
+import com.edduarte.similarity.internal.MinHashTokenSimilarity;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
 
 /**
  * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
@@ -29,6 +39,17 @@ public interface Similarity<T> {
     double calculate(T t1, T t2);
 
 
+    /**
+     * Calculates the similarity coefficient without blocking the calling
+     * thread. The default implementation runs {@link #calculate} on the common
+     * fork-join pool, while the engines in this library chain their processing
+     * stages so that no thread is parked waiting for another.
+     */
+    default CompletableFuture<Double> calculateAsync(T t1, T t2) {
+        return CompletableFuture.supplyAsync(() -> calculate(t1, t2));
+    }
+
+
     static JaccardFactory jaccard() {
         return new JaccardFactory();
     }
@@ -99,6 +120,44 @@ public interface Similarity<T> {
     }
 
 
+    /**
+     * Calculates the Jaccard index of two sets of shingle hashes, such as
+     * those generated by {@link com.edduarte.similarity.converter.TokenShingler}.
+     * Repeated hashes are counted once.
+     */
+    static double jaccardIndex(final long[] shingles1, final long[] shingles2) {
+        final long[] sorted1 = shingles1.clone();
+        final long[] sorted2 = shingles2.clone();
+        Arrays.sort(sorted1);
+        Arrays.sort(sorted2);
+
+        int intersection = 0;
+        int union = 0;
+        int i = 0;
+        int j = 0;
+        while (i < sorted1.length || j < sorted2.length) {
+            final long value;
+            if (j == sorted2.length || i < sorted1.length && sorted1[i] < sorted2[j]) {
+                value = sorted1[i];
+            } else if (i == sorted1.length || sorted2[j] < sorted1[i]) {
+                value = sorted2[j];
+            } else {
+                value = sorted1[i];
+                intersection++;
+            }
+            union++;
+            while (i < sorted1.length && sorted1[i] == value) {
+                i++;
+            }
+            while (j < sorted2.length && sorted2[j] == value) {
+                j++;
+            }
+        }
+
+        return jaccardIndex(intersection, union);
+    }
+
+
     static double signatureIndex(final int[] signature1, final int[] signature2) {
         double similarity = 0;
         final int signatureSize = signature1.length;
@@ -122,17 +181,6 @@ public interface Similarity<T> {
     }
 
 
-    static void closeExecutor(final ExecutorService exec) {
-        exec.shutdown();
-        try {
-            exec.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-        } catch (final InterruptedException ex) {
-            final String m = "There was a problem executing the processing tasks.";
-            throw new RuntimeException(m, ex);
-        }
-    }
-
-
     final class JaccardFactory {
 
         // sensible defaults for common small strings (smaller than an email)
@@ -141,6 +189,10 @@ public interface Similarity<T> {
 
         private ExecutorService exec;
 
+        private ExecutionStrategy strategy;
+
+        private SimilarityMetrics metrics = SimilarityMetrics.NOOP;
+
 
         /**
          * Length of n-gram shingles that are used for comparison (used for
@@ -154,7 +206,8 @@ public interface Similarity<T> {
 
         /**
          * An executor where the kshingling tasks are spawned. If nothing is
-         * provided then it launches a new executor with the cached thread pool.
+         * provided then the tasks are run according to
+         * {@link ExecutionStrategy#defaults()}.
          */
         public JaccardFactory withExecutor(final ExecutorService executor) {
             this.exec = executor;
@@ -162,19 +215,48 @@ public interface Similarity<T> {
         }
 
 
-        public synchronized double of(final String s1, final String s2) {
-            ExecutorService e = this.exec;
-            boolean usingDefaultExec = false;
-            if (e == null || e.isShutdown()) {
-                e = Executors.newCachedThreadPool();
-                usingDefaultExec = true;
+        /**
+         * A strategy that decides where the kshingling tasks are run, taking
+         * precedence over {@link #withExecutor}. If neither is provided then
+         * {@link ExecutionStrategy#defaults()} is used.
+         */
+        public JaccardFactory withExecutionStrategy(final ExecutionStrategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+
+        /**
+         * A listener that is notified of the time spent and the work done in
+         * each processing stage (used for strings only). If nothing is
+         * provided then no metrics are collected.
+         */
+        public JaccardFactory withMetrics(final SimilarityMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+
+        private ExecutionStrategy strategy() {
+            if (this.strategy != null) {
+                return this.strategy;
             }
-            final JaccardStringSimilarity j = new JaccardStringSimilarity(e, this.k);
-            final double index = j.calculate(s1, s2);
-            if (usingDefaultExec) {
-                closeExecutor(e);
+            if (this.exec != null && !this.exec.isShutdown()) {
+                return ExecutionStrategy.of(this.exec);
             }
-            return index;
+            return ExecutionStrategy.defaults();
+        }
+
+
+        public synchronized double of(final String s1, final String s2) {
+            final JaccardStringSimilarity j = new JaccardStringSimilarity(strategy(), this.k, this.metrics);
+            return j.calculate(s1, s2);
+        }
+
+
+        public synchronized CompletableFuture<Double> ofAsync(final String s1, final String s2) {
+            final JaccardStringSimilarity j = new JaccardStringSimilarity(strategy(), this.k, this.metrics);
+            return j.calculateAsync(s1, s2);
         }
 
 
@@ -184,6 +266,14 @@ public interface Similarity<T> {
             final JaccardSetSimilarity j = new JaccardSetSimilarity();
             return j.calculate(c1, c2);
         }
+
+
+        public synchronized CompletableFuture<Double> ofAsync(
+            final Collection<? extends Number> c1,
+            final Collection<? extends Number> c2) {
+            final JaccardSetSimilarity j = new JaccardSetSimilarity();
+            return j.calculateAsync(c1, c2);
+        }
     }
 
 
@@ -197,10 +287,18 @@ public interface Similarity<T> {
 
         private int sigSize = 100;
 
-        private HashMethod h = HashMethod.Murmur3;
+        private int words = 0;
+
+        private Pattern wordDelimiter;
+
+        private HashMethod h = HashMethod.Murmur3x64;
 
         private ExecutorService exec;
 
+        private ExecutionStrategy strategy;
+
+        private SimilarityMetrics metrics = SimilarityMetrics.NOOP;
+
 
         /**
          * Length of n-gram shingles that are used for comparison (used for
@@ -234,9 +332,34 @@ public interface Similarity<T> {
         }
 
 
+        /**
+         * Number of words of the shingles that are used when generating
+         * signatures (used for strings only). When set, strings are split
+         * into word n-grams instead of character n-grams of the shingle
+         * length, and every word is hashed only once, which is considerably
+         * cheaper for long texts.
+         */
+        public MinHashFactory withWordShingles(final int wordCount) {
+            this.words = wordCount;
+            return this;
+        }
+
+
+        /**
+         * The pattern of the text between words, when using word shingles.
+         * If nothing is provided, words are split on every character that is
+         * not a letter or a digit.
+         */
+        public MinHashFactory withWordDelimiter(final Pattern delimiter) {
+            this.wordDelimiter = delimiter;
+            return this;
+        }
+
+
         /**
          * The hashing algorithm used to hash shingles to signatures (used for
-         * strings only).
+         * strings only). Defaults to {@link HashMethod#Murmur3x64}, which
+         * hashes every shingle once.
          */
         public MinHashFactory withHashMethod(final HashMethod hashMethod) {
             this.h = hashMethod;
@@ -246,8 +369,8 @@ public interface Similarity<T> {
 
         /**
          * An executor where the kshingling and signature processing tasks are
-         * spawned. If nothing is provided then it launches a new executor with
-         * the cached thread pool.
+         * spawned. If nothing is provided then the tasks are run according to
+         * {@link ExecutionStrategy#defaults()}.
          */
         public MinHashFactory withExecutor(final ExecutorService executor) {
             this.exec = executor;
@@ -255,44 +378,113 @@ public interface Similarity<T> {
         }
 
 
-        public synchronized double of(final String s1, final String s2) {
-            ExecutorService e = this.exec;
-            boolean usingDefaultExec = false;
-            if (e == null || e.isShutdown()) {
-                e = Executors.newCachedThreadPool();
-                usingDefaultExec = true;
+        /**
+         * A strategy that decides where the kshingling and signature
+         * processing tasks are run, taking precedence over
+         * {@link #withExecutor}. If neither is provided then
+         * {@link ExecutionStrategy#defaults()} is used.
+         */
+        public MinHashFactory withExecutionStrategy(final ExecutionStrategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+
+        /**
+         * A listener that is notified of the time spent and the work done in
+         * each processing stage. If nothing is provided then no metrics are
+         * collected.
+         */
+        public MinHashFactory withMetrics(final SimilarityMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+
+        private ExecutionStrategy strategy() {
+            if (this.strategy != null) {
+                return this.strategy;
+            }
+            if (this.exec != null && !this.exec.isShutdown()) {
+                return ExecutionStrategy.of(this.exec);
             }
-            final MinHashStringSimilarity j = new MinHashStringSimilarity(
-                    e, this.sigSize, this.h, this.k);
-            final double index = j.calculate(s1, s2);
-            if (usingDefaultExec) {
-                closeExecutor(e);
+            return ExecutionStrategy.defaults();
+        }
+
+
+        private StringSimilarity stringSimilarity() {
+            if (this.words > 0) {
+                return new MinHashTokenSimilarity(strategy(), this.sigSize,
+                        new TokenShingler(this.words, this.wordDelimiter), this.metrics);
             }
-            return index;
+            return new MinHashStringSimilarity(
+                    strategy(), this.sigSize, this.h, this.k, this.metrics);
+        }
+
+
+        public synchronized double of(final String s1, final String s2) {
+            return stringSimilarity().calculate(s1, s2);
+        }
+
+
+        public synchronized CompletableFuture<Double> ofAsync(final String s1, final String s2) {
+            return stringSimilarity().calculateAsync(s1, s2);
+        }
+
+
+        /**
+         * Calculates the similarity between the remaining bytes of two UTF-8
+         * encoded buffers, shingling and hashing the bytes directly without
+         * decoding them into strings. Signatures are generated from 64-bit
+         * shingle hashes, regardless of the hash method.
+         */
+        public synchronized double of(final ByteBuffer b1, final ByteBuffer b2) {
+            return new MinHashBufferSimilarity(strategy(), this.sigSize, this.k, this.metrics)
+                    .calculate(b1, b2);
+        }
+
+
+        public synchronized CompletableFuture<Double> ofAsync(final ByteBuffer b1, final ByteBuffer b2) {
+            return new MinHashBufferSimilarity(strategy(), this.sigSize, this.k, this.metrics)
+                    .calculateAsync(b1, b2);
+        }
+
+
+        /**
+         * Calculates the similarity between two UTF-8 encoded files, which
+         * are memory-mapped and shingled like {@link #of(ByteBuffer, ByteBuffer)}.
+         */
+        public synchronized double of(final Path file1, final Path file2) throws IOException {
+            return new MinHashBufferSimilarity(strategy(), this.sigSize, this.k, this.metrics)
+                    .calculate(file1, file2);
         }
 
 
         public synchronized double of(
             final Collection<? extends Number> c1,
             final Collection<? extends Number> c2) {
-            ExecutorService e = this.exec;
-            boolean usingDefaultExec = false;
-            if (e == null || e.isShutdown()) {
-                e = Executors.newCachedThreadPool();
-                usingDefaultExec = true;
-            }
             int nAux = this.n;
             if (nAux < 0) {
                 final Set<Number> unionSet = new HashSet<>(c1);
                 unionSet.addAll(c2);
                 nAux = (int) unionSet.parallelStream().distinct().count();
             }
-            final MinHashSetSimilarity j = new MinHashSetSimilarity(e, nAux, this.sigSize);
-            final double index = j.calculate(c1, c2);
-            if (usingDefaultExec) {
-                closeExecutor(e);
+            final MinHashSetSimilarity j = new MinHashSetSimilarity(strategy(), nAux, this.sigSize, this.metrics);
+            return j.calculate(c1, c2);
+        }
+
+
+        public synchronized CompletableFuture<Double> ofAsync(
+            final Collection<? extends Number> c1,
+            final Collection<? extends Number> c2) {
+            int nAux = this.n;
+            if (nAux < 0) {
+                final Set<Number> unionSet = new HashSet<>(c1);
+                unionSet.addAll(c2);
+                nAux = unionSet.size();
             }
-            return index;
+            final MinHashSetSimilarity j = new MinHashSetSimilarity(strategy(), nAux, this.sigSize, this.metrics);
+            return j.calculateAsync(c1, c2);
         }
     }
 
@@ -311,10 +503,20 @@ public interface Similarity<T> {
 
         private double s = 0.5;
 
-        private HashMethod h = HashMethod.Murmur3;
+        private int words = 0;
+
+        private Pattern wordDelimiter;
+
+        private HashMethod h = HashMethod.Murmur3x64;
 
         private ExecutorService exec;
 
+        private ExecutionStrategy strategy;
+
+        private SimilarityMetrics metrics = SimilarityMetrics.NOOP;
+
+        private boolean lazyBands = false;
+
 
         /**
          * Length of n-gram shingles that are used when generating signatures
@@ -366,9 +568,34 @@ public interface Similarity<T> {
         }
 
 
+        /**
+         * Number of words of the shingles that are used when generating
+         * signatures (used for strings only). When set, strings are split
+         * into word n-grams instead of character n-grams of the shingle
+         * length, and every word is hashed only once, which is considerably
+         * cheaper for long texts.
+         */
+        public LSHFactory withWordShingles(final int wordCount) {
+            this.words = wordCount;
+            return this;
+        }
+
+
+        /**
+         * The pattern of the text between words, when using word shingles.
+         * If nothing is provided, words are split on every character that is
+         * not a letter or a digit.
+         */
+        public LSHFactory withWordDelimiter(final Pattern delimiter) {
+            this.wordDelimiter = delimiter;
+            return this;
+        }
+
+
         /**
          * The hashing algorithm used to hash shingles to signatures (used for
-         * strings only).
+         * strings only). Defaults to {@link HashMethod#Murmur3x64}, which
+         * hashes every shingle once.
          */
         public LSHFactory withHashMethod(final HashMethod hashMethod) {
             this.h = hashMethod;
@@ -378,8 +605,8 @@ public interface Similarity<T> {
 
         /**
          * An executor where the kshingling and signature processing tasks are
-         * spawned. If nothing is provided then it launches a new executor with
-         * the cached thread pool.
+         * spawned. If nothing is provided then the tasks are run according to
+         * {@link ExecutionStrategy#defaults()}.
          */
         public LSHFactory withExecutor(final ExecutorService executor) {
             this.exec = executor;
@@ -387,43 +614,100 @@ public interface Similarity<T> {
         }
 
 
-        public synchronized double of(final String s1, final String s2) {
-            ExecutorService e = this.exec;
-            boolean usingDefaultExec = false;
-            if (e == null || e.isShutdown()) {
-                e = Executors.newCachedThreadPool();
-                usingDefaultExec = true;
+        /**
+         * A strategy that decides where the kshingling and signature
+         * processing tasks are run, taking precedence over
+         * {@link #withExecutor}. If neither is provided then
+         * {@link ExecutionStrategy#defaults()} is used.
+         */
+        public LSHFactory withExecutionStrategy(final ExecutionStrategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+
+        /**
+         * A listener that is notified of the time spent and the work done in
+         * each processing stage. If nothing is provided then no metrics are
+         * collected.
+         */
+        public LSHFactory withMetrics(final SimilarityMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+
+        /**
+         * If true, candidate pairs of strings are checked one band at a time:
+         * the signature rows of a band are computed for both strings and
+         * compared before the next band is computed, stopping at the first
+         * matching band. Near-duplicates then skip most of the signature
+         * work. Only applies to word shingles and to hash methods with a
+         * 64-bit function, such as the default {@link HashMethod#Murmur3x64}.
+         */
+        public LSHFactory withLazyBands(final boolean lazyBands) {
+            this.lazyBands = lazyBands;
+            return this;
+        }
+
+
+        private ExecutionStrategy strategy() {
+            if (this.strategy != null) {
+                return this.strategy;
             }
-            final LSHStringSimilarity j = new LSHStringSimilarity(e, this.b, this.r, this.s, this.h, this.k);
-            final double index = j.calculate(s1, s2);
-            if (usingDefaultExec) {
-                closeExecutor(e);
+            if (this.exec != null && !this.exec.isShutdown()) {
+                return ExecutionStrategy.of(this.exec);
             }
-            return index;
+            return ExecutionStrategy.defaults();
+        }
+
+
+        private StringSimilarity stringSimilarity() {
+            if (this.words > 0) {
+                return new LSHTokenSimilarity(strategy(), this.b, this.r, this.s,
+                        new TokenShingler(this.words, this.wordDelimiter), this.metrics,
+                        this.lazyBands);
+            }
+            return new LSHStringSimilarity(strategy(), this.b, this.r, this.s, this.h, this.k,
+                    this.metrics, this.lazyBands);
+        }
+
+
+        public synchronized double of(final String s1, final String s2) {
+            return stringSimilarity().calculate(s1, s2);
+        }
+
+
+        public synchronized CompletableFuture<Double> ofAsync(final String s1, final String s2) {
+            return stringSimilarity().calculateAsync(s1, s2);
         }
 
 
         public synchronized double of(
             final Collection<? extends Number> c1,
             final Collection<? extends Number> c2) {
-            ExecutorService e = this.exec;
-            boolean usingDefaultExec = false;
-            if (e == null || e.isShutdown()) {
-                e = Executors.newCachedThreadPool();
-                usingDefaultExec = true;
-            }
             int nAux = this.n;
             if (nAux < 0) {
                 final Set<Number> unionSet = new HashSet<>(c1);
                 unionSet.addAll(c2);
                 nAux = (int) unionSet.parallelStream().distinct().count();
             }
-            final LSHSetSimilarity j = new LSHSetSimilarity(e, nAux, this.b, this.r, this.s);
-            final double index = j.calculate(c1, c2);
-            if (usingDefaultExec) {
-                closeExecutor(e);
+            final LSHSetSimilarity j = new LSHSetSimilarity(strategy(), nAux, this.b, this.r, this.s, this.metrics);
+            return j.calculate(c1, c2);
+        }
+
+
+        public synchronized CompletableFuture<Double> ofAsync(
+            final Collection<? extends Number> c1,
+            final Collection<? extends Number> c2) {
+            int nAux = this.n;
+            if (nAux < 0) {
+                final Set<Number> unionSet = new HashSet<>(c1);
+                unionSet.addAll(c2);
+                nAux = unionSet.size();
             }
-            return index;
+            final LSHSetSimilarity j = new LSHSetSimilarity(strategy(), nAux, this.b, this.r, this.s, this.metrics);
+            return j.calculateAsync(c1, c2);
         }
     }
 }
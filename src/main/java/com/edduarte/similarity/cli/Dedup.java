@@ -0,0 +1,431 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.cli;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.converter.HashedShingles2SignatureConverter;
+import com.edduarte.similarity.converter.TokenShingler;
+import com.edduarte.similarity.converter.Utf8Shingler;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.index.LSHIndex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line pipeline that finds clusters of near-duplicate documents in a
+ * corpus. Documents are either the files under a directory or the lines of a
+ * file. They are signed in parallel, indexed by their LSH bands, and every
+ * candidate pair whose estimated similarity reaches the threshold is merged
+ * into a cluster. Clusters with more than one document are written to the
+ * output file, one per line, with the names of their documents (file paths
+ * or line numbers) separated by tabs, and progress is reported to stderr.
+ * <pre>
+ * java -cp near-neighbor-search.jar com.edduarte.similarity.cli.Dedup \
+ *     --input corpus/ --output clusters.tsv --threshold 0.8
+ * </pre>
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class Dedup {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: Dedup --input <directory or file> --output <file> [options]",
+            "  --lines            treat the input file as one document per line",
+            "  --shingle <k>      characters per shingle (default 5)",
+            "  --words <n>        use shingles of n words instead of characters",
+            "  --bands <b>        number of LSH bands (default 20)",
+            "  --rows <r>         number of rows per band (default 5)",
+            "  --threshold <s>    minimum estimated similarity (default 0.8)",
+            "  --threads <t>      signing threads (default: available processors)");
+
+    private final Path input;
+
+    private final Path output;
+
+    private boolean lines;
+
+    private int k = 5;
+
+    private int words;
+
+    private int b = 20;
+
+    private int r = 5;
+
+    private double threshold = 0.8;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private PrintStream log = System.err;
+
+
+    public Dedup(Path input, Path output) {
+        this.input = input;
+        this.output = output;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Dedup dedup;
+        try {
+            dedup = parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        dedup.run();
+    }
+
+
+    static Dedup parse(String[] args) {
+        Path input = null;
+        Path output = null;
+        Map<String, String> options = new HashMap<>();
+        boolean lines = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--lines")) {
+                lines = true;
+                continue;
+            }
+            if (!arg.startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Invalid argument " + arg + ".");
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--input":
+                    input = Paths.get(value);
+                    break;
+                case "--output":
+                    output = Paths.get(value);
+                    break;
+                default:
+                    options.put(arg, value);
+            }
+        }
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("Both --input and --output are required.");
+        }
+        Dedup dedup = new Dedup(input, output).withLines(lines);
+        try {
+            for (Map.Entry<String, String> option : options.entrySet()) {
+                String value = option.getValue();
+                switch (option.getKey()) {
+                    case "--shingle":
+                        dedup.withShingleLength(Integer.parseInt(value));
+                        break;
+                    case "--words":
+                        dedup.withWordShingles(Integer.parseInt(value));
+                        break;
+                    case "--bands":
+                        dedup.withNumberOfBands(Integer.parseInt(value));
+                        break;
+                    case "--rows":
+                        dedup.withNumberOfRows(Integer.parseInt(value));
+                        break;
+                    case "--threshold":
+                        dedup.withThreshold(Double.parseDouble(value));
+                        break;
+                    case "--threads":
+                        dedup.withThreads(Integer.parseInt(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option.getKey() + ".");
+                }
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number: " + ex.getMessage());
+        }
+        return dedup;
+    }
+
+
+    /**
+     * Treats the input as a file with one document per line.
+     */
+    public Dedup withLines(boolean lines) {
+        this.lines = lines;
+        return this;
+    }
+
+
+    public Dedup withShingleLength(int shingleLength) {
+        this.k = shingleLength;
+        return this;
+    }
+
+
+    /**
+     * Uses shingles of the specified number of words instead of characters.
+     */
+    public Dedup withWordShingles(int wordCount) {
+        this.words = wordCount;
+        return this;
+    }
+
+
+    public Dedup withNumberOfBands(int bandCount) {
+        this.b = bandCount;
+        return this;
+    }
+
+
+    public Dedup withNumberOfRows(int rowCount) {
+        this.r = rowCount;
+        return this;
+    }
+
+
+    public Dedup withThreshold(double threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+
+    public Dedup withThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+
+    /**
+     * The stream where progress is reported.
+     */
+    public Dedup withLog(PrintStream log) {
+        this.log = log;
+        return this;
+    }
+
+
+    /**
+     * Runs the pipeline and writes the clusters to the output file.
+     *
+     * @return the clusters with more than one document, largest first, each
+     * with the names of its documents
+     */
+    public List<List<String>> run() throws IOException {
+        long start = System.nanoTime();
+        List<String> files = new ArrayList<>();
+        if (!lines) {
+            try (Stream<Path> paths = Files.walk(input)) {
+                paths.filter(Files::isRegularFile)
+                        .sorted()
+                        .forEach(file -> files.add(file.toString()));
+            }
+            log.printf("Found %d documents in %s%n", files.size(), input);
+        }
+        // documents are named by their path, or by their line number
+        IntFunction<String> names = lines ? id -> String.valueOf(id + 1) : files::get;
+
+        int[][] signatures = sign(files);
+        log.printf("Signed %d documents in %.1fs%n", signatures.length, seconds(start));
+        long unsigned = Arrays.stream(signatures).filter(Objects::isNull).count();
+        if (unsigned > 0) {
+            log.printf("Skipped %d documents shorter than one shingle%n", unsigned);
+        }
+
+        long clusterStart = System.nanoTime();
+        UnionFind clusters = new UnionFind(signatures.length);
+        LSHIndex index = new LSHIndex(b, r);
+        long candidates = 0;
+        long verified = 0;
+        for (int id = 0; id < signatures.length; id++) {
+            if (signatures[id] == null) {
+                // documents without shingles are left in clusters of their own
+                continue;
+            }
+            // each document is compared with the documents indexed before it
+            for (long other : index.candidates(signatures[id])) {
+                candidates++;
+                if (Similarity.signatureIndex(signatures[id], signatures[(int) other]) >= threshold) {
+                    verified++;
+                    clusters.union(id, (int) other);
+                }
+            }
+            index.add(id, signatures[id]);
+        }
+        log.printf("Verified %d of %d candidate pairs in %.1fs%n",
+                verified, candidates, seconds(clusterStart));
+
+        List<List<String>> result = write(signatures.length, names, clusters);
+        log.printf("Wrote %d clusters to %s in %.1fs total%n",
+                result.size(), output, seconds(start));
+        return result;
+    }
+
+
+    /**
+     * Signs the specified files, or the lines of the input file, in
+     * parallel. Documents are read as the signing threads free up, so at most
+     * a few documents per thread are held in memory at once.
+     */
+    private int[][] sign(List<String> files) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ExecutionStrategy exec = ExecutionStrategy.of(pool);
+        Utf8Shingler utf8 = new Utf8Shingler(k);
+        TokenShingler tokens = words > 0 ? new TokenShingler(words) : null;
+        HashedShingles2SignatureConverter sigp = new HashedShingles2SignatureConverter(b * r);
+        Semaphore inFlight = new Semaphore(4 * threads);
+
+        Progress progress = new Progress(lines ? 0 : files.size());
+        List<CompletableFuture<int[]>> futures = new ArrayList<>();
+        Function<Callable<ByteBuffer>, CompletableFuture<int[]>> submit = reader -> {
+            inFlight.acquireUninterruptibly();
+            return exec.submit(() -> {
+                try {
+                    ByteBuffer bytes = reader.call();
+                    int length = bytes.remaining();
+                    // a document without shingles has no meaningful
+                    // signature, so it is left unsigned
+                    int[] signature = null;
+                    if (tokens != null) {
+                        long[] shingles = tokens.compute(StandardCharsets.UTF_8.decode(bytes));
+                        if (shingles.length > 0) {
+                            signature = sigp.compute(shingles);
+                        }
+                    } else if (utf8.hasShingles(bytes)) {
+                        signature = utf8.signature(bytes, b * r);
+                    }
+                    progress.done(length);
+                    return signature;
+                } finally {
+                    inFlight.release();
+                }
+            }, 1);
+        };
+        try {
+            if (lines) {
+                try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        byte[] text = line.getBytes(StandardCharsets.UTF_8);
+                        futures.add(submit.apply(() -> ByteBuffer.wrap(text)));
+                    }
+                }
+            } else {
+                for (String file : files) {
+                    futures.add(submit.apply(() -> Utf8Shingler.map(Paths.get(file))));
+                }
+            }
+            int[][] signatures = new int[futures.size()][];
+            for (int id = 0; id < signatures.length; id++) {
+                signatures[id] = futures.get(id).join();
+            }
+            return signatures;
+        } catch (RuntimeException ex) {
+            String m = "There was a problem signing documents.";
+            throw new IOException(m, ex.getCause() != null ? ex.getCause() : ex);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    private List<List<String>> write(int count, IntFunction<String> names,
+                                     UnionFind clusters) throws IOException {
+        Map<Integer, List<String>> byRoot = new HashMap<>();
+        for (int id = 0; id < count; id++) {
+            byRoot.computeIfAbsent(clusters.find(id), root -> new ArrayList<>())
+                    .add(names.apply(id));
+        }
+        List<List<String>> result = byRoot.values().stream()
+                .filter(cluster -> cluster.size() > 1)
+                .sorted(Comparator.<List<String>>comparingInt(List::size).reversed()
+                        .thenComparing(cluster -> cluster.get(0)))
+                .collect(Collectors.toList());
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (List<String> cluster : result) {
+                writer.write(String.join("\t", cluster));
+                writer.newLine();
+            }
+        }
+        return result;
+    }
+
+
+    private static double seconds(long start) {
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+
+    /**
+     * Reports the number of documents and bytes signed per second, at most
+     * once per second. The total is 0 when it is not known in advance.
+     */
+    private final class Progress {
+
+        private final int total;
+
+        private final long start = System.nanoTime();
+
+        private final AtomicLong documents = new AtomicLong();
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        private final AtomicLong lastReport = new AtomicLong(start);
+
+
+        private Progress(int total) {
+            this.total = total;
+        }
+
+
+        private void done(int length) {
+            long count = documents.incrementAndGet();
+            long totalBytes = bytes.addAndGet(length);
+            long now = System.nanoTime();
+            long last = lastReport.get();
+            if ((now - last >= 1_000_000_000L || count == total)
+                    && lastReport.compareAndSet(last, now)) {
+                double elapsed = Math.max(seconds(start), 1e-9);
+                log.printf("Signed %s documents (%.0f docs/s, %.1f MB/s)%n",
+                        total > 0 ? count + "/" + total : String.valueOf(count),
+                        count / elapsed, totalBytes / elapsed / (1 << 20));
+            }
+        }
+    }
+}
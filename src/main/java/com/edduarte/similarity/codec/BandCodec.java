@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the band arrays generated by
+ * {@link com.edduarte.similarity.converter.Signature2BandsConverter} with a
+ * fixed number of low-order bits per band: all 32, or fewer to truncate them.
+ * <p>
+ * Band values are hashes of the rows of a band, uniformly spread over 32
+ * bits, so neither deltas nor variable-length encodings make them smaller;
+ * the only way to save bytes is to keep fewer bits. Two truncated bands that
+ * differ are equal by chance in about 2^-bits of the cases, which only adds
+ * candidate pairs that verification will reject, so 16 bits halve the size
+ * of band arrays at a negligible cost.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class BandCodec {
+
+    private final SignatureCodec packer;
+
+
+    /**
+     * Codec that keeps the full 32 bits of every band.
+     */
+    public BandCodec(String hashFamily) {
+        this(hashFamily, 32);
+    }
+
+
+    /**
+     * Codec that keeps the lowest bits of every band. Bands that are
+     * compared against decoded ones must be truncated to the same bits.
+     */
+    public BandCodec(String hashFamily, int bits) {
+        this.packer = SignatureCodec.bBit(hashFamily, bits);
+    }
+
+
+    /**
+     * @return a codec for the band arrays described by the header
+     */
+    public static BandCodec of(CodecHeader header) {
+        if (header.getKind() != CodecHeader.Kind.BANDS) {
+            throw new IllegalArgumentException("The header does not describe band arrays.");
+        }
+        return new BandCodec(header.getHashFamily(), header.getBits());
+    }
+
+
+    /**
+     * @return the header that describes band arrays with the specified
+     * number of bands encoded by this codec
+     */
+    public CodecHeader header(int bands) {
+        return new CodecHeader(CodecHeader.Kind.BANDS, getHashFamily(), getBits(), bands);
+    }
+
+
+    /**
+     * @return the number of bytes taken by the specified number of bands
+     */
+    public int encodedSize(int bands) {
+        return packer.encodedSize(bands);
+    }
+
+
+    public void encode(int[] bands, ByteBuffer out) {
+        encode(bands, 0, bands.length, out);
+    }
+
+
+    /**
+     * Encodes a run of bands, e.g. several band arrays laid out one after the
+     * other, into the buffer, which must have {@link #encodedSize(int)} bytes
+     * remaining.
+     */
+    public void encode(int[] bands, int offset, int length, ByteBuffer out) {
+        packer.encode(bands, offset, length, out);
+    }
+
+
+    public void decode(ByteBuffer in, int[] bands) {
+        decode(in, bands, 0, bands.length);
+    }
+
+
+    /**
+     * Decodes a run of bands that was encoded with the same length into the
+     * destination array. Truncated bands are restored as their low-order
+     * bits, with the remaining bits set to zero.
+     */
+    public void decode(ByteBuffer in, int[] bands, int offset, int length) {
+        packer.decode(in, bands, offset, length);
+    }
+
+
+    public String getHashFamily() {
+        return packer.getHashFamily();
+    }
+
+
+    public int getBits() {
+        return packer.getBits();
+    }
+}
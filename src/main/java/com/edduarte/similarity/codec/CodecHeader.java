@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.codec;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Header written before encoded signatures or band arrays. It identifies the
+ * format and its version, the kind of payload, the hash family that
+ * generated the values (signatures from different families cannot be
+ * compared), the number of bits kept per value and the number of values per
+ * signature or band array.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class CodecHeader {
+
+    static final short MAGIC = 0x4E4E;
+
+    static final byte VERSION = 1;
+
+    private final Kind kind;
+
+    private final String hashFamily;
+
+    private final int bits;
+
+    private final int size;
+
+
+    public CodecHeader(Kind kind, String hashFamily, int bits, int size) {
+        if (hashFamily.length() > 255) {
+            throw new IllegalArgumentException("The hash family name is too long.");
+        }
+        this.kind = kind;
+        this.hashFamily = hashFamily;
+        this.bits = bits;
+        this.size = size;
+    }
+
+
+    /**
+     * Writes this header at the position of the buffer.
+     */
+    public void write(ByteBuffer out) {
+        byte[] family = hashFamily.getBytes(StandardCharsets.US_ASCII);
+        out.putShort(MAGIC);
+        out.put(VERSION);
+        out.put((byte) kind.ordinal());
+        out.put((byte) bits);
+        out.put((byte) family.length);
+        out.put(family);
+        Varint.writeUnsigned(out, size);
+    }
+
+
+    /**
+     * Reads a header from the position of the buffer.
+     *
+     * @throws IllegalArgumentException if the buffer does not start with a
+     *                                  header of a known version
+     */
+    public static CodecHeader read(ByteBuffer in) {
+        try {
+            if (in.getShort() != MAGIC) {
+                throw new IllegalArgumentException("Not an encoded signature or band array.");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported codec version " + version + ".");
+            }
+            int kind = in.get();
+            if (kind < 0 || kind >= Kind.values().length) {
+                throw new IllegalArgumentException("Unknown payload kind " + kind + ".");
+            }
+            int bits = in.get() & 0xff;
+            byte[] family = new byte[in.get() & 0xff];
+            in.get(family);
+            int size = Varint.readUnsigned(in);
+            return new CodecHeader(Kind.values()[kind],
+                    new String(family, StandardCharsets.US_ASCII), bits, size);
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Truncated header.", ex);
+        }
+    }
+
+
+    public Kind getKind() {
+        return kind;
+    }
+
+
+    public String getHashFamily() {
+        return hashFamily;
+    }
+
+
+    /**
+     * @return the number of bits kept per value
+     */
+    public int getBits() {
+        return bits;
+    }
+
+
+    /**
+     * @return the number of values per signature or band array
+     */
+    public int getSize() {
+        return size;
+    }
+
+
+    public enum Kind {
+        SIGNATURES,
+        BANDS
+    }
+}
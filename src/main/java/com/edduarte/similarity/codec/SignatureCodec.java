@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes minhash signatures keeping a fixed number of low-order bits of
+ * every value: all 32 bits, the lowest 16, or the lowest b bits for b-bit
+ * minwise hashing. Values are packed back to back, least significant bit
+ * first, and a run of values is padded to a whole number of bytes.
+ * <p>
+ * Signatures that were truncated collide by chance in about 2^-b of their
+ * positions, so their similarity must be estimated with
+ * {@link #signatureIndex(int[], int[])}, which corrects for those collisions.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class SignatureCodec {
+
+    private final String hashFamily;
+
+    private final int bits;
+
+    private final long mask;
+
+
+    private SignatureCodec(String hashFamily, int bits) {
+        if (bits < 1 || bits > 32) {
+            throw new IllegalArgumentException("Bits must be between 1 and 32.");
+        }
+        this.hashFamily = hashFamily;
+        this.bits = bits;
+        this.mask = bits == 32 ? 0xffffffffL : (1L << bits) - 1;
+    }
+
+
+    /**
+     * Codec that keeps the full 32 bits of every value.
+     *
+     * @param hashFamily the name of the hash method that generated the
+     *                   signatures, e.g. {@code HashMethod.Murmur3.name()}
+     */
+    public static SignatureCodec full(String hashFamily) {
+        return new SignatureCodec(hashFamily, 32);
+    }
+
+
+    /**
+     * Codec that keeps the lowest 16 bits of every value.
+     */
+    public static SignatureCodec truncated(String hashFamily) {
+        return new SignatureCodec(hashFamily, 16);
+    }
+
+
+    /**
+     * Codec that keeps the lowest b bits of every value.
+     */
+    public static SignatureCodec bBit(String hashFamily, int b) {
+        return new SignatureCodec(hashFamily, b);
+    }
+
+
+    /**
+     * @return a codec for the signatures described by the header
+     */
+    public static SignatureCodec of(CodecHeader header) {
+        if (header.getKind() != CodecHeader.Kind.SIGNATURES) {
+            throw new IllegalArgumentException("The header does not describe signatures.");
+        }
+        return new SignatureCodec(header.getHashFamily(), header.getBits());
+    }
+
+
+    /**
+     * @return the header that describes signatures of the specified size
+     * encoded by this codec
+     */
+    public CodecHeader header(int signatureSize) {
+        return new CodecHeader(CodecHeader.Kind.SIGNATURES, hashFamily, bits,
+                signatureSize);
+    }
+
+
+    /**
+     * @return the number of bytes taken by the specified number of values
+     */
+    public int encodedSize(int values) {
+        return (int) (((long) values * bits + 7) / 8);
+    }
+
+
+    public void encode(int[] signature, ByteBuffer out) {
+        encode(signature, 0, signature.length, out);
+    }
+
+
+    /**
+     * Encodes a run of values, e.g. several signatures laid out one after
+     * the other, into the buffer, which must have
+     * {@link #encodedSize(int)} bytes remaining.
+     */
+    public void encode(int[] values, int offset, int length, ByteBuffer out) {
+        long acc = 0;
+        int pending = 0;
+        for (int i = offset; i < offset + length; i++) {
+            acc |= (values[i] & mask) << pending;
+            pending += bits;
+            while (pending >= 8) {
+                out.put((byte) acc);
+                acc >>>= 8;
+                pending -= 8;
+            }
+        }
+        if (pending > 0) {
+            out.put((byte) acc);
+        }
+    }
+
+
+    public void decode(ByteBuffer in, int[] signature) {
+        decode(in, signature, 0, signature.length);
+    }
+
+
+    /**
+     * Decodes a run of values that was encoded with the same length into the
+     * destination array. Truncated values are restored as their low-order
+     * bits, with the remaining bits set to zero.
+     */
+    public void decode(ByteBuffer in, int[] values, int offset, int length) {
+        long acc = 0;
+        int available = 0;
+        for (int i = offset; i < offset + length; i++) {
+            while (available < bits) {
+                acc |= (in.get() & 0xffL) << available;
+                available += 8;
+            }
+            values[i] = (int) (acc & mask);
+            acc >>>= bits;
+            available -= bits;
+        }
+    }
+
+
+    /**
+     * Estimates the similarity of two signatures from the fraction of their
+     * positions whose low-order bits are equal, subtracting the fraction
+     * expected to collide by chance (2^-b) and rescaling.
+     */
+    public double signatureIndex(int[] signature1, int[] signature2) {
+        int matches = 0;
+        for (int i = 0; i < signature1.length; i++) {
+            if (((signature1[i] ^ signature2[i]) & mask) == 0) {
+                matches++;
+            }
+        }
+        double raw = (double) matches / signature1.length;
+        double chance = Math.scalb(1.0, -bits);
+        return Math.max(0, (raw - chance) / (1 - chance));
+    }
+
+
+    public String getHashFamily() {
+        return hashFamily;
+    }
+
+
+    public int getBits() {
+        return bits;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.converter;
+
+import com.edduarte.similarity.hash.HashProvider;
+
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Processor class to convert 64-bit shingle hashes, such as those generated
+ * by {@link TokenShingler}, to minhash signatures. Shingles are not hashed
+ * again: the value of every signature slot is derived from the shingle hash
+ * with {@link HashProvider#minHash(long, int[])}.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class HashedShingles2SignatureConverter
+        implements Function<long[], Callable<int[]>> {
+
+    private final int sigSize;
+
+
+    public HashedShingles2SignatureConverter(int sigSize) {
+        this.sigSize = sigSize;
+    }
+
+
+    @Override
+    public Callable<int[]> apply(long[] shingles) {
+        return () -> compute(shingles);
+    }
+
+
+    public int[] compute(long[] shingles) {
+        return ParallelSignature.compute(shingles.length, sigSize, (from, to, sig) -> {
+            for (int i = from; i < to; i++) {
+                HashProvider.minHash(shingles[i], sig);
+            }
+        });
+    }
+}
@@ -16,17 +16,28 @@
 
 package com.edduarte.similarity.converter;
 
+import com.edduarte.similarity.hash.HashProvider;
+import com.edduarte.similarity.hash.HashProvider.Hash64Function;
 import com.edduarte.similarity.hash.HashProvider.HashMethod;
 
 import java.nio.charset.Charset;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Processor class to convert shingles to hash signatures.
+ * <p>
+ * If the hash method provides a 64-bit function (like
+ * {@link HashMethod#Murmur3x64}), every shingle is hashed once and all the
+ * signature slots are derived from that hash with
+ * {@link HashProvider#minHash(long, int[])}, which produces the same
+ * signatures as {@link HashedShingles2SignatureConverter} over the 64-bit
+ * hashes of the UTF-8 encoded shingles. Otherwise, the hash function of the
+ * method is asked for one value per slot.
+ * <p>
+ * Large inputs are signed in parallel chunks, see {@link ParallelSignature}.
  *
  * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
  * @version 0.0.1
@@ -52,6 +63,42 @@ public class KShingles2SignatureConverter
     }
 
 
+    /**
+     * @return true if the hash method hashes shingles to 64 bits, from which
+     * signature slots are derived, and so {@link #hashShingles} is supported
+     */
+    public boolean isDerived() {
+        return hash.getHash64Function() != null;
+    }
+
+
+    /**
+     * Hashes every shingle once to the 64-bit value from which its signature
+     * slots are derived with {@link HashProvider#minHash(long, int[], int, int)}.
+     *
+     * @throws UnsupportedOperationException if the hash method does not
+     *                                       provide a 64-bit function
+     */
+    public long[] hashShingles(List<CharSequence> shingles) {
+        Hash64Function hash64 = hash.getHash64Function();
+        if (hash64 == null) {
+            throw new UnsupportedOperationException(
+                    "The hash method " + hash + " does not provide a 64-bit function.");
+        }
+        long[] hashes = new long[shingles.size()];
+        byte[] buffer = new byte[64];
+        int j = 0;
+        for (CharSequence s : shingles) {
+            int maxLength = s.length() * 3;
+            if (buffer.length < maxLength) {
+                buffer = new byte[Math.max(maxLength, buffer.length * 2)];
+            }
+            hashes[j++] = hash64.hash64(buffer, 0, encodeUtf8(s, buffer));
+        }
+        return hashes;
+    }
+
+
     private class SignatureCallable implements Callable<int[]> {
 
         private final List<CharSequence> shingles;
@@ -72,28 +119,72 @@ public class KShingles2SignatureConverter
 
         @Override
         public int[] call() {
-            int[] sig = new int[sigSize];
-
-            for (int i = 0; i < sigSize; i++) {
-                sig[i] = Integer.MAX_VALUE;
+            CharSequence[] aux = shingles.toArray(new CharSequence[0]);
+
+            Hash64Function hash64 = hash.getHash64Function();
+            if (hash64 != null) {
+                return ParallelSignature.compute(aux.length, sigSize, (from, to, sig) -> {
+                    byte[] buffer = new byte[64];
+                    for (int j = from; j < to; j++) {
+                        CharSequence s = aux[j];
+                        int maxLength = s.length() * 3;
+                        if (buffer.length < maxLength) {
+                            buffer = new byte[Math.max(maxLength, buffer.length * 2)];
+                        }
+                        int length = encodeUtf8(s, buffer);
+                        HashProvider.minHash(hash64.hash64(buffer, 0, length), sig);
+                    }
+                });
             }
 
-            List<String> aux = shingles.parallelStream()
-                    .map(CharSequence::toString)
-                    .collect(Collectors.toList());
+            return ParallelSignature.compute(aux.length, sigSize, (from, to, sig) -> {
+                for (int j = from; j < to; j++) {
+                    byte[] bytes = aux[j].toString().getBytes(StandardCharsets.UTF_8);
+                    int[] hash = this.hash.getHashFunction()
+                            .hash(bytes, Integer.MAX_VALUE, sigSize);
+                    for (int i = 0; i < sigSize; i++) {
+                        sig[i] = Math.min(sig[i], hash[i]);
+                    }
+                }
+            });
+        }
+    }
 
-            Collections.sort(aux);
 
-            for (final String s : aux) {
-                byte[] bytes = s.getBytes(Charset.forName("UTF-8"));
-                int[] hash = this.hash.getHashFunction()
-                        .hash(bytes, Integer.MAX_VALUE, sigSize);
-                for (int i = 0; i < sigSize; i++) {
-                    sig[i] = Math.min(sig[i], hash[i]);
+    /**
+     * Encodes the specified characters to UTF-8 into a buffer with room for 3
+     * bytes per character, replacing unpaired surrogates with '?' as
+     * {@link String#getBytes(Charset)} does.
+     *
+     * @return the number of bytes written
+     */
+    static int encodeUtf8(CharSequence s, byte[] dest) {
+        int n = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                dest[n++] = (byte) c;
+            } else if (c < 0x800) {
+                dest[n++] = (byte) (0xc0 | (c >> 6));
+                dest[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    dest[n++] = (byte) (0xf0 | (cp >> 18));
+                    dest[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    dest[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    dest[n++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    dest[n++] = '?';
                 }
+            } else {
+                dest[n++] = (byte) (0xe0 | (c >> 12));
+                dest[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                dest[n++] = (byte) (0x80 | (c & 0x3f));
             }
-
-            return sig;
         }
+        return n;
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.converter;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes a minhash signature over the elements of one input with fork-join
+ * parallelism: the elements are split into chunks, a partial signature is
+ * computed for every chunk and the partial signatures are merged slot by slot
+ * with min. As min is associative and commutative, the result is identical to
+ * the sequential computation.
+ * <p>
+ * The chunks run on the fork-join pool of the calling thread, or on the common
+ * pool. Inputs whose cost (elements times signature size) is below
+ * {@link #PARALLEL_COST}, or that would run on a pool with no parallelism, are
+ * signed sequentially on the calling thread.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class ParallelSignature {
+
+    /**
+     * Minimum number of hash evaluations of an input before it is split.
+     */
+    static final long PARALLEL_COST = 1L << 20;
+
+    /**
+     * Approximate number of hash evaluations of every chunk.
+     */
+    private static final int CHUNK_COST = 1 << 16;
+
+
+    private ParallelSignature() {
+    }
+
+
+    /**
+     * Signs the elements [0, size) of an input.
+     *
+     * @param size    the number of elements of the input
+     * @param sigSize the size of the signature
+     * @param signer  updates a signature with a range of elements
+     */
+    static int[] compute(int size, int sigSize, RangeSigner signer) {
+        int parallelism = ForkJoinTask.inForkJoinPool() ?
+                ForkJoinTask.getPool().getParallelism() :
+                ForkJoinPool.getCommonPoolParallelism();
+        if ((long) size * sigSize < PARALLEL_COST || parallelism < 2) {
+            int[] sig = newSignature(sigSize);
+            signer.sign(0, size, sig);
+            return sig;
+        }
+        int chunk = Math.max(1, CHUNK_COST / Math.max(1, sigSize));
+        return new SignatureTask(signer, sigSize, chunk, 0, size).invoke();
+    }
+
+
+    static int[] newSignature(int sigSize) {
+        int[] sig = new int[sigSize];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        return sig;
+    }
+
+
+    /**
+     * Updates a signature, initialized with {@link Integer#MAX_VALUE}, with
+     * the elements [from, to) of an input.
+     */
+    @FunctionalInterface
+    interface RangeSigner {
+
+        void sign(int from, int to, int[] sig);
+    }
+
+
+    private static final class SignatureTask extends RecursiveTask<int[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient RangeSigner signer;
+
+        private final int sigSize;
+
+        private final int chunk;
+
+        private final int from;
+
+        private final int to;
+
+
+        private SignatureTask(RangeSigner signer, int sigSize, int chunk,
+                              int from, int to) {
+            this.signer = signer;
+            this.sigSize = sigSize;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= chunk) {
+                int[] sig = newSignature(sigSize);
+                signer.sign(from, to, sig);
+                return sig;
+            }
+            int mid = (from + to) >>> 1;
+            SignatureTask right = new SignatureTask(signer, sigSize, chunk, mid, to);
+            right.fork();
+            int[] sig = new SignatureTask(signer, sigSize, chunk, from, mid).compute();
+            int[] other = right.join();
+            for (int i = 0; i < sigSize; i++) {
+                if (other[i] < sig[i]) {
+                    sig[i] = other[i];
+                }
+            }
+            return sig;
+        }
+    }
+}
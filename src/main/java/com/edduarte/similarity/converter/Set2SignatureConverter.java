@@ -18,13 +18,9 @@ package com.edduarte.similarity.converter;
 
 import java.io.Serializable;
 import java.security.SecureRandom;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.function.Function;
-import java.util.stream.IntStream;
 
 /**
  * Processor class to retrieve shingles of length k.
@@ -90,27 +86,32 @@ public class Set2SignatureConverter
 
     public int[] compute(final Collection<? extends Number> set)
     {
-        final int[] signature = new int[this.sigSize];
-        for (int i = 0; i < this.sigSize; i++)
-        {
-            signature[i] = Integer.MAX_VALUE;
-        }
-            //IntStream.range(0, this.sigSize).map(i -> Integer.MAX_VALUE).toArray();
-
-//        final List<? extends Number> list = new ArrayList<>(set);
-//        list.sort(Comparator.comparingLong(Number::longValue));
+        return signature(this.sigSize, this.a, this.b, set);
+    }
 
+    /**
+     * Computes the signature of a set, splitting large sets into chunks that
+     * are hashed in parallel (see {@link ParallelSignature}).
+     */
+    private static int[] signature(final int sigSize, final int[] a, final int[] b,
+                                   final Collection<? extends Number> set) {
+        final long[] values = new long[set.size()];
+        int n = 0;
         for (final Number x : set) {
-            for (int i = 0; i < this.sigSize; i++) {
-                signature[i] = Math.min(signature[i], universalHashing(i, x));
-            }
+            values[n++] = x.longValue();
         }
-
-        return signature;
+        return ParallelSignature.compute(values.length, sigSize, (from, to, signature) -> {
+            for (int j = from; j < to; j++) {
+                for (int i = 0; i < sigSize; i++) {
+                    signature[i] = Math.min(signature[i], universalHashing(a, b, i, values[j]));
+                }
+            }
+        });
     }
 
-    private int universalHashing(final int i, final Number x) {
-        return (int) ((this.a[i] * x.longValue() + this.b[i]) % LARGE_PRIME); // TODO removed %n
+
+    private static int universalHashing(final int[] a, final int[] b, final int i, final long x) {
+        return (int) ((a[i] * x + b[i]) % LARGE_PRIME); // TODO removed %n
     }
 
 
@@ -142,23 +143,7 @@ public class Set2SignatureConverter
         @Override
         public int[] call()
         {
-            final int[] signature = IntStream.range(0, this.sigSize).map(i -> Integer.MAX_VALUE).toArray();
-
-            final List<? extends Number> list = new ArrayList<>(this.set);
-            list.sort(Comparator.comparingLong(Number::longValue));
-
-            for (final Number x : list) {
-                for (int i = 0; i < this.sigSize; i++) {
-                    signature[i] = Math.min(signature[i], universalHashing(i, x));
-                }
-            }
-
-            return signature;
-        }
-
-
-        private int universalHashing(final int i, final Number x) {
-            return (int) ((this.a[i] * x.longValue() + this.b[i]) % LARGE_PRIME); // TODO removed %n
+            return signature(this.sigSize, this.a, this.b, this.set);
         }
     }
 }
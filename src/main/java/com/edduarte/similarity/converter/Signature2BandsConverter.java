@@ -55,6 +55,38 @@ public class Signature2BandsConverter
     }
 
 
+    /**
+     * @return the first signature slot of the specified band, for signatures
+     * of the specified size
+     */
+    public int bandFrom(final int sigSize, final int band)
+    {
+        return band * (sigSize / this.b);
+    }
+
+    /**
+     * @return the slot after the last signature slot of the specified band,
+     * for signatures of the specified size
+     */
+    public int bandTo(final int sigSize, final int band)
+    {
+        return band == this.b - 1 ? sigSize : (band + 1) * (sigSize / this.b);
+    }
+
+    /**
+     * Computes the value of one band from its signature slots [from, to), as
+     * in {@link #compute(int[])}.
+     */
+    public static int band(final int[] sig, final int from, final int to)
+    {
+        int res = 0;
+        for (int i = from; i < to; i++) {
+            res = (int) (res + (long) sig[i] * LARGE_PRIME);
+        }
+        return res;
+    }
+
+
     @Override
     public Callable<int[]> apply(final int[] sig) {
         return new BandsCallable(sig, this.b, this.r);
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.converter;
+
+import com.edduarte.similarity.hash.Murmur3;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Processor class to retrieve the hashes of word n-gram shingles. The text is
+ * split into tokens, every token is hashed once with the 64-bit
+ * {@link Murmur3} hash, and the hashes of every n consecutive tokens are
+ * combined into the hash of a shingle. No substrings are created, and a long
+ * text yields about as many shingles as it has words, instead of one per
+ * character.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class TokenShingler implements Function<CharSequence, Callable<long[]>> {
+
+    private static final long SEED = 0x5f4a3c2d1e0f9a8bL;
+
+    private static final long COMBINE = 0x9e3779b97f4a7c15L;
+
+    /**
+     * N value, generating shingles with n tokens
+     */
+    private final int n;
+
+    private final Pattern delimiter;
+
+
+    /**
+     * Splits tokens on every character that is not a letter or a digit.
+     */
+    public TokenShingler(int n) {
+        this(n, null);
+    }
+
+
+    /**
+     * @param n         the number of tokens of each shingle
+     * @param delimiter the pattern of the text between tokens, or null to
+     *                  split on every character that is not a letter or a
+     *                  digit
+     */
+    public TokenShingler(int n, Pattern delimiter) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Shingles must have at least one token.");
+        }
+        this.n = n;
+        this.delimiter = delimiter;
+    }
+
+
+    @Override
+    public Callable<long[]> apply(CharSequence s) {
+        return () -> compute(s);
+    }
+
+
+    /**
+     * @return the hashes of the shingles of the text, in the order they
+     * occur. A text with fewer than n tokens yields a single shingle of all
+     * of its tokens, and a text with no tokens yields no shingles.
+     */
+    public long[] compute(CharSequence text) {
+        long[] tokens = delimiter == null ? tokenize(text) : tokenize(text, delimiter);
+        int count = tokens.length;
+        if (count == 0) {
+            return tokens;
+        }
+        int width = Math.min(n, count);
+        long[] shingles = new long[count - width + 1];
+        for (int i = 0; i < shingles.length; i++) {
+            long h = 0;
+            for (int j = 0; j < width; j++) {
+                h = (h + tokens[i + j]) * COMBINE;
+            }
+            shingles[i] = Murmur3.fmix64(h);
+        }
+        return shingles;
+    }
+
+
+    public int getN() {
+        return n;
+    }
+
+
+    private static long[] tokenize(CharSequence text) {
+        long[] tokens = new long[16];
+        int count = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                }
+                tokens[count++] = Murmur3.hash64(text, start, i, SEED);
+            }
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+
+
+    private static long[] tokenize(CharSequence text, Pattern delimiter) {
+        long[] tokens = new long[16];
+        int count = 0;
+        Matcher m = delimiter.matcher(text);
+        int start = 0;
+        while (true) {
+            int end = m.find() ? m.start() : text.length();
+            if (end > start) {
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                }
+                tokens[count++] = Murmur3.hash64(text, start, end, SEED);
+            }
+            if (end == text.length()) {
+                break;
+            }
+            start = m.end();
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.converter;
+
+import com.edduarte.similarity.hash.HashProvider;
+import com.edduarte.similarity.hash.Murmur3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Processor class to retrieve the hashes of shingles of k characters
+ * directly from UTF-8 encoded bytes, without decoding them into a string. A
+ * shingle is the range of bytes of k consecutive code points, and its hash
+ * is the 64-bit {@link Murmur3} hash of those bytes, which is the same as
+ * the hash of the UTF-8 encoding of the shingle as a string.
+ * <p>
+ * Files are memory-mapped, so that shingling a large file reads it straight
+ * from the page cache, and {@link #signature(ByteBuffer, int)} folds the
+ * shingles into a minhash signature as they are hashed, without collecting
+ * them first.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class Utf8Shingler implements Function<ByteBuffer, Callable<long[]>> {
+
+    /**
+     * Seed of the hash of every shingle.
+     */
+    public static final long SEED = 0;
+
+    /**
+     * K value, generating shingles with k code points
+     */
+    private final int k;
+
+
+    public Utf8Shingler(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Shingles must have at least one character.");
+        }
+        this.k = k;
+    }
+
+
+    @Override
+    public Callable<long[]> apply(ByteBuffer bytes) {
+        return () -> compute(bytes);
+    }
+
+
+    /**
+     * Generates the minhash signature of the remaining bytes of the buffer,
+     * whose position is not changed. Every shingle hash is folded into the
+     * signature as it is computed, so no memory is allocated per shingle,
+     * and large buffers are split into ranges of bytes that are signed in
+     * parallel on the fork-join pool, like a large array of shingles is by
+     * {@link HashedShingles2SignatureConverter}.
+     *
+     * @param sigSize the length of the signature array to be generated
+     */
+    public int[] signature(ByteBuffer bytes, int sigSize) {
+        int from = bytes.position();
+        return ParallelSignature.compute(bytes.remaining(), sigSize, (start, end, sig) ->
+                shingles(bytes, from + start, from + end,
+                        hash -> HashProvider.minHash(hash, sig)));
+    }
+
+
+    /**
+     * Generates the minhash signature of the UTF-8 encoded file, which is
+     * memory-mapped instead of read into the heap.
+     *
+     * @param sigSize the length of the signature array to be generated
+     */
+    public int[] signature(Path file, int sigSize) throws IOException {
+        return signature(map(file), sigSize);
+    }
+
+
+    /**
+     * @return true if the remaining bytes of the buffer have at least k code
+     * points, and so at least one shingle
+     */
+    public boolean hasShingles(ByteBuffer bytes) {
+        int codePoints = 0;
+        for (int p = bytes.position(); p < bytes.limit() && codePoints < k; p++) {
+            if ((bytes.get(p) & 0xc0) != 0x80) {
+                codePoints++;
+            }
+        }
+        return codePoints >= k;
+    }
+
+
+    /**
+     * Collects the hashes of the shingles of the remaining bytes of the
+     * buffer, whose position is not changed. This holds a long per code point
+     * in memory, so large buffers should be signed with
+     * {@link #signature(ByteBuffer, int)} instead.
+     *
+     * @return the hashes of the shingles in the remaining bytes of the
+     * buffer
+     * @throws IllegalStateException if there are more shingles than the
+     *                               largest array can hold
+     */
+    public long[] compute(ByteBuffer bytes) {
+        ShingleArray shingles = new ShingleArray(Math.min(bytes.remaining(), 1 << 20));
+        shingles(bytes, bytes.position(), bytes.limit(), shingles);
+        return shingles.toArray();
+    }
+
+
+    /**
+     * @return the hashes of the shingles of the UTF-8 encoded file
+     */
+    public long[] compute(Path file) throws IOException {
+        return compute(map(file));
+    }
+
+
+    /**
+     * Passes the hashes of the shingles that start in the bytes [from, to)
+     * of the buffer to the specified action, in order. Shingles may end past
+     * to, up to the limit of the buffer. As every shingle starts in exactly
+     * one range, splitting the buffer into ranges yields every shingle once.
+     */
+    private void shingles(ByteBuffer bytes, int from, int to, LongConsumer action) {
+        int limit = bytes.limit();
+        // starts of the last k code points, indexed by their number modulo k
+        int[] starts = new int[k];
+        int codePoints = 0;
+        for (int p = from; p <= limit; p++) {
+            // the end of the buffer closes the last shingle, and continuation
+            // bytes (10xxxxxx) are never the start of a code point, so a range
+            // that starts inside a code point skips to the next one
+            if (p < limit && (bytes.get(p) & 0xc0) == 0x80) {
+                continue;
+            }
+            int slot = codePoints % k;
+            if (codePoints >= k) {
+                if (starts[slot] >= to) {
+                    return;
+                }
+                action.accept(Murmur3.hash64(bytes, starts[slot], p, SEED));
+            }
+            starts[slot] = p;
+            codePoints++;
+        }
+    }
+
+
+    /**
+     * Maps the whole file into memory, read-only. The mapping is released
+     * when the returned buffer is garbage collected.
+     *
+     * @throws IllegalArgumentException if the file is larger than 2GB
+     */
+    public static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Cannot map " + file + ", which is larger than 2GB.");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+
+    public int getK() {
+        return k;
+    }
+
+
+    /**
+     * Growable array of shingle hashes, which fails clearly instead of
+     * overflowing when it cannot grow any further.
+     */
+    private static final class ShingleArray implements LongConsumer {
+
+        /**
+         * Largest array length supported by most JVMs.
+         */
+        private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+        private long[] shingles;
+
+        private int count;
+
+
+        private ShingleArray(int capacity) {
+            this.shingles = new long[capacity];
+        }
+
+
+        @Override
+        public void accept(long hash) {
+            if (count == shingles.length) {
+                if (count >= MAX_LENGTH) {
+                    throw new IllegalStateException("Cannot hold more than " +
+                            MAX_LENGTH + " shingles in an array.");
+                }
+                int length = (int) Math.min(MAX_LENGTH, Math.max(16L, 2L * count));
+                shingles = Arrays.copyOf(shingles, length);
+            }
+            shingles[count++] = hash;
+        }
+
+
+        private long[] toArray() {
+            return count == shingles.length ? shingles : Arrays.copyOf(shingles, count);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.execution;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Execution strategy that uses a {@link CostModel} to decide whether each task
+ * runs inline, on virtual threads or on a fork-join pool. Tasks handed to a
+ * pool are bounded by a maximum queue depth: when that many tasks are already
+ * pending, the submitting thread runs the task itself.
+ * <p>
+ * Instances are immutable: every {@code with} method returns a new strategy,
+ * so the shared {@link ExecutionStrategy#defaults()} cannot be reconfigured.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class AdaptiveExecutionStrategy implements ExecutionStrategy {
+
+    static final ExecutionStrategy DEFAULT = new AdaptiveExecutionStrategy();
+
+    private static final Executor INLINE = Runnable::run;
+
+    private final CostModel costModel;
+
+    private final ExecutorService virtualExecutor;
+
+    private final ForkJoinPool forkJoinPool;
+
+    private final int maxQueueDepth;
+
+    private final Executor boundedVirtual;
+
+    private final Executor boundedForkJoin;
+
+
+    AdaptiveExecutionStrategy() {
+        this(CostModel.defaults(), null, null,
+                16 * Runtime.getRuntime().availableProcessors());
+    }
+
+
+    private AdaptiveExecutionStrategy(CostModel costModel,
+                                      ExecutorService virtualExecutor,
+                                      ForkJoinPool forkJoinPool,
+                                      int maxQueueDepth) {
+        this.costModel = costModel;
+        this.virtualExecutor = virtualExecutor;
+        this.forkJoinPool = forkJoinPool;
+        this.maxQueueDepth = maxQueueDepth;
+        this.boundedVirtual = new BoundedExecutor(virtualExecutor != null ?
+                virtualExecutor : SharedExecutors.virtual(), maxQueueDepth);
+        this.boundedForkJoin = new BoundedExecutor(forkJoinPool != null ?
+                forkJoinPool : ForkJoinPool.commonPool(), maxQueueDepth);
+    }
+
+
+    /**
+     * @return a copy of this strategy with the specified cost model, which
+     * selects where each task runs. Defaults to {@link CostModel#defaults()}.
+     */
+    public AdaptiveExecutionStrategy withCostModel(CostModel costModel) {
+        return new AdaptiveExecutionStrategy(costModel, virtualExecutor,
+                forkJoinPool, maxQueueDepth);
+    }
+
+
+    /**
+     * @return a copy of this strategy with the specified executor for tasks
+     * in {@link ExecutionMode#VIRTUAL} mode. If nothing is provided then a
+     * shared executor is used, which starts a virtual thread per task on JDK
+     * 21+ and uses a cached pool of daemon threads otherwise.
+     */
+    public AdaptiveExecutionStrategy withExecutor(ExecutorService executor) {
+        return new AdaptiveExecutionStrategy(costModel, executor,
+                forkJoinPool, maxQueueDepth);
+    }
+
+
+    /**
+     * @return a copy of this strategy with the specified pool for tasks in
+     * {@link ExecutionMode#FORK_JOIN} mode. If nothing is provided then the
+     * common pool is used.
+     */
+    public AdaptiveExecutionStrategy withForkJoinPool(ForkJoinPool pool) {
+        return new AdaptiveExecutionStrategy(costModel, virtualExecutor,
+                pool, maxQueueDepth);
+    }
+
+
+    /**
+     * @return a copy of this strategy with the specified maximum number of
+     * tasks that can be pending on each pool before submitting threads start
+     * running tasks themselves
+     */
+    public AdaptiveExecutionStrategy withMaxQueueDepth(int maxQueueDepth) {
+        return new AdaptiveExecutionStrategy(costModel, virtualExecutor,
+                forkJoinPool, maxQueueDepth);
+    }
+
+
+    @Override
+    public Executor executorFor(long cost) {
+        switch (costModel.select(cost)) {
+            case INLINE:
+                return INLINE;
+            case FORK_JOIN:
+                return boundedForkJoin;
+            default:
+                return boundedVirtual;
+        }
+    }
+}
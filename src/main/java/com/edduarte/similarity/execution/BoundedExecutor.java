@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.execution;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executor that limits how many tasks can be queued or running on a delegate
+ * executor. Once the limit is reached, new tasks are run on the submitting
+ * thread, which throttles producers to the speed of the pool instead of
+ * letting its queue grow without bounds.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class BoundedExecutor implements Executor {
+
+    private final Executor delegate;
+
+    private final Semaphore permits;
+
+
+    BoundedExecutor(Executor delegate, int maxQueueDepth) {
+        if (maxQueueDepth < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum queue depth must be at least 1.");
+        }
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxQueueDepth);
+    }
+
+
+    @Override
+    public void execute(Runnable task) {
+        if (!permits.tryAcquire()) {
+            // queue is full, so the caller pays for the task itself
+            task.run();
+            return;
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.execution;
+
+/**
+ * Selects an {@link ExecutionMode} based on the estimated cost of a task.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+@FunctionalInterface
+public interface CostModel {
+
+    /**
+     * Tasks cheaper than this (e.g. shingling a short string or signing a
+     * couple dozen shingles) are run inline by the default cost model.
+     */
+    long DEFAULT_INLINE_THRESHOLD = 50_000;
+
+    /**
+     * Tasks at least as expensive as this (e.g. signing an article-sized
+     * document with a 100-element signature) are sent to a fork-join pool by
+     * the default cost model.
+     */
+    long DEFAULT_FORK_JOIN_THRESHOLD = 5_000_000;
+
+
+    /**
+     * @param cost the estimated number of elementary operations of the task
+     * @return where the task should run
+     */
+    ExecutionMode select(long cost);
+
+
+    /**
+     * Cost model that uses {@link #DEFAULT_INLINE_THRESHOLD} and
+     * {@link #DEFAULT_FORK_JOIN_THRESHOLD}.
+     */
+    static CostModel defaults() {
+        return thresholds(DEFAULT_INLINE_THRESHOLD, DEFAULT_FORK_JOIN_THRESHOLD);
+    }
+
+
+    /**
+     * Cost model that runs tasks inline when their cost is below
+     * {@code inlineBelow}, on a fork-join pool when their cost is at least
+     * {@code forkJoinFrom}, and on virtual threads otherwise.
+     */
+    static CostModel thresholds(long inlineBelow, long forkJoinFrom) {
+        if (inlineBelow > forkJoinFrom) {
+            throw new IllegalArgumentException("The inline threshold (" +
+                    inlineBelow + ") cannot be higher than the fork-join " +
+                    "threshold (" + forkJoinFrom + ").");
+        }
+        return cost -> {
+            if (cost < inlineBelow) {
+                return ExecutionMode.INLINE;
+            } else if (cost >= forkJoinFrom) {
+                return ExecutionMode.FORK_JOIN;
+            } else {
+                return ExecutionMode.VIRTUAL;
+            }
+        };
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.execution;
+
+/**
+ * The places where an {@link AdaptiveExecutionStrategy} can run a task.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public enum ExecutionMode {
+    /**
+     * Runs the task on the calling thread. Best for tasks that are cheaper
+     * than handing them over to another thread.
+     */
+    INLINE,
+    /**
+     * Runs the task on a virtual thread (JDK 21+) or on a shared cached
+     * thread pool on older runtimes.
+     */
+    VIRTUAL,
+    /**
+     * Runs the task on a fork-join pool, where large inputs can be split into
+     * smaller sub-tasks.
+     */
+    FORK_JOIN
+}
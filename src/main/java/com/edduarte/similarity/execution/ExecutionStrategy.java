@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.execution;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Strategy that decides where the shingle, signature and band processing
+ * tasks of a similarity engine are executed. Every task is submitted with an
+ * estimate of its cost (roughly the number of elementary operations it will
+ * perform), so that cheap tasks can run on the calling thread while expensive
+ * ones are handed to a pool.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+@FunctionalInterface
+public interface ExecutionStrategy {
+
+    /**
+     * Returns the executor that should run a task with the specified cost.
+     *
+     * @param cost the estimated number of elementary operations of the task
+     */
+    Executor executorFor(long cost);
+
+
+    /**
+     * Submits a task with the specified cost to the executor selected by this
+     * strategy. If the selected executor runs tasks on the calling thread, the
+     * returned future is already completed.
+     *
+     * @param task the task to run
+     * @param cost the estimated number of elementary operations of the task
+     * @return a future that completes with the result of the task
+     */
+    default <T> CompletableFuture<T> submit(Callable<T> task, long cost) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executorFor(cost).execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+
+    /**
+     * Runs every task on the calling thread.
+     */
+    static ExecutionStrategy inline() {
+        return cost -> Runnable::run;
+    }
+
+
+    /**
+     * Spawns every task on the specified executor, regardless of its cost.
+     */
+    static ExecutionStrategy of(ExecutorService executor) {
+        return cost -> executor;
+    }
+
+
+    /**
+     * Shared adaptive strategy with the default cost model and pools, used by
+     * the {@link com.edduarte.similarity.Similarity} factories when no executor
+     * or strategy is provided. It runs small inputs inline and spawns larger
+     * ones on shared pools, and cannot be reconfigured; use
+     * {@link #adaptive()} for a strategy with other settings.
+     */
+    static ExecutionStrategy defaults() {
+        return AdaptiveExecutionStrategy.DEFAULT;
+    }
+
+
+    /**
+     * Chooses between running tasks inline, on virtual threads (or a shared
+     * cached pool before JDK 21) or on a fork-join pool, based on the cost of
+     * each task.
+     */
+    static AdaptiveExecutionStrategy adaptive() {
+        return new AdaptiveExecutionStrategy();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.execution;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lazily created executors that are shared by every strategy that was not
+ * given its own, and that live for as long as the JVM does.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class SharedExecutors {
+
+    private SharedExecutors() {
+    }
+
+
+    /**
+     * Executor that starts a new virtual thread for each task on JDK 21+, or a
+     * cached pool of daemon threads on older runtimes.
+     */
+    static ExecutorService virtual() {
+        return VirtualHolder.INSTANCE;
+    }
+
+
+    private static final class VirtualHolder {
+
+        private static final ExecutorService INSTANCE;
+
+        static {
+            ExecutorService exec;
+            try {
+                // looked up reflectively so that this library still runs on
+                // JDK versions that do not have virtual threads
+                Method m = Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor");
+                exec = (ExecutorService) m.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                exec = Executors.newCachedThreadPool(new DaemonThreadFactory());
+            }
+            INSTANCE = exec;
+        }
+    }
+
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "similarity-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
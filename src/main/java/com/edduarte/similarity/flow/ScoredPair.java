@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.flow;
+
+/**
+ * A {@link SimilarityPair} together with the similarity coefficient that was
+ * calculated for it.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ScoredPair<T> {
+
+    private final SimilarityPair<T> pair;
+
+    private final double similarity;
+
+
+    public ScoredPair(SimilarityPair<T> pair, double similarity) {
+        this.pair = pair;
+        this.similarity = similarity;
+    }
+
+
+    public SimilarityPair<T> getPair() {
+        return pair;
+    }
+
+
+    public double getSimilarity() {
+        return similarity;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.flow;
+
+/**
+ * Two items to be compared by a {@link SimilarityProcessor}.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class SimilarityPair<T> {
+
+    private final T first;
+
+    private final T second;
+
+
+    public SimilarityPair(T first, T second) {
+        this.first = first;
+        this.second = second;
+    }
+
+
+    public T getFirst() {
+        return first;
+    }
+
+
+    public T getSecond() {
+        return second;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.flow;
+
+import com.edduarte.similarity.Similarity;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processor that scores a stream of pairs with a {@link Similarity} engine and
+ * publishes the results in the same order as the pairs were received.
+ * <p>
+ * Pairs are scored with {@link Similarity#calculateAsync}, so several pairs can
+ * be in flight at the same time. The processor never holds more than
+ * {@code capacity} pairs (being scored or waiting to be delivered), and only
+ * requests more pairs from upstream as that space frees up. When the
+ * subscriber is slower than the producer, the buffer fills up and upstream
+ * demand stops, instead of memory growing without bounds.
+ * <p>
+ * Only one subscriber is supported. If scoring any pair fails, the failure is
+ * sent to the subscriber and the upstream subscription is cancelled.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class SimilarityProcessor<T>
+        implements Flow.Processor<SimilarityPair<T>, ScoredPair<T>> {
+
+    private final Similarity<T> similarity;
+
+    private final int capacity;
+
+    private final Queue<Pending<T>> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Pairs in the queue, either being scored or waiting for demand.
+     */
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    /**
+     * Pairs requested from upstream that have not arrived yet.
+     */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final AtomicLong demand = new AtomicLong();
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    private volatile Flow.Subscription upstream;
+
+    private volatile Flow.Subscriber<? super ScoredPair<T>> downstream;
+
+    private volatile boolean done;
+
+    private volatile Throwable error;
+
+    private volatile boolean cancelled;
+
+
+    /**
+     * @param similarity the engine used to score each pair
+     * @param capacity   the maximum number of pairs that are being scored or
+     *                   waiting to be delivered at any time
+     */
+    public SimilarityProcessor(Similarity<T> similarity, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "The capacity must be at least 1.");
+        }
+        this.similarity = similarity;
+        this.capacity = capacity;
+    }
+
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        drain();
+    }
+
+
+    @Override
+    public void onNext(SimilarityPair<T> pair) {
+        if (done || cancelled) {
+            return;
+        }
+        CompletableFuture<Double> future;
+        try {
+            future = similarity.calculateAsync(pair.getFirst(), pair.getSecond());
+        } catch (RuntimeException ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
+        // count the pair as buffered before it stops being outstanding, so
+        // that the free space is never over-estimated
+        buffered.incrementAndGet();
+        outstanding.decrementAndGet();
+        queue.offer(new Pending<>(pair, future));
+        future.whenComplete((score, ex) -> drain());
+    }
+
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ScoredPair<T>> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException(
+                    "This processor only supports one subscriber."));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    cancelUpstream();
+                    error = new IllegalArgumentException(
+                            "The number of requested items must be positive.");
+                    done = true;
+                } else {
+                    addDemand(n);
+                }
+                drain();
+            }
+
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        downstream = subscriber;
+        drain();
+    }
+
+
+    private void addDemand(long n) {
+        long current;
+        long next;
+        do {
+            current = demand.get();
+            if (current == Long.MAX_VALUE) {
+                return;
+            }
+            next = current + n;
+            if (next < 0) {
+                next = Long.MAX_VALUE;
+            }
+        } while (!demand.compareAndSet(current, next));
+    }
+
+
+    private void cancelUpstream() {
+        Flow.Subscription s = upstream;
+        if (s != null) {
+            s.cancel();
+        }
+    }
+
+
+    /**
+     * Delivers completed scores for as long as there is demand, and requests
+     * as many pairs from upstream as there is free space for. Only one thread
+     * runs the loop at a time, while calls from other threads make it run one
+     * more time.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            if (cancelled) {
+                queue.clear();
+                return;
+            }
+
+            Flow.Subscriber<? super ScoredPair<T>> d = downstream;
+            if (d != null) {
+                Throwable ex = error;
+                if (ex != null) {
+                    terminate();
+                    d.onError(ex);
+                    return;
+                }
+
+                long requested = demand.get();
+                long emitted = 0;
+                while (emitted != requested) {
+                    Pending<T> p = queue.peek();
+                    if (p == null || !p.future.isDone()) {
+                        break;
+                    }
+                    queue.poll();
+                    buffered.decrementAndGet();
+
+                    double score;
+                    try {
+                        score = p.future.join();
+                    } catch (CompletionException ce) {
+                        terminate();
+                        cancelUpstream();
+                        d.onError(ce.getCause() != null ? ce.getCause() : ce);
+                        return;
+                    }
+                    d.onNext(new ScoredPair<>(p.pair, score));
+                    emitted++;
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+
+                if (done && queue.isEmpty()) {
+                    terminate();
+                    d.onComplete();
+                    return;
+                }
+            }
+
+            Flow.Subscription up = upstream;
+            if (up != null && !done) {
+                int free = capacity - buffered.get() - outstanding.get();
+                if (free > 0) {
+                    outstanding.addAndGet(free);
+                    up.request(free);
+                }
+            }
+
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+
+    private void terminate() {
+        cancelled = true;
+        queue.clear();
+    }
+
+
+    private static class Pending<T> {
+
+        private final SimilarityPair<T> pair;
+
+        private final CompletableFuture<Double> future;
+
+
+        private Pending(SimilarityPair<T> pair, CompletableFuture<Double> future) {
+            this.pair = pair;
+            this.future = future;
+        }
+    }
+}
@@ -5,8 +5,11 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.BitSet;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.zip.Adler32;
 import java.util.zip.CRC32;
@@ -19,6 +22,10 @@ public class HashProvider {
 
     private static final int seed32 = 89478583;
 
+    private static final int POOLED_DIGESTS = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final Map<String, BlockingQueue<MessageDigest>> DIGESTS = new ConcurrentHashMap<>();
+
 
     /**
      * @param a the byte array to be hashed
@@ -69,6 +76,20 @@ public class HashProvider {
     }
 
 
+    /**
+     * Universal hashing with the default {@link MultiplyShift} family, whose
+     * coefficients are drawn once instead of on every call.
+     *
+     * @param value the value to be hashed
+     * @param m     integer output range [1,size]
+     * @param k     number of hashes to be computed
+     * @return array with <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static int[] hashMultiplyShift(final byte[] value, final int m, final int k) {
+        return MultiplyShift.DEFAULT.hash(value, m, k);
+    }
+
+
     /**
      * @param value the value to be hashed
      * @param m     integer output range [1,size]
@@ -316,6 +337,150 @@ public class HashProvider {
     }
 
 
+    /**
+     * Updates a minhash signature with a 64-bit hash of one element, deriving
+     * the value of every slot from that single hash (see {@link #derive}).
+     *
+     * @param hash      the 64-bit hash of the element, e.g. from {@link Murmur3}
+     * @param signature the signature to update, initialized with
+     *                  {@link Integer#MAX_VALUE}
+     */
+    public static void minHash(final long hash, final int[] signature) {
+        minHash(hash, signature, 0, signature.length);
+    }
+
+
+    /**
+     * Updates the slots [from, to) of a minhash signature with a 64-bit hash
+     * of one element, leaving the other slots untouched. As every slot is
+     * derived independently, the updated slots get the same values as with
+     * {@link #minHash(long, int[])}.
+     *
+     * @param hash      the 64-bit hash of the element
+     * @param signature the signature to update
+     * @param from      the first slot to update
+     * @param to        the slot after the last one to update
+     */
+    public static void minHash(final long hash, final int[] signature,
+                               final int from, final int to) {
+        final long h2 = secondHash(hash);
+        long g = hash + from * h2;
+        for (int i = from; i < to; i++) {
+            final int v = derive(g);
+            if (v < signature[i]) {
+                signature[i] = v;
+            }
+            g += h2;
+        }
+    }
+
+
+    /**
+     * Hashes the value once with the 64-bit Murmur 3 hash and derives the k
+     * positions from it, mapping each derived value to [0, m) with a
+     * multiplication instead of a modulo or rejection sampling.
+     *
+     * @param value the value to be hashed
+     * @param m     integer output range [1,size]
+     * @param k     number of hashes to be computed
+     * @return array with <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static int[] hashMurmur3x64(final byte[] value, final int m, final int k) {
+        return derivePositions(Murmur3.hash64(value, 0), m, k);
+    }
+
+
+    /**
+     * Hashes the value once with xxHash64 and derives the k positions from
+     * it, like {@link #hashMurmur3x64}.
+     *
+     * @param value the value to be hashed
+     * @param m     integer output range [1,size]
+     * @param k     number of hashes to be computed
+     * @return array with <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static int[] hashXXHash64(final byte[] value, final int m, final int k) {
+        return derivePositions(XXHash64.hash64(value, 0), m, k);
+    }
+
+
+    /**
+     * Hashes the value once with wyhash and derives the k positions from it,
+     * like {@link #hashMurmur3x64}.
+     *
+     * @param value the value to be hashed
+     * @param m     integer output range [1,size]
+     * @param k     number of hashes to be computed
+     * @return array with <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static int[] hashWyHash(final byte[] value, final int m, final int k) {
+        return derivePositions(WyHash.hash64(value, 0), m, k);
+    }
+
+
+    /**
+     * Derives k positions in [0, m) from a 64-bit hash, mapping each derived
+     * value to the range with a multiplication instead of a modulo.
+     */
+    private static int[] derivePositions(final long hash, final int m, final int k) {
+        final int[] positions = new int[k];
+        final long h2 = secondHash(hash);
+        long g = hash;
+        for (int i = 0; i < k; i++) {
+            positions[i] = (int) (((derive(g) & 0xffffffffL) * m) >>> 32);
+            g += h2;
+        }
+        return positions;
+    }
+
+
+    /**
+     * Hashes a range of a byte array with the 64-bit Murmur 3 hash and seed 0.
+     */
+    private static long hash64Murmur3(final byte[] value, final int offset, final int length) {
+        return Murmur3.hash64(value, offset, length, 0);
+    }
+
+
+    /**
+     * Hashes a range of a byte array with xxHash64 and seed 0.
+     */
+    private static long hash64XXHash(final byte[] value, final int offset, final int length) {
+        return XXHash64.hash64(value, offset, length, 0);
+    }
+
+
+    /**
+     * Hashes a range of a byte array with wyhash and seed 0.
+     */
+    private static long hash64WyHash(final byte[] value, final int offset, final int length) {
+        return WyHash.hash64(value, offset, length, 0);
+    }
+
+
+    /**
+     * Derives the i-th value of a 64-bit hash h1 from g = h1 + i * h2, where
+     * h2 is the {@link #secondHash} of h1 (the scheme of Kirsch and
+     * Mitzenmacher). The arithmetic sequence is passed through a
+     * multiply-xorshift mix, so that different slots do not order values
+     * alike.
+     */
+    static int derive(long g) {
+        g ^= g >>> 32;
+        g *= 0xd6e8feb86659fd93L;
+        g ^= g >>> 32;
+        return (int) g;
+    }
+
+
+    /**
+     * @return the odd step h2 of the derived sequence of a 64-bit hash
+     */
+    static long secondHash(final long hash) {
+        return Murmur3.fmix64(hash ^ 0x9e3779b97f4a7c15L) | 1;
+    }
+
+
     /**
      * Performs rejection sampling on a random 32bit Java int (sampled from Integer.MIN_VALUE to Integer.MAX_VALUE).
      *
@@ -356,43 +521,42 @@ public class HashProvider {
      * @return array with <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
      */
     public static int[] hashCrypt(final byte[] value, final int m, final int k, final String method) {
-        //MessageDigest is not thread-safe --> use new instance
-        MessageDigest cryptHash = null;
+        //MessageDigest is not thread-safe --> borrow an instance from the pool
+        final BlockingQueue<MessageDigest> pool = digests(method);
+        final MessageDigest cryptHash = borrow(pool, method);
         try {
-            cryptHash = MessageDigest.getInstance(method);
-        } catch (final NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+            return hashCrypt(value, m, k, cryptHash);
+        } finally {
+            cryptHash.reset();
+            pool.offer(cryptHash);
         }
+    }
 
+
+    private static int[] hashCrypt(final byte[] value, final int m, final int k, final MessageDigest cryptHash) {
         final int[] positions = new int[k];
 
         int computedHashes = 0;
         // Add salt to the hash deterministically in order to generate different
-        // hashes for each round
-        // Alternative: use pseudorandom sequence
-        final Random r = new Random(seed32);
+        // hashes for each round, by chaining the previous digest
         byte[] digest = new byte[0];
         while (computedHashes < k) {
-            // byte[] saltBytes =
-            // ByteBuffer.allocate(4).putInt(r.nextInt()).array();
             cryptHash.update(digest);
             digest = cryptHash.digest(value);
-            final BitSet hashed = BitSet.valueOf(digest);
 
             // Convert the hash to numbers in the range [0,size)
             // Size of the BloomFilter rounded to the next power of two
             final int filterSize = 32 - Integer.numberOfLeadingZeros(m);
+            final long mask = (1L << filterSize) - 1;
             // Computed hash bits
             final int hashBits = digest.length * 8;
             // Split the hash value according to the size of the Bloomfilter --> higher performance than just doing modulo
             for (int split = 0; split < hashBits / filterSize
                     && computedHashes < k; split++) {
+                // Slice the bits [from, from + filterSize) of the digest, in
+                // the little-endian bit order of BitSet.valueOf(digest)
                 final int from = split * filterSize;
-                final int to = (split + 1) * filterSize;
-                final BitSet hashSlice = hashed.get(from, to);
-                // Bitset to Int
-                final long[] longHash = hashSlice.toLongArray();
-                final int intHash = longHash.length > 0 ? (int) longHash[0] : 0;
+                final int intHash = (int) ((bitsAt(digest, from) >>> (from & 7)) & mask);
                 // Only use the position if it's in [0,size); Called rejection sampling
                 if (intHash < m) {
                     positions[computedHashes] = intHash;
@@ -405,6 +569,51 @@ public class HashProvider {
     }
 
 
+    /**
+     * Reads up to 8 bytes of the digest, in little-endian order, starting at
+     * the byte that contains the specified bit. Bytes past the end of the
+     * digest are read as zeros.
+     */
+    private static long bitsAt(final byte[] digest, final int bit) {
+        final int start = bit >>> 3;
+        final int end = Math.min(start + 8, digest.length);
+        long bits = 0;
+        for (int i = end - 1; i >= start; i--) {
+            bits = (bits << 8) | (digest[i] & 0xffL);
+        }
+        return bits;
+    }
+
+
+    /**
+     * @param method the hash method name used by {@link MessageDigest#getInstance(String)}
+     * @return the pool of idle digests of the specified method, which keeps at most a couple of digests per
+     * processor so that reuse does not depend on the calling thread (tasks on virtual threads each run on a new
+     * thread)
+     */
+    private static BlockingQueue<MessageDigest> digests(final String method) {
+        return DIGESTS.computeIfAbsent(method, name -> new ArrayBlockingQueue<>(POOLED_DIGESTS));
+    }
+
+
+    /**
+     * @param pool   the pool of idle digests of the specified method
+     * @param method the hash method name used by {@link MessageDigest#getInstance(String)}
+     * @return an idle digest from the pool, or a new digest if the pool is empty
+     */
+    private static MessageDigest borrow(final BlockingQueue<MessageDigest> pool, final String method) {
+        final MessageDigest digest = pool.poll();
+        if (digest != null) {
+            return digest;
+        }
+        try {
+            return MessageDigest.getInstance(method);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
     /**
      * Different types of hash functions that can be used.
      */
@@ -419,9 +628,17 @@ public class HashProvider {
          * Generates hash values using the Carter Wegman function (<a href="http://en.wikipedia.org/wiki/Universal_hashing">Wikipedia</a>),
          * which is a universal hashing function. It thus has optimal guarantees for the uniformity of generated hash
          * values. On the downside, the performance is not optimal, as arithmetic operations on large numbers have to be
-         * performed.
+         * performed. {@link #MultiplyShift} gives the same kind of guarantees with 64-bit arithmetic only.
          */
         CarterWegman(HashProvider::hashCarterWegman),
+        /**
+         * Generates hash values using universal multiply-shift hashing (see {@link MultiplyShift}): every value is
+         * reduced to a 32-bit key with multilinear hashing, and each hash value is computed from the key as
+         * <code>(a_i*key + b_i) &gt;&gt;&gt; 32</code>. All the operations are 64-bit multiplications, additions and
+         * shifts, and the random coefficients a_i and b_i are drawn once, so it keeps the guarantees of universal
+         * hashing at a speed close to Murmur 3.
+         */
+        MultiplyShift(HashProvider::hashMultiplyShift),
         /**
          * Generates hash values using a Cyclic Redundancy Check (CRC32). CRC is designed as a checksum for data
          * integrity not as hash function but exhibits very good uniformity and is relatively fast.
@@ -453,6 +670,23 @@ public class HashProvider {
          * for random words.</p>
          */
         Murmur3KirschMitzenmacher(HashProvider::hashCassandra),
+        /**
+         * Hashes every value once with the 64-bit variant of Murmur 3 (see {@link Murmur3}) and derives all
+         * the values it needs from that hash, through the scheme h_i = h1 + i*h2 followed by a
+         * multiply-xorshift mix. No value is hashed twice, and no modulo or rejection sampling is needed, so
+         * signing costs one hash per shingle instead of one per shingle and signature slot.
+         */
+        Murmur3x64(HashProvider::hashMurmur3x64, HashProvider::hash64Murmur3),
+        /**
+         * Hashes every value once with the 64-bit xxHash (see {@link XXHash64}) and derives all the values it needs
+         * from that hash, like {@link #Murmur3x64}.
+         */
+        XXHash64(HashProvider::hashXXHash64, HashProvider::hash64XXHash),
+        /**
+         * Hashes every value once with wyhash (see {@link WyHash}) and derives all the values it needs from that
+         * hash, like {@link #Murmur3x64}. It is the fastest of the 64-bit methods on short values.
+         */
+        WyHash(HashProvider::hashWyHash, HashProvider::hash64WyHash),
         /**
          * Uses the Fowler–Noll–Vo (FNV) hash function to generate a hash values. It is superior to the standard
          * implementation in {@link Arrays} and can be easily implemented in most languages. Hashing then uses the very
@@ -494,15 +728,33 @@ public class HashProvider {
 
         private final HashFunction hashFunction;
 
+        private final Hash64Function hash64Function;
+
 
         HashMethod(final HashFunction hashFunction) {
+            this(hashFunction, null);
+        }
+
+
+        HashMethod(final HashFunction hashFunction, final Hash64Function hash64Function) {
             this.hashFunction = hashFunction;
+            this.hash64Function = hash64Function;
         }
 
 
         public HashFunction getHashFunction() {
             return this.hashFunction;
         }
+
+
+        /**
+         * @return the function that hashes a value to 64 bits, from which
+         * every signature slot can be derived, or null if this method only
+         * generates positions in a range
+         */
+        public Hash64Function getHash64Function() {
+            return this.hash64Function;
+        }
     }
 
 
@@ -521,4 +773,22 @@ public class HashProvider {
          */
         int[] hash(byte[] value, int m, int k);
     }
+
+
+    /**
+     * An interface which can be implemented to provide custom 64-bit hash
+     * functions.
+     */
+    public interface Hash64Function extends Serializable {
+
+        /**
+         * Computes a 64-bit hash value.
+         *
+         * @param value  the byte[] that contains the element to be hashed
+         * @param offset the index of the first byte of the element
+         * @param length the number of bytes of the element
+         * @return the hash value
+         */
+        long hash64(byte[] value, int offset, int length);
+    }
 }
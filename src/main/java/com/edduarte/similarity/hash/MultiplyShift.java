@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.hash;
+
+import java.io.Serializable;
+import java.util.SplittableRandom;
+
+/**
+ * A family of universal hash functions that only uses 64-bit multiplications,
+ * additions and shifts, see: Dietzfelbinger, "Universal hashing and k-wise
+ * independent random variables via integer arithmetic without primes", and
+ * Lemire and Kaser, "Strongly universal string hashing is fast".
+ * <p>
+ * A value is first reduced to a 32-bit key with multilinear hashing over its
+ * little-endian 32-bit words, <code>(a_0 + a_1*length + sum a_j*x_j) &gt;&gt;&gt; 32</code>,
+ * and the i-th function of the family maps that key with multiply-add-shift,
+ * <code>(a_i*key + b_i) &gt;&gt;&gt; 32</code>. Both steps are strongly
+ * universal into 32 bits when the coefficients are uniformly random 64-bit
+ * integers.
+ * <p>
+ * The coefficients are drawn once per family from its seed, and grow on
+ * demand with the longest value and the number of functions requested. As
+ * they are a deterministic sequence, a family always produces the same hashes
+ * for the same seed, and instances are safe to share between threads.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class MultiplyShift implements Serializable {
+
+    static final MultiplyShift DEFAULT = new MultiplyShift(0x5851f42d4c957f2dL);
+
+    private static final long serialVersionUID = 1L;
+
+    private final long seed;
+
+    /**
+     * Coefficients of the multilinear step: a_0, a_1 and one per word.
+     */
+    private transient volatile long[] keyCoefficients;
+
+    /**
+     * Coefficients of the multiply-add-shift step: a_i and b_i interleaved.
+     */
+    private transient volatile long[] functionCoefficients;
+
+
+    public MultiplyShift(long seed) {
+        this.seed = seed;
+        this.keyCoefficients = coefficients(seed, 64);
+        this.functionCoefficients = coefficients(~seed, 2 * 256);
+    }
+
+
+    /**
+     * Reduces a range of a byte array to a 32-bit key, with a collision
+     * probability of at most 2^-32 for any two distinct values.
+     *
+     * @return the key, in the lower 32 bits
+     */
+    public long key(byte[] value, int offset, int length) {
+        int words = (length + 3) >>> 2;
+        long[] a = keyCoefficients;
+        if (a.length < words + 2) {
+            a = growKeyCoefficients(words + 2);
+        }
+        long sum = a[0] + a[1] * length;
+        int end = offset + length;
+        int p = offset;
+        int j = 2;
+        for (; p + 4 <= end; p += 4, j++) {
+            long x = (value[p] & 0xffL)
+                    | (value[p + 1] & 0xffL) << 8
+                    | (value[p + 2] & 0xffL) << 16
+                    | (value[p + 3] & 0xffL) << 24;
+            sum += a[j] * x;
+        }
+        if (p < end) {
+            long x = 0;
+            for (int shift = 0; p < end; p++, shift += 8) {
+                x |= (value[p] & 0xffL) << shift;
+            }
+            sum += a[j] * x;
+        }
+        return sum >>> 32;
+    }
+
+
+    /**
+     * Computes the i-th function of the family over a key returned by
+     * {@link #key}.
+     *
+     * @return a 32-bit hash value
+     */
+    public int hash(int i, long key) {
+        long[] c = functionCoefficients;
+        if (c.length < 2 * i + 2) {
+            c = growFunctionCoefficients(2 * i + 2);
+        }
+        return (int) ((c[2 * i] * key + c[2 * i + 1]) >>> 32);
+    }
+
+
+    /**
+     * Computes the first k functions of the family over the value, each
+     * mapped to [0, m) with a multiplication instead of a modulo.
+     *
+     * @param value the value to be hashed
+     * @param m     integer output range [1,size]
+     * @param k     number of hashes to be computed
+     * @return array with <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public int[] hash(byte[] value, int m, int k) {
+        long[] c = functionCoefficients;
+        if (c.length < 2 * k) {
+            c = growFunctionCoefficients(2 * k);
+        }
+        long key = key(value, 0, value.length);
+        int[] positions = new int[k];
+        for (int i = 0; i < k; i++) {
+            long h = (c[2 * i] * key + c[2 * i + 1]) >>> 32;
+            positions[i] = (int) ((h * m) >>> 32);
+        }
+        return positions;
+    }
+
+
+    private synchronized long[] growKeyCoefficients(int n) {
+        long[] a = keyCoefficients;
+        if (a.length < n) {
+            a = coefficients(seed, Math.max(n, a.length * 2));
+            keyCoefficients = a;
+        }
+        return a;
+    }
+
+
+    private synchronized long[] growFunctionCoefficients(int n) {
+        long[] c = functionCoefficients;
+        if (c.length < n) {
+            c = coefficients(~seed, Math.max(n, c.length * 2));
+            functionCoefficients = c;
+        }
+        return c;
+    }
+
+
+    private static long[] coefficients(long seed, int n) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] coefficients = new long[n];
+        for (int i = 0; i < n; i++) {
+            coefficients[i] = random.nextLong();
+        }
+        return coefficients;
+    }
+
+
+    private Object readResolve() {
+        return new MultiplyShift(seed);
+    }
+}
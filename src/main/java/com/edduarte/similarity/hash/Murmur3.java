@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.hash;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The 64-bit variant of the Murmur 3 hash (the first half of
+ * MurmurHash3_x64_128), see: https://github.com/aappleby/smhasher
+ * <p>
+ * Besides byte arrays, it hashes ranges of a {@link ByteBuffer}, and ranges
+ * of a {@link CharSequence} as if they were encoded in UTF-16LE, so that
+ * tokens and shingles can be hashed without copying them.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class Murmur3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+
+    private Murmur3() {
+    }
+
+
+    public static long hash64(byte[] bytes, long seed) {
+        return hash64(bytes, 0, bytes.length, seed);
+    }
+
+
+    public static long hash64(byte[] bytes, int offset, int length, long seed) {
+        long h1 = seed;
+        long h2 = seed;
+        int blocks = length >>> 4;
+        for (int i = 0; i < blocks; i++) {
+            int p = offset + (i << 4);
+            long k1 = getLongLE(bytes, p);
+            long k2 = getLongLE(bytes, p + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = offset + (blocks << 4);
+        int remaining = length & 15;
+        for (int j = 0; j < remaining; j++) {
+            long b = bytes[tail + j] & 0xffL;
+            if (j < 8) {
+                k1 ^= b << (j << 3);
+            } else {
+                k2 ^= b << ((j - 8) << 3);
+            }
+        }
+        return finish(h1, h2, k1, k2, remaining, length);
+    }
+
+
+    /**
+     * Hashes the bytes in [from, to) of the buffer, giving the same value as
+     * hashing them in an array. The position, limit and byte order of the
+     * buffer are not used or changed.
+     */
+    public static long hash64(ByteBuffer buffer, int from, int to, long seed) {
+        boolean swap = buffer.order() != ByteOrder.LITTLE_ENDIAN;
+        long h1 = seed;
+        long h2 = seed;
+        int length = to - from;
+        int blocks = length >>> 4;
+        for (int i = 0; i < blocks; i++) {
+            int p = from + (i << 4);
+            long k1 = buffer.getLong(p);
+            long k2 = buffer.getLong(p + 8);
+            if (swap) {
+                k1 = Long.reverseBytes(k1);
+                k2 = Long.reverseBytes(k2);
+            }
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = from + (blocks << 4);
+        int remaining = length & 15;
+        for (int j = 0; j < remaining; j++) {
+            long b = buffer.get(tail + j) & 0xffL;
+            if (j < 8) {
+                k1 ^= b << (j << 3);
+            } else {
+                k2 ^= b << ((j - 8) << 3);
+            }
+        }
+        return finish(h1, h2, k1, k2, remaining, length);
+    }
+
+
+    /**
+     * Hashes the characters in [from, to) of the sequence, giving the same
+     * value as hashing their UTF-16LE encoding.
+     */
+    public static long hash64(CharSequence s, int from, int to, long seed) {
+        long h1 = seed;
+        long h2 = seed;
+        int length = to - from;
+        int blocks = length >>> 3;
+        for (int i = 0; i < blocks; i++) {
+            int p = from + (i << 3);
+            long k1 = s.charAt(p)
+                    | (long) s.charAt(p + 1) << 16
+                    | (long) s.charAt(p + 2) << 32
+                    | (long) s.charAt(p + 3) << 48;
+            long k2 = s.charAt(p + 4)
+                    | (long) s.charAt(p + 5) << 16
+                    | (long) s.charAt(p + 6) << 32
+                    | (long) s.charAt(p + 7) << 48;
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = from + (blocks << 3);
+        int remaining = length & 7;
+        for (int j = 0; j < remaining; j++) {
+            long c = s.charAt(tail + j);
+            if (j < 4) {
+                k1 ^= c << (j << 4);
+            } else {
+                k2 ^= c << ((j - 4) << 4);
+            }
+        }
+        return finish(h1, h2, k1, k2, remaining << 1, length << 1);
+    }
+
+
+    /**
+     * The finalization mix of Murmur 3, which makes every bit of the input
+     * affect every bit of the output.
+     */
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+
+    private static long finish(long h1, long h2, long k1, long k2,
+                               int tailBytes, int lengthBytes) {
+        if (tailBytes > 8) {
+            h2 ^= mixK2(k2);
+        }
+        if (tailBytes > 0) {
+            h1 ^= mixK1(k1);
+        }
+        h1 ^= lengthBytes;
+        h2 ^= lengthBytes;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return h1;
+    }
+
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+
+    private static long getLongLE(byte[] b, int i) {
+        return (b[i] & 0xffL)
+                | (b[i + 1] & 0xffL) << 8
+                | (b[i + 2] & 0xffL) << 16
+                | (b[i + 3] & 0xffL) << 24
+                | (b[i + 4] & 0xffL) << 32
+                | (b[i + 5] & 0xffL) << 40
+                | (b[i + 6] & 0xffL) << 48
+                | (b[i + 7] & 0xffL) << 56;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.hash;
+
+/**
+ * A 64-bit hash that is computed incrementally over chunks of its input, like
+ * a {@link java.util.zip.Checksum}. Updating it with several chunks gives the
+ * same value as hashing their concatenation at once.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public interface StreamingHash64 {
+
+    /**
+     * Updates the hash with the specified range of bytes.
+     */
+    StreamingHash64 update(byte[] bytes, int offset, int length);
+
+
+    /**
+     * Updates the hash with the specified bytes.
+     */
+    default StreamingHash64 update(byte[] bytes) {
+        return update(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Updates the hash with the characters in [from, to) of the sequence,
+     * encoded in UTF-16LE.
+     */
+    default StreamingHash64 update(CharSequence s, int from, int to) {
+        byte[] chunk = new byte[Math.min(256, (to - from) << 1)];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            chunk[n++] = (byte) c;
+            chunk[n++] = (byte) (c >>> 8);
+            if (n == chunk.length) {
+                update(chunk, 0, n);
+                n = 0;
+            }
+        }
+        return update(chunk, 0, n);
+    }
+
+
+    /**
+     * @return the hash of all the bytes passed to this hash since it was
+     * created or last reset
+     */
+    long getValue();
+
+
+    /**
+     * Resets the hash to its initial state, keeping its seed.
+     */
+    void reset();
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.hash;
+
+import static com.edduarte.similarity.hash.XXHash64.getIntLE;
+import static com.edduarte.similarity.hash.XXHash64.getLongLE;
+
+/**
+ * The final version 4 of wyhash with its default secret, see:
+ * https://github.com/wangyi-fudan/wyhash
+ * <p>
+ * Besides byte arrays, it hashes longs (as their 8 little-endian bytes) and
+ * ranges of a {@link CharSequence} as if they were encoded in UTF-16LE, and
+ * can be computed incrementally with {@link #newHash(long)}. The 128-bit
+ * products it relies on are computed with {@link Math#multiplyHigh}, corrected
+ * for unsigned operands.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class WyHash {
+
+    private static final long S0 = 0xa0761d6478bd642fL;
+
+    private static final long S1 = 0xe7037ed1a0b428dbL;
+
+    private static final long S2 = 0x8ebc6af09c88c6e3L;
+
+    private static final long S3 = 0x589965cc75374cc3L;
+
+
+    private WyHash() {
+    }
+
+
+    public static long hash64(byte[] bytes, long seed) {
+        return hash64(bytes, 0, bytes.length, seed);
+    }
+
+
+    public static long hash64(byte[] bytes, int offset, int length, long seed) {
+        seed ^= mix(seed ^ S0, S1);
+        long a;
+        long b;
+        if (length <= 16) {
+            if (length >= 4) {
+                int shift = (length >>> 3) << 2;
+                a = (getUInt(bytes, offset) << 32) | getUInt(bytes, offset + shift);
+                b = (getUInt(bytes, offset + length - 4) << 32)
+                        | getUInt(bytes, offset + length - 4 - shift);
+            } else if (length > 0) {
+                a = (bytes[offset] & 0xffL) << 16
+                        | (bytes[offset + (length >>> 1)] & 0xffL) << 8
+                        | (bytes[offset + length - 1] & 0xffL);
+                b = 0;
+            } else {
+                a = 0;
+                b = 0;
+            }
+            return finish(a, b, seed, length);
+        }
+
+        int p = offset;
+        int i = length;
+        if (i > 48) {
+            long see1 = seed;
+            long see2 = seed;
+            do {
+                seed = mix(getLongLE(bytes, p) ^ S1, getLongLE(bytes, p + 8) ^ seed);
+                see1 = mix(getLongLE(bytes, p + 16) ^ S2, getLongLE(bytes, p + 24) ^ see1);
+                see2 = mix(getLongLE(bytes, p + 32) ^ S3, getLongLE(bytes, p + 40) ^ see2);
+                p += 48;
+                i -= 48;
+            } while (i > 48);
+            seed ^= see1 ^ see2;
+        }
+        return tail(bytes, p, i, seed, length);
+    }
+
+
+    /**
+     * Hashes the 8 little-endian bytes of a long.
+     */
+    public static long hash64(long value, long seed) {
+        seed ^= mix(seed ^ S0, S1);
+        long lo = value & 0xffffffffL;
+        long hi = value >>> 32;
+        return finish(lo << 32 | hi, hi << 32 | lo, seed, 8);
+    }
+
+
+    /**
+     * Hashes the characters in [from, to) of the sequence, giving the same
+     * value as hashing their UTF-16LE encoding.
+     */
+    public static long hash64(CharSequence s, int from, int to, long seed) {
+        return newHash(seed).update(s, from, to).getValue();
+    }
+
+
+    /**
+     * @return a hash that can be updated with consecutive chunks of the input
+     */
+    public static StreamingHash64 newHash(long seed) {
+        return new Streaming(seed);
+    }
+
+
+    /**
+     * Mixes the last 1 to 48 bytes at p, which are preceded by at least 16
+     * bytes of the input, and finishes the hash.
+     */
+    private static long tail(byte[] bytes, int p, int i, long seed, long length) {
+        while (i > 16) {
+            seed = mix(getLongLE(bytes, p) ^ S1, getLongLE(bytes, p + 8) ^ seed);
+            i -= 16;
+            p += 16;
+        }
+        return finish(getLongLE(bytes, p + i - 16), getLongLE(bytes, p + i - 8), seed, length);
+    }
+
+
+    private static long finish(long a, long b, long seed, long length) {
+        a ^= S1;
+        b ^= seed;
+        long lo = a * b;
+        long hi = multiplyHighUnsigned(a, b);
+        return mix(lo ^ S0 ^ length, hi ^ S1);
+    }
+
+
+    /**
+     * @return the xor of the lower and upper halves of the 128-bit product
+     */
+    private static long mix(long a, long b) {
+        return (a * b) ^ multiplyHighUnsigned(a, b);
+    }
+
+
+    private static long multiplyHighUnsigned(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+
+    private static long getUInt(byte[] bytes, int p) {
+        return getIntLE(bytes, p) & 0xffffffffL;
+    }
+
+
+    private static final class Streaming implements StreamingHash64 {
+
+        private final long seed;
+
+        /**
+         * The last 16 bytes of the mixed blocks, followed by up to 48 pending
+         * bytes and room for one more block.
+         */
+        private final byte[] buffer = new byte[16 + 96];
+
+        private int pending;
+
+        private long length;
+
+        private long state;
+
+        private long see1, see2;
+
+
+        private Streaming(long seed) {
+            this.seed = seed;
+            reset();
+        }
+
+
+        @Override
+        public StreamingHash64 update(byte[] bytes, int offset, int length) {
+            this.length += length;
+            int p = offset;
+            int end = offset + length;
+            while (p < end) {
+                int n = Math.min(buffer.length - 16 - pending, end - p);
+                System.arraycopy(bytes, p, buffer, 16 + pending, n);
+                pending += n;
+                p += n;
+                // a block is mixed only once it is known not to be the last
+                // 48 bytes of the input
+                int q = 16;
+                while (pending > 48) {
+                    state = mix(getLongLE(buffer, q) ^ S1, getLongLE(buffer, q + 8) ^ state);
+                    see1 = mix(getLongLE(buffer, q + 16) ^ S2, getLongLE(buffer, q + 24) ^ see1);
+                    see2 = mix(getLongLE(buffer, q + 32) ^ S3, getLongLE(buffer, q + 40) ^ see2);
+                    q += 48;
+                    pending -= 48;
+                }
+                if (q > 16) {
+                    System.arraycopy(buffer, q - 16, buffer, 0, 16 + pending);
+                }
+            }
+            return this;
+        }
+
+
+        @Override
+        public long getValue() {
+            if (length <= 48) {
+                return hash64(buffer, 16, pending, seed);
+            }
+            return tail(buffer, 16, pending, state ^ see1 ^ see2, length);
+        }
+
+
+        @Override
+        public void reset() {
+            state = seed ^ mix(seed ^ S0, S1);
+            see1 = state;
+            see2 = state;
+            pending = 0;
+            length = 0;
+        }
+    }
+}
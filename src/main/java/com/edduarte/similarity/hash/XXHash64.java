@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.hash;
+
+/**
+ * The 64-bit variant of xxHash, see: https://github.com/Cyan4973/xxHash
+ * <p>
+ * Besides byte arrays, it hashes longs (as their 8 little-endian bytes) and
+ * ranges of a {@link CharSequence} as if they were encoded in UTF-16LE, and
+ * can be computed incrementally with {@link #newHash(long)}.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class XXHash64 {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long P3 = 0x165667B19E3779F9L;
+
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+
+    private XXHash64() {
+    }
+
+
+    public static long hash64(byte[] bytes, long seed) {
+        return hash64(bytes, 0, bytes.length, seed);
+    }
+
+
+    public static long hash64(byte[] bytes, int offset, int length, long seed) {
+        int p = offset;
+        int end = offset + length;
+        long h;
+        if (length >= 32) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            for (int limit = end - 32; p <= limit; p += 32) {
+                v1 = round(v1, getLongLE(bytes, p));
+                v2 = round(v2, getLongLE(bytes, p + 8));
+                v3 = round(v3, getLongLE(bytes, p + 16));
+                v4 = round(v4, getLongLE(bytes, p + 24));
+            }
+            h = merge(v1, v2, v3, v4);
+        } else {
+            h = seed + P5;
+        }
+        return finish(h + length, bytes, p, end - p);
+    }
+
+
+    /**
+     * Hashes the 8 little-endian bytes of a long.
+     */
+    public static long hash64(long value, long seed) {
+        long h = seed + P5 + 8;
+        h ^= round(0, value);
+        h = Long.rotateLeft(h, 27) * P1 + P4;
+        return avalanche(h);
+    }
+
+
+    /**
+     * Hashes the characters in [from, to) of the sequence, giving the same
+     * value as hashing their UTF-16LE encoding.
+     */
+    public static long hash64(CharSequence s, int from, int to, long seed) {
+        return newHash(seed).update(s, from, to).getValue();
+    }
+
+
+    /**
+     * @return a hash that can be updated with consecutive chunks of the input
+     */
+    public static StreamingHash64 newHash(long seed) {
+        return new Streaming(seed);
+    }
+
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+
+    private static long merge(long v1, long v2, long v3, long v4) {
+        long h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        h = mergeRound(h, v1);
+        h = mergeRound(h, v2);
+        h = mergeRound(h, v3);
+        return mergeRound(h, v4);
+    }
+
+
+    private static long mergeRound(long acc, long v) {
+        acc ^= round(0, v);
+        return acc * P1 + P4;
+    }
+
+
+    /**
+     * Mixes the last (fewer than 32) bytes into the hash and avalanches it.
+     */
+    private static long finish(long h, byte[] bytes, int p, int remaining) {
+        int end = p + remaining;
+        for (; p + 8 <= end; p += 8) {
+            h ^= round(0, getLongLE(bytes, p));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (p + 4 <= end) {
+            h ^= (getIntLE(bytes, p) & 0xffffffffL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            p += 4;
+        }
+        for (; p < end; p++) {
+            h ^= (bytes[p] & 0xffL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        return avalanche(h);
+    }
+
+
+    private static long avalanche(long h) {
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+
+    static long getLongLE(byte[] bytes, int p) {
+        return (bytes[p] & 0xffL)
+                | (bytes[p + 1] & 0xffL) << 8
+                | (bytes[p + 2] & 0xffL) << 16
+                | (bytes[p + 3] & 0xffL) << 24
+                | (bytes[p + 4] & 0xffL) << 32
+                | (bytes[p + 5] & 0xffL) << 40
+                | (bytes[p + 6] & 0xffL) << 48
+                | (bytes[p + 7] & 0xffL) << 56;
+    }
+
+
+    static int getIntLE(byte[] bytes, int p) {
+        return (bytes[p] & 0xff)
+                | (bytes[p + 1] & 0xff) << 8
+                | (bytes[p + 2] & 0xff) << 16
+                | (bytes[p + 3] & 0xff) << 24;
+    }
+
+
+    private static final class Streaming implements StreamingHash64 {
+
+        private final long seed;
+
+        private final byte[] buffer = new byte[32];
+
+        private int buffered;
+
+        private long length;
+
+        private long v1, v2, v3, v4;
+
+
+        private Streaming(long seed) {
+            this.seed = seed;
+            reset();
+        }
+
+
+        @Override
+        public StreamingHash64 update(byte[] bytes, int offset, int length) {
+            this.length += length;
+            int p = offset;
+            int end = offset + length;
+            if (buffered > 0) {
+                int n = Math.min(32 - buffered, length);
+                System.arraycopy(bytes, p, buffer, buffered, n);
+                buffered += n;
+                p += n;
+                if (buffered < 32) {
+                    return this;
+                }
+                stripe(buffer, 0);
+                buffered = 0;
+            }
+            for (int limit = end - 32; p <= limit; p += 32) {
+                stripe(bytes, p);
+            }
+            System.arraycopy(bytes, p, buffer, 0, end - p);
+            buffered = end - p;
+            return this;
+        }
+
+
+        private void stripe(byte[] bytes, int p) {
+            v1 = round(v1, getLongLE(bytes, p));
+            v2 = round(v2, getLongLE(bytes, p + 8));
+            v3 = round(v3, getLongLE(bytes, p + 16));
+            v4 = round(v4, getLongLE(bytes, p + 24));
+        }
+
+
+        @Override
+        public long getValue() {
+            long h = length >= 32 ? merge(v1, v2, v3, v4) : seed + P5;
+            return finish(h + length, buffer, 0, buffered);
+        }
+
+
+        @Override
+        public void reset() {
+            v1 = seed + P1 + P2;
+            v2 = seed + P2;
+            v3 = seed;
+            v4 = seed - P1;
+            buffered = 0;
+            length = 0;
+        }
+    }
+}
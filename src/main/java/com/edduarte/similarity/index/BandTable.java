@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Table that maps LSH band keys to the ids of the documents that hashed to
+ * them. A band key combines the position of a band with the value produced by
+ * {@link com.edduarte.similarity.converter.Signature2BandsConverter} for it
+ * (see {@link #keys(int[])}), so that equal values in different bands do not
+ * collide.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public interface BandTable {
+
+    /**
+     * Adds the specified document id to the bucket of every band key.
+     */
+    void add(long id, long[] keys);
+
+
+    /**
+     * Removes the specified document id from the bucket of every band key.
+     */
+    void remove(long id, long[] keys);
+
+
+    /**
+     * Passes to the sink the ids in the bucket of every band key. An id is
+     * passed once for every key it shares with the query, so the number of
+     * times it is seen is the number of colliding bands.
+     */
+    void candidates(long[] keys, LongConsumer sink);
+
+
+    /**
+     * @return the distinct ids that share at least one band key with the query
+     */
+    default long[] candidates(long[] keys) {
+        LongList ids = new LongList();
+        candidates(keys, ids::add);
+        return ids.distinct();
+    }
+
+
+    /**
+     * Converts the bands of a signature into band keys, with the band
+     * position in the upper 32 bits and the band value in the lower 32 bits.
+     */
+    static long[] keys(int[] bands) {
+        long[] keys = new long[bands.length];
+        for (int i = 0; i < bands.length; i++) {
+            keys[i] = key(i, bands[i]);
+        }
+        return keys;
+    }
+
+
+    static long key(int band, int value) {
+        return ((long) band << 32) | (value & 0xffffffffL);
+    }
+}
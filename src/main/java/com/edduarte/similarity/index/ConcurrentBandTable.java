@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Band table that can be written and read by many threads at once.
+ * <p>
+ * Buckets are kept in a {@link ConcurrentHashMap}, and every bucket
+ * publishes its ids as an immutable view of an array: appends write past
+ * the end of the current view and publish a longer one, and removals copy
+ * the array. Readers never lock; they read the current view of a bucket
+ * once and see every id that was added before it was published. Writers
+ * lock only the buckets they change, so writers of different documents
+ * rarely contend.
+ * <p>
+ * Reads that run concurrently with a write of the same document may see it
+ * in some of its buckets and not in others.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ConcurrentBandTable implements BandTable {
+
+    private final ConcurrentHashMap<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+
+    @Override
+    public void add(long id, long[] keys) {
+        for (long key : keys) {
+            while (!buckets.computeIfAbsent(key, k -> new Bucket()).add(id)) {
+                // the bucket was emptied and removed from the map meanwhile
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+
+    @Override
+    public void remove(long id, long[] keys) {
+        for (long key : keys) {
+            Bucket bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(key, id, buckets);
+            }
+        }
+    }
+
+
+    @Override
+    public void candidates(long[] keys, LongConsumer sink) {
+        for (long key : keys) {
+            Bucket bucket = buckets.get(key);
+            if (bucket != null) {
+                View view = bucket.view;
+                for (int i = 0; i < view.size; i++) {
+                    sink.accept(view.ids[i]);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of non-empty buckets
+     */
+    public int bucketCount() {
+        return buckets.size();
+    }
+
+
+    /**
+     * Prefix of an array of ids. The first size values of the array are
+     * never modified after the view is published.
+     */
+    private static final class View {
+
+        private static final View EMPTY = new View(new long[2], 0);
+
+        private final long[] ids;
+
+        private final int size;
+
+
+        private View(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+    }
+
+
+    private static final class Bucket {
+
+        private volatile View view = View.EMPTY;
+
+        private boolean removed;
+
+
+        /**
+         * @return false if the bucket was removed from the table, in which
+         * case the id must be added to a new one
+         */
+        private synchronized boolean add(long id) {
+            if (removed) {
+                return false;
+            }
+            View current = view;
+            long[] ids = current.ids;
+            if (current == View.EMPTY || current.size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(2, ids.length * 2));
+            }
+            ids[current.size] = id;
+            view = new View(ids, current.size + 1);
+            return true;
+        }
+
+
+        private synchronized void remove(long key, long id,
+                                         ConcurrentHashMap<Long, Bucket> buckets) {
+            View current = view;
+            for (int i = 0; i < current.size; i++) {
+                if (current.ids[i] == id) {
+                    if (current.size == 1) {
+                        removed = true;
+                        view = View.EMPTY;
+                        buckets.remove(key, this);
+                        return;
+                    }
+                    // copied, since readers may be iterating the current
+                    // array
+                    long[] ids = new long[current.ids.length];
+                    System.arraycopy(current.ids, 0, ids, 0, i);
+                    System.arraycopy(current.ids, i + 1, ids, i, current.size - i - 1);
+                    view = new View(ids, current.size - 1);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LSH index that can be updated and queried by many threads at once, with
+ * the same queries as {@link LSHIndex}.
+ * <p>
+ * Band keys are kept in a {@link ConcurrentBandTable} and signatures in a
+ * {@link ConcurrentHashMap}, so queries never lock. Writes lock one of a
+ * fixed number of stripes, chosen by the id of the document, so that an add
+ * and a remove of the same document do not interleave, while writes of
+ * other documents proceed in parallel.
+ * <p>
+ * Queries are weakly consistent: a query that runs concurrently with a
+ * write may or may not see it, and may see a document that is being
+ * replaced in the buckets of either signature.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ConcurrentLSHIndex {
+
+    private final Signature2BandsConverter bandp;
+
+    private final BandTable table;
+
+    private final ConcurrentHashMap<Long, int[]> signatures = new ConcurrentHashMap<>();
+
+    private final Object[] stripes;
+
+
+    /**
+     * Instantiates an index with a {@link ConcurrentBandTable} and four
+     * stripes per available processor.
+     *
+     * @param b the number of bands
+     * @param r the number of rows
+     */
+    public ConcurrentLSHIndex(int b, int r) {
+        this(b, r, new ConcurrentBandTable(),
+                4 * Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * @param b       the number of bands
+     * @param r       the number of rows
+     * @param table   the table of band keys, which must be thread-safe
+     * @param stripes the number of locks shared by the writers, rounded up
+     *                to a power of two
+     */
+    public ConcurrentLSHIndex(int b, int r, BandTable table, int stripes) {
+        this.bandp = new Signature2BandsConverter(b, r);
+        this.table = table;
+        this.stripes = new Object[stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Object();
+        }
+    }
+
+
+    /**
+     * Adds a document to the index, replacing its previous signature if the
+     * id was already indexed.
+     */
+    public void add(long id, int[] signature) {
+        int[] copy = signature.clone();
+        synchronized (stripe(id)) {
+            int[] previous = signatures.put(id, copy);
+            if (previous != null) {
+                table.remove(id, keys(previous));
+            }
+            table.add(id, keys(copy));
+        }
+    }
+
+
+    /**
+     * Removes a document from the index.
+     *
+     * @return true if the id was indexed
+     */
+    public boolean remove(long id) {
+        synchronized (stripe(id)) {
+            int[] previous = signatures.remove(id);
+            if (previous == null) {
+                return false;
+            }
+            table.remove(id, keys(previous));
+            return true;
+        }
+    }
+
+
+    /**
+     * @return the signature of the specified document, or null if it is not
+     * indexed
+     */
+    public int[] getSignature(long id) {
+        int[] signature = signatures.get(id);
+        return signature != null ? signature.clone() : null;
+    }
+
+
+    public boolean contains(long id) {
+        return signatures.containsKey(id);
+    }
+
+
+    public int size() {
+        return signatures.size();
+    }
+
+
+    /**
+     * @return the ids of the documents that share at least one band with the
+     * specified signature, in ascending order
+     */
+    public long[] candidates(int[] signature) {
+        return table.candidates(keys(signature));
+    }
+
+
+    /**
+     * @return the ids of the candidate documents whose estimated similarity
+     * with the specified signature is at least the threshold, in ascending
+     * order
+     */
+    public long[] query(int[] signature, double threshold) {
+        LongList result = new LongList();
+        for (long id : candidates(signature)) {
+            int[] other = signatures.get(id);
+            if (other != null && Similarity.signatureIndex(other, signature) >= threshold) {
+                result.add(id);
+            }
+        }
+        return result.toArray();
+    }
+
+
+    /**
+     * Finds the k candidate documents with the highest estimated similarity
+     * to the specified signature, as in {@link LSHIndex#topK(int[], int)}.
+     *
+     * @return at most k neighbors, from the most to the least similar (see
+     * {@link Neighbor#BY_SIMILARITY})
+     */
+    public List<Neighbor> topK(int[] signature, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        return LSHIndex.topK(table, keys(signature), bandp.getB(), signature.length, k, id -> {
+            int[] other = signatures.get(id);
+            return other != null ? Similarity.signatureIndex(other, signature) : Double.NaN;
+        });
+    }
+
+
+    public int getB() {
+        return bandp.getB();
+    }
+
+
+    public int getR() {
+        return bandp.getR();
+    }
+
+
+    private Object stripe(long id) {
+        long h = id * 0x9e3779b97f4a7c15L;
+        return stripes[(int) (h >>> 32) & (stripes.length - 1)];
+    }
+
+
+    private long[] keys(int[] signature) {
+        return BandTable.keys(bandp.compute(signature));
+    }
+}
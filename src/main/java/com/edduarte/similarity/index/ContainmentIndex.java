@@ -0,0 +1,347 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.converter.Set2SignatureConverter;
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Index of sets that answers containment queries: which stored sets contain
+ * at least a fraction t of the query set. It follows LSH Ensemble (Zhu et
+ * al., "LSH Ensemble: Internet-Scale Domain Search").
+ * <p>
+ * The containment of a query Q in a set X, |Q &cap; X| / |Q|, maps to their
+ * Jaccard index given the sizes of both sets, but with very different set
+ * sizes a fixed Jaccard threshold is either too strict or too loose. So
+ * stored sets are split into partitions of similar size, and every partition
+ * keeps band tables for several numbers of rows per band. At query time, the
+ * containment threshold is converted into a Jaccard threshold using the upper
+ * size bound of each partition, and the number of bands and rows that
+ * minimizes the probability of false positives and false negatives is chosen
+ * for that partition.
+ * <p>
+ * Signatures are generated by the {@link Set2SignatureConverter} given at
+ * construction, which must be used for every stored set and query. The
+ * partitions are fixed, with equal numbers of sets, the first time the index
+ * is queried; sets added afterwards go to the partition that covers their
+ * size. Queries return candidates, which callers should verify. This class is
+ * not thread-safe.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ContainmentIndex {
+
+    /**
+     * Number of points of the numerical integration of the false positive
+     * and false negative probabilities.
+     */
+    private static final int INTEGRATION_POINTS = 20;
+
+    private final Set2SignatureConverter converter;
+
+    private final int partitionCount;
+
+    private int maxRows = 8;
+
+    private final LongList ids = new LongList();
+
+    private final List<int[]> signatures = new ArrayList<>();
+
+    private final List<Integer> sizes = new ArrayList<>();
+
+    private List<Partition> partitions;
+
+    private int signatureSize = -1;
+
+
+    /**
+     * @param converter  the converter that generates the signatures of the
+     *                   stored sets and of the queries
+     * @param partitions the number of partitions by set size, at least 1
+     */
+    public ContainmentIndex(Set2SignatureConverter converter, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Expected at least 1 partition, but was "
+                    + partitions + ".");
+        }
+        this.converter = converter;
+        this.partitionCount = partitions;
+    }
+
+
+    /**
+     * The maximum number of rows per band that are indexed (defaults to 8).
+     * Every partition keeps one band table for each number of rows up to this
+     * value, which must be at least 1.
+     */
+    public ContainmentIndex withMaxRows(int maxRows) {
+        if (partitions != null) {
+            throw new IllegalStateException("The index was already built.");
+        }
+        if (maxRows < 1) {
+            throw new IllegalArgumentException("Expected at least 1 row per band, but was "
+                    + maxRows + ".");
+        }
+        this.maxRows = maxRows;
+        return this;
+    }
+
+
+    /**
+     * Adds a set to the index.
+     */
+    public void add(long id, Collection<? extends Number> set) {
+        add(id, converter.compute(set), distinctSize(set));
+    }
+
+
+    /**
+     * Adds a set to the index from its signature, generated by the converter
+     * of this index, and its number of distinct elements.
+     */
+    public void add(long id, int[] signature, int size) {
+        if (signatureSize < 0) {
+            signatureSize = signature.length;
+        } else if (signature.length != signatureSize) {
+            throw new IllegalArgumentException("Expected a signature of size "
+                    + signatureSize + ", but was " + signature.length + ".");
+        }
+        int entry = ids.size();
+        ids.add(id);
+        signatures.add(signature);
+        sizes.add(size);
+        if (partitions != null) {
+            partitionOf(size).add(entry);
+        }
+    }
+
+
+    public int size() {
+        return ids.size();
+    }
+
+
+    /**
+     * @return the ids of the candidate sets that contain at least the
+     * specified fraction of the query set, in ascending order
+     */
+    public long[] query(Collection<? extends Number> set, double containment) {
+        return query(converter.compute(set), distinctSize(set), containment);
+    }
+
+
+    /**
+     * @param signature   the signature of the query set, generated by the
+     *                    converter of this index
+     * @param size        the number of distinct elements of the query set
+     * @param containment the minimum fraction of the query set contained in
+     *                    the returned sets
+     * @return the ids of the candidate sets, in ascending order
+     */
+    public long[] query(int[] signature, int size, double containment) {
+        if (ids.isEmpty() || size == 0) {
+            return new long[0];
+        }
+        if (partitions == null) {
+            build();
+        }
+        LongList result = new LongList();
+        for (Partition partition : partitions) {
+            // sets smaller than t * |Q| cannot contain t * |Q| elements of Q
+            if (partition.upper < containment * size - 1e-9) {
+                continue;
+            }
+            int[] params = optimalParameters(containment,
+                    (double) partition.upper / size);
+            int b = params[0];
+            int r = params[1];
+            long[] keys = new long[b];
+            for (int i = 0; i < b; i++) {
+                keys[i] = BandTable.key(i,
+                        Signature2BandsConverter.band(signature, i * r, (i + 1) * r));
+            }
+            partition.tables[r - 1].candidates(keys, result::add);
+        }
+        return result.distinct();
+    }
+
+
+    /**
+     * Estimates the containment of a query in a stored set from the estimate
+     * of their Jaccard index given by their signatures.
+     */
+    public static double estimateContainment(int[] query, int querySize,
+                                             int[] signature, int size) {
+        double jaccard = 0;
+        for (int i = 0; i < query.length; i++) {
+            if (query[i] == signature[i]) {
+                jaccard++;
+            }
+        }
+        jaccard /= query.length;
+        return Math.min(1, jaccard * (querySize + size) / ((1 + jaccard) * querySize));
+    }
+
+
+    /**
+     * Chooses the number of bands b and rows r, among those indexed, that
+     * minimize the sum of the false positive and false negative
+     * probabilities for a containment threshold, given the ratio between the
+     * size of the stored sets and the size of the query.
+     *
+     * @return {b, r}
+     */
+    int[] optimalParameters(double containment, double sizeRatio) {
+        double bestError = Double.MAX_VALUE;
+        int[] best = {1, 1};
+        double step = 1.0 / INTEGRATION_POINTS;
+        double[] rowProbability = new double[INTEGRATION_POINTS];
+        double[] missProbability = new double[INTEGRATION_POINTS];
+        for (int r = 1; r <= Math.min(maxRows, signatureSize); r++) {
+            for (int p = 0; p < INTEGRATION_POINTS; p++) {
+                // midpoint rule over the containment c in [0, 1], where the
+                // jaccard index of a set of the partition is c / (x/q + 1 - c)
+                double c = (p + 0.5) * step;
+                double jaccard = c / (sizeRatio + 1 - c);
+                rowProbability[p] = Math.pow(Math.max(0, Math.min(1, jaccard)), r);
+                missProbability[p] = 1;
+            }
+            for (int b = 1; b <= signatureSize / r; b++) {
+                double falsePositive = 0;
+                double falseNegative = 0;
+                for (int p = 0; p < INTEGRATION_POINTS; p++) {
+                    // probability that none of the b bands collides
+                    missProbability[p] *= 1 - rowProbability[p];
+                    double c = (p + 0.5) * step;
+                    if (c < containment) {
+                        falsePositive += (1 - missProbability[p]) * step;
+                    } else {
+                        falseNegative += missProbability[p] * step;
+                    }
+                }
+                double error = falsePositive + falseNegative;
+                if (error < bestError) {
+                    bestError = error;
+                    best = new int[]{b, r};
+                }
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * Splits the sets added so far into partitions with equal numbers of
+     * sets, ordered by size, and fills their band tables.
+     */
+    private void build() {
+        Integer[] order = new Integer[ids.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(sizes.get(a), sizes.get(b)));
+
+        partitions = new ArrayList<>();
+        int count = Math.max(1, Math.min(partitionCount, order.length));
+        int start = 0;
+        for (int p = 0; p < count; p++) {
+            int end = (int) ((long) order.length * (p + 1) / count);
+            // sets of the same size always go to the same partition
+            while (end < order.length && end > start
+                    && sizes.get(order[end]).equals(sizes.get(order[end - 1]))) {
+                end++;
+            }
+            if (end <= start) {
+                continue;
+            }
+            Partition partition = new Partition(sizes.get(order[end - 1]));
+            for (int i = start; i < end; i++) {
+                partition.add(order[i]);
+            }
+            partitions.add(partition);
+            start = end;
+        }
+    }
+
+
+    /**
+     * @return the first partition whose upper size bound covers the specified
+     * size, or the last one, whose bound is raised
+     */
+    private Partition partitionOf(int size) {
+        for (Partition partition : partitions) {
+            if (size <= partition.upper) {
+                return partition;
+            }
+        }
+        Partition last = partitions.get(partitions.size() - 1);
+        last.upper = size;
+        return last;
+    }
+
+
+    private static int distinctSize(Collection<? extends Number> set) {
+        HashSet<Long> distinct = new HashSet<>();
+        for (Number x : set) {
+            distinct.add(x.longValue());
+        }
+        return distinct.size();
+    }
+
+
+    private final class Partition {
+
+        private int upper;
+
+        /**
+         * The band table for r rows per band is at index r - 1.
+         */
+        private final BandTable[] tables;
+
+
+        private Partition(int upper) {
+            this.upper = upper;
+            this.tables = new BandTable[Math.min(maxRows, signatureSize)];
+            for (int i = 0; i < tables.length; i++) {
+                tables[i] = new HashBandTable();
+            }
+        }
+
+
+        private void add(int entry) {
+            int[] signature = signatures.get(entry);
+            long id = ids.get(entry);
+            for (int r = 1; r <= tables.length; r++) {
+                long[] keys = new long[signature.length / r];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = BandTable.key(i,
+                            Signature2BandsConverter.band(signature, i * r, (i + 1) * r));
+                }
+                tables[r - 1].add(id, keys);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable segment of a {@link SegmentedLSHIndex}. Documents are numbered
+ * in ascending order of id, their signatures are kept contiguously in a
+ * single array, and the band table is a sorted array of band keys with the
+ * numbers of the documents of every bucket in a postings array, so a segment
+ * takes a few bytes per band and document and no objects per bucket.
+ * <p>
+ * The only mutable state is the set of deleted documents (tombstones), which
+ * are skipped by lookups until the segment is compacted. Callers synchronize
+ * deletes with lookups.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class FrozenSegment {
+
+    /**
+     * Largest array length supported by most JVMs.
+     */
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final long[] ids;
+
+    private final int[] signatures;
+
+    private final int signatureSize;
+
+    private final long[] keys;
+
+    private final int[] offsets;
+
+    private final int[] postings;
+
+    private final BitSet deleted = new BitSet();
+
+    private int deletedCount;
+
+
+    private FrozenSegment(long[] ids, int[] signatures, int signatureSize,
+                          long[] keys, int[] offsets, int[] postings) {
+        this.ids = ids;
+        this.signatures = signatures;
+        this.signatureSize = signatureSize;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+
+
+    /**
+     * Builds a segment with the specified documents.
+     *
+     * @param ids        the ids of the documents, in ascending order
+     * @param signatures the signatures of the documents, one after the other
+     *                   in the order of their ids
+     */
+    static FrozenSegment build(long[] ids, int[] signatures, int signatureSize,
+                               Signature2BandsConverter bandp) {
+        int size = ids.length;
+        int b = bandp.getB();
+        checkSize(size, signatureSize, b);
+        int[][] values = new int[b][size];
+        int[] signature = new int[signatureSize];
+        for (int doc = 0; doc < size; doc++) {
+            System.arraycopy(signatures, doc * signatureSize, signature, 0, signatureSize);
+            int[] bands = bandp.compute(signature);
+            for (int band = 0; band < b; band++) {
+                values[band][doc] = bands[band];
+            }
+        }
+
+        // sort the documents of every band by value, with the value in the
+        // upper half flipped so that signed order is unsigned order and keys
+        // come out ascending, as in IndexSnapshot
+        long[] keys = new long[size * b];
+        int[] offsets = new int[size * b + 1];
+        int[] postings = new int[size * b];
+        long[] sorted = new long[size];
+        int keyCount = 0;
+        int offset = 0;
+        for (int band = 0; band < b; band++) {
+            for (int doc = 0; doc < size; doc++) {
+                sorted[doc] = ((long) (values[band][doc] ^ Integer.MIN_VALUE) << 32) | doc;
+            }
+            values[band] = null;
+            Arrays.sort(sorted);
+            for (int i = 0; i < size; ) {
+                int value = (int) (sorted[i] >>> 32) ^ Integer.MIN_VALUE;
+                keys[keyCount] = BandTable.key(band, value);
+                offsets[keyCount++] = offset;
+                int j = i;
+                while (j < size && (sorted[j] >>> 32) == (sorted[i] >>> 32)) {
+                    postings[offset++] = (int) sorted[j];
+                    j++;
+                }
+                i = j;
+            }
+        }
+        offsets[keyCount] = offset;
+        return new FrozenSegment(ids, signatures, signatureSize,
+                Arrays.copyOf(keys, keyCount), Arrays.copyOf(offsets, keyCount + 1), postings);
+    }
+
+
+    /**
+     * @return the largest number of documents of a segment, whose signatures
+     * and postings must fit in arrays
+     */
+    static int maxSize(int signatureSize, int b) {
+        return (MAX_ARRAY_LENGTH - 1) / Math.max(1, Math.max(signatureSize, b));
+    }
+
+
+    /**
+     * @throws IllegalArgumentException if a segment cannot hold the specified
+     *                                  number of documents
+     */
+    static void checkSize(long size, int signatureSize, int b) {
+        if (size > maxSize(signatureSize, b)) {
+            throw new IllegalArgumentException("A segment cannot hold " + size
+                    + " documents, but at most " + maxSize(signatureSize, b)
+                    + " with signatures of size " + signatureSize + ".");
+        }
+    }
+
+
+    /**
+     * Passes to the sink the number of every document that is not deleted in
+     * the bucket of every band key, once for every key it shares with the
+     * query.
+     */
+    void candidates(long[] keys, IntConsumer sink) {
+        for (long key : keys) {
+            int bucket = Arrays.binarySearch(this.keys, key);
+            if (bucket < 0) {
+                continue;
+            }
+            for (int i = offsets[bucket]; i < offsets[bucket + 1]; i++) {
+                int doc = postings[i];
+                if (deletedCount == 0 || !deleted.get(doc)) {
+                    sink.accept(doc);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of the document with the specified id, or -1 if it
+     * is not in this segment or was deleted
+     */
+    int find(long id) {
+        int doc = Arrays.binarySearch(ids, id);
+        return doc >= 0 && !deleted.get(doc) ? doc : -1;
+    }
+
+
+    /**
+     * Marks the document with the specified id as deleted.
+     *
+     * @return true if the document was in this segment and was not deleted
+     */
+    boolean delete(long id) {
+        int doc = find(id);
+        if (doc < 0) {
+            return false;
+        }
+        deleted.set(doc);
+        deletedCount++;
+        return true;
+    }
+
+
+    boolean isDeleted(int doc) {
+        return deleted.get(doc);
+    }
+
+
+    /**
+     * @return a copy of the set of deleted document numbers
+     */
+    BitSet getDeleted() {
+        return (BitSet) deleted.clone();
+    }
+
+
+    long getId(int doc) {
+        return ids[doc];
+    }
+
+
+    int[] getSignature(int doc) {
+        return Arrays.copyOfRange(signatures, doc * signatureSize, (doc + 1) * signatureSize);
+    }
+
+
+    void copySignature(int doc, int[] destination, int offset) {
+        System.arraycopy(signatures, doc * signatureSize, destination, offset, signatureSize);
+    }
+
+
+    double signatureIndex(int doc, int[] signature) {
+        int offset = doc * signatureSize;
+        double similarity = 0;
+        for (int i = 0; i < signatureSize; i++) {
+            if (signatures[offset + i] == signature[i]) {
+                similarity++;
+            }
+        }
+        return similarity / signatureSize;
+    }
+
+
+    int getSignatureSize() {
+        return signatureSize;
+    }
+
+
+    /**
+     * @return the number of documents in this segment, including the deleted
+     * ones
+     */
+    int size() {
+        return ids.length;
+    }
+
+
+    int liveCount() {
+        return ids.length - deletedCount;
+    }
+
+
+    /**
+     * @return the fraction of the documents in this segment that are deleted
+     */
+    double deletedRatio() {
+        return ids.length == 0 ? 0 : (double) deletedCount / ids.length;
+    }
+
+
+    /**
+     * @return the number of postings, used as the cost of rewriting this
+     * segment
+     */
+    long postingCount() {
+        return postings.length;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Band table kept in a hash map in the heap of this process.
+ * <p>
+ * This class is not thread-safe: concurrent writers, or readers concurrent
+ * with a writer, must synchronize externally.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class HashBandTable implements BandTable {
+
+    private final Map<Long, LongList> buckets = new HashMap<>();
+
+
+    @Override
+    public void add(long id, long[] keys) {
+        for (long key : keys) {
+            buckets.computeIfAbsent(key, k -> new LongList(2)).add(id);
+        }
+    }
+
+
+    @Override
+    public void remove(long id, long[] keys) {
+        for (long key : keys) {
+            LongList bucket = buckets.get(key);
+            if (bucket != null && bucket.removeUnordered(id) && bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+
+    @Override
+    public void candidates(long[] keys, LongConsumer sink) {
+        for (long key : keys) {
+            LongList bucket = buckets.get(key);
+            if (bucket != null) {
+                for (int i = 0; i < bucket.size(); i++) {
+                    sink.accept(bucket.get(i));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of non-empty buckets
+     */
+    public int bucketCount() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.Similarity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Signature store that keeps every signature as an array in the heap.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class HeapSignatureStore implements SignatureStore {
+
+    private final List<int[]> signatures = new ArrayList<>();
+
+    private final int signatureSize;
+
+
+    public HeapSignatureStore(int signatureSize) {
+        this.signatureSize = signatureSize;
+    }
+
+
+    @Override
+    public int append(int[] signature) {
+        checkSize(signature);
+        signatures.add(signature.clone());
+        return signatures.size() - 1;
+    }
+
+
+    @Override
+    public void set(int slot, int[] signature) {
+        checkSize(signature);
+        signatures.set(slot, signature.clone());
+    }
+
+
+    @Override
+    public void get(int slot, int[] destination) {
+        System.arraycopy(signatures.get(slot), 0, destination, 0, signatureSize);
+    }
+
+
+    @Override
+    public double signatureIndex(int slot, int[] signature) {
+        return Similarity.signatureIndex(signatures.get(slot), signature);
+    }
+
+
+    @Override
+    public double signatureIndex(int slot1, int slot2) {
+        return Similarity.signatureIndex(signatures.get(slot1), signatures.get(slot2));
+    }
+
+
+    @Override
+    public int size() {
+        return signatures.size();
+    }
+
+
+    @Override
+    public int getSignatureSize() {
+        return signatureSize;
+    }
+
+
+    private void checkSize(int[] signature) {
+        if (signature.length != signatureSize) {
+            throw new IllegalArgumentException("Expected a signature of size " +
+                    signatureSize + " but got " + signature.length + ".");
+        }
+    }
+}
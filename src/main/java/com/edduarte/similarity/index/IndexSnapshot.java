@@ -0,0 +1,367 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Snapshot of the state of an {@link LSHIndex} in a compact binary file, so
+ * that a restarted process can restore the index without shingling and
+ * signing every document again.
+ * <p>
+ * The file starts with a header naming the hash family that generated the
+ * signatures, the bands and rows, the signature size and the number of
+ * documents, followed by the document ids in ascending order, the signature
+ * of every document in the same order, the ids in every band bucket and the
+ * band keys of the buckets in ascending order. Values are little-endian.
+ * <p>
+ * A restored index maps the file instead of reading it: the ids, signatures
+ * and buckets are found by binary search over the mapping and paged in by
+ * the operating system as queries touch them, so the index answers queries
+ * right after {@link #restore()} regardless of its size. Documents can still
+ * be added and removed; the changes are kept in the heap and the file is
+ * never modified, until the next snapshot writes them.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class IndexSnapshot {
+
+    static final int MAGIC = 0x4C534849;
+
+    static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 512;
+
+    private final Path file;
+
+    private final String hashFamily;
+
+    private final int b;
+
+    private final int r;
+
+    private final int signatureSize;
+
+    private final int size;
+
+    private final long bucketCount;
+
+
+    private IndexSnapshot(Path file, String hashFamily, int b, int r,
+                          int signatureSize, int size, long bucketCount) {
+        this.file = file;
+        this.hashFamily = hashFamily;
+        this.b = b;
+        this.r = r;
+        this.signatureSize = signatureSize;
+        this.size = size;
+        this.bucketCount = bucketCount;
+    }
+
+
+    /**
+     * Writes the state of the index to the specified file. The snapshot is
+     * written to a temporary file next to it, synced and then moved over the
+     * file, so a crash never leaves a partial snapshot behind.
+     *
+     * @param hashFamily the name of the hash family that generated the
+     *                   signatures of the index, such as the name of a
+     *                   {@link com.edduarte.similarity.hash.HashProvider.HashMethod}
+     */
+    public static void write(LSHIndex index, String hashFamily, Path file)
+            throws IOException {
+        byte[] family = hashFamily.getBytes(StandardCharsets.US_ASCII);
+        if (family.length > 255) {
+            throw new IllegalArgumentException("The hash family name is too long.");
+        }
+        Map<Long, Integer> slots = index.getSlots();
+        SignatureStore store = index.getStore();
+        int b = index.getB();
+        int size = slots.size();
+        int signatureSize = store != null ? store.getSignatureSize() : 0;
+        long[] ids = new long[size];
+        int n = 0;
+        for (Long id : slots.keySet()) {
+            ids[n++] = id;
+        }
+        Arrays.sort(ids);
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // the band values of every document, one array per band
+            int[][] values = new int[b][size];
+            try (Output out = new Output(channel, idsPosition())) {
+                for (long id : ids) {
+                    out.putLong(id);
+                }
+            }
+            int[] signature = new int[signatureSize];
+            try (Output out = new Output(channel, signaturesPosition(size))) {
+                for (int i = 0; i < size; i++) {
+                    store.get(slots.get(ids[i]), signature);
+                    for (int value : signature) {
+                        out.putInt(value);
+                    }
+                    long[] keys = index.keys(signature);
+                    for (int band = 0; band < b; band++) {
+                        values[band][i] = (int) keys[band];
+                    }
+                }
+            }
+
+            // sort the documents of every band by value, with the value in
+            // the upper half flipped so that signed order is unsigned order
+            // and keys come out ascending; ids stay ascending in a bucket
+            long bucketCount = 0;
+            long postingCount = (long) size * b;
+            long postingsPosition = postingsPosition(size, signatureSize);
+            try (Output postings = new Output(channel, postingsPosition);
+                 Output buckets = new Output(channel, postingsPosition + postingCount * 8)) {
+                long[] sorted = new long[size];
+                long offset = 0;
+                for (int band = 0; band < b; band++) {
+                    for (int i = 0; i < size; i++) {
+                        sorted[i] = ((long) (values[band][i] ^ Integer.MIN_VALUE) << 32) | i;
+                    }
+                    values[band] = null;
+                    Arrays.sort(sorted);
+                    for (int i = 0; i < size; ) {
+                        int value = (int) (sorted[i] >>> 32) ^ Integer.MIN_VALUE;
+                        buckets.putLong(BandTable.key(band, value));
+                        buckets.putLong(offset);
+                        bucketCount++;
+                        int j = i;
+                        while (j < size && (sorted[j] >>> 32) == (sorted[i] >>> 32)) {
+                            postings.putLong(ids[(int) sorted[j]]);
+                            j++;
+                        }
+                        offset += j - i;
+                        i = j;
+                    }
+                }
+                buckets.putLong(Long.MAX_VALUE);
+                buckets.putLong(offset);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(b);
+            header.putInt(index.getR());
+            header.putInt(signatureSize);
+            header.putInt(size);
+            header.putLong(bucketCount);
+            header.put((byte) family.length);
+            header.put(family);
+            header.rewind();
+            writeFully(channel, header, 0);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Reads the header of the specified snapshot file.
+     *
+     * @throws IllegalArgumentException if the file is not a complete snapshot
+     *                                  of a known version
+     */
+    public static IndexSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IllegalArgumentException("Truncated index snapshot.");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an index snapshot.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version " + version + ".");
+            }
+            int b = header.getInt();
+            int r = header.getInt();
+            int signatureSize = header.getInt();
+            int size = header.getInt();
+            long bucketCount = header.getLong();
+            byte[] family = new byte[header.get() & 0xff];
+            header.get(family);
+            IndexSnapshot snapshot = new IndexSnapshot(file,
+                    new String(family, StandardCharsets.US_ASCII),
+                    b, r, signatureSize, size, bucketCount);
+            if (channel.size() < snapshot.length()) {
+                throw new IllegalArgumentException("Truncated index snapshot.");
+            }
+            return snapshot;
+        }
+    }
+
+
+    /**
+     * Restores the index by mapping the snapshot file. Every call returns a
+     * new index, independent of the others.
+     */
+    public LSHIndex restore() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedLongs ids = MappedLongs.map(channel, idsPosition(), size);
+            SignatureStore store = signatureSize > 0
+                    ? MappedSignatureStore.map(channel, signaturesPosition(size), size, signatureSize)
+                    : null;
+            long postingCount = (long) size * b;
+            long postingsPosition = postingsPosition(size, signatureSize);
+            MappedLongs postings = MappedLongs.map(channel, postingsPosition, postingCount);
+            MappedLongs buckets = MappedLongs.map(channel,
+                    postingsPosition + postingCount * 8, 2 * (bucketCount + 1));
+            // the mappings stay valid after the channel is closed
+            return new LSHIndex(b, r, new SnapshotBandTable(buckets, postings),
+                    store, new SnapshotSlots(ids));
+        }
+    }
+
+
+    public String getHashFamily() {
+        return hashFamily;
+    }
+
+
+    public int getB() {
+        return b;
+    }
+
+
+    public int getR() {
+        return r;
+    }
+
+
+    /**
+     * @return the size of the signatures, or 0 if the index never had a
+     * document
+     */
+    public int getSignatureSize() {
+        return signatureSize;
+    }
+
+
+    /**
+     * @return the number of documents in the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+
+    private long length() {
+        return postingsPosition(size, signatureSize) + (long) size * b * 8
+                + (bucketCount + 1) * 16;
+    }
+
+
+    private static long idsPosition() {
+        return HEADER_BYTES;
+    }
+
+
+    private static long signaturesPosition(int size) {
+        return idsPosition() + (long) size * 8;
+    }
+
+
+    private static long postingsPosition(int size, int signatureSize) {
+        long end = signaturesPosition(size) + (long) size * signatureSize * 4;
+        // keep the longs after the signatures aligned
+        return (end + 7) & ~7L;
+    }
+
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+
+    /**
+     * Buffered sequential writer to a section of a file, starting at a given
+     * position. Several writers can fill different sections of the same file.
+     */
+    private static final class Output implements AutoCloseable {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        private long position;
+
+
+        private Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+
+        private void putLong(long value) throws IOException {
+            if (buffer.remaining() < 8) {
+                flush();
+            }
+            buffer.putLong(value);
+        }
+
+
+        private void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+
+        private void flush() throws IOException {
+            buffer.flip();
+            long length = buffer.remaining();
+            writeFully(channel, buffer, position);
+            position += length;
+            buffer.clear();
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
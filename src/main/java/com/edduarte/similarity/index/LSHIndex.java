@@ -0,0 +1,340 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Index of minhash signatures that answers near-neighbor queries with LSH.
+ * Signatures are split into bands by a {@link Signature2BandsConverter}, and
+ * the band keys are stored in a {@link BandTable}, which can live in this
+ * process or be spread across several (see
+ * {@link com.edduarte.similarity.index.shard.ShardedBandTable}), and the
+ * signatures are kept in a {@link SignatureStore}, which can be kept outside
+ * of the heap with an {@link OffHeapSignatureStore}.
+ * <p>
+ * Signatures must be generated by the same converter, with the same hash
+ * method and signature size, for every document and query. This class is not
+ * thread-safe; {@link ConcurrentLSHIndex} can be shared between threads.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class LSHIndex {
+
+    private final Signature2BandsConverter bandp;
+
+    private final BandTable table;
+
+    private final Map<Long, Integer> slots;
+
+    private final LongList freeSlots = new LongList();
+
+    private SignatureStore store;
+
+
+    /**
+     * Instantiates an index kept in the heap of this process.
+     *
+     * @param b the number of bands
+     * @param r the number of rows
+     */
+    public LSHIndex(int b, int r) {
+        this(b, r, new HashBandTable());
+    }
+
+
+    /**
+     * Instantiates an index that stores its band keys in the specified table.
+     *
+     * @param b     the number of bands
+     * @param r     the number of rows
+     * @param table the table of band keys
+     */
+    public LSHIndex(int b, int r, BandTable table) {
+        this(b, r, table, null);
+    }
+
+
+    /**
+     * Instantiates an index that stores its band keys and its signatures in
+     * the specified containers.
+     *
+     * @param b     the number of bands
+     * @param r     the number of rows
+     * @param table the table of band keys
+     * @param store the store of signatures, which must be empty, or null to
+     *              keep them in the heap
+     */
+    public LSHIndex(int b, int r, BandTable table, SignatureStore store) {
+        this(b, r, table, store, new HashMap<>());
+    }
+
+
+    /**
+     * Instantiates an index over containers that may already hold documents,
+     * such as the ones restored by {@link IndexSnapshot}.
+     *
+     * @param slots the slot in the store of every indexed document
+     */
+    LSHIndex(int b, int r, BandTable table, SignatureStore store,
+             Map<Long, Integer> slots) {
+        this.bandp = new Signature2BandsConverter(b, r);
+        this.table = table;
+        this.store = store;
+        this.slots = slots;
+    }
+
+
+    /**
+     * Adds a document to the index, replacing its previous signature if the
+     * id was already indexed.
+     */
+    public void add(long id, int[] signature) {
+        remove(id);
+        if (store == null) {
+            store = new HeapSignatureStore(signature.length);
+        }
+        table.add(id, keys(signature));
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = store.append(signature);
+        } else {
+            slot = (int) freeSlots.removeLast();
+            store.set(slot, signature);
+        }
+        slots.put(id, slot);
+    }
+
+
+    /**
+     * Removes a document from the index.
+     *
+     * @return true if the id was indexed
+     */
+    public boolean remove(long id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        table.remove(id, keys(store.get(slot)));
+        // the slot is reused by the next document added
+        freeSlots.add(slot);
+        return true;
+    }
+
+
+    /**
+     * @return the signature of the specified document, or null if it is not
+     * indexed
+     */
+    public int[] getSignature(long id) {
+        Integer slot = slots.get(id);
+        return slot != null ? store.get(slot) : null;
+    }
+
+
+    public boolean contains(long id) {
+        return slots.containsKey(id);
+    }
+
+
+    public int size() {
+        return slots.size();
+    }
+
+
+    /**
+     * @return the ids of the documents that share at least one band with the
+     * specified signature, in ascending order
+     */
+    public long[] candidates(int[] signature) {
+        return table.candidates(keys(signature));
+    }
+
+
+    /**
+     * @return the ids of the candidate documents whose estimated similarity
+     * with the specified signature is at least the threshold, in ascending
+     * order
+     */
+    public long[] query(int[] signature, double threshold) {
+        LongList result = new LongList();
+        for (long id : candidates(signature)) {
+            Integer slot = slots.get(id);
+            if (slot != null && store.signatureIndex(slot, signature) >= threshold) {
+                result.add(id);
+            }
+        }
+        return result.toArray();
+    }
+
+
+    /**
+     * Finds the k candidate documents with the highest estimated similarity
+     * to the specified signature.
+     * <p>
+     * Candidates are ranked in a bounded heap, in decreasing order of the
+     * number of bands they share with the query. A candidate that shares c
+     * of the b bands differs from the query in at least one row of each of
+     * the other bands, so its estimate is at most 1 - (b - c) / signature
+     * size. Once the heap is full and that bound falls below the k-th best
+     * estimate, the remaining candidates are not compared.
+     *
+     * @return at most k neighbors, from the most to the least similar (see
+     * {@link Neighbor#BY_SIMILARITY})
+     */
+    public List<Neighbor> topK(int[] signature, int k) {
+        if (k <= 0 || slots.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return topK(table, keys(signature), bandp.getB(), signature.length, k, id -> {
+            Integer slot = slots.get(id);
+            return slot != null ? store.signatureIndex(slot, signature) : Double.NaN;
+        });
+    }
+
+
+    /**
+     * Finds the k candidate documents most similar to the specified
+     * signature, re-ranking the best candidates by their exact similarity.
+     * The rerankSize candidates with the highest estimated similarity are
+     * found with {@link #topK(int[], int)}, and the k of them with the
+     * highest exact similarity are returned.
+     *
+     * @param rerankSize the number of candidates to re-rank, at least k
+     * @param exact      the exact similarity, e.g. the Jaccard index, between
+     *                   the query and the document with the specified id
+     * @return at most k neighbors with their exact similarity, from the most
+     * to the least similar
+     */
+    public List<Neighbor> topK(int[] signature, int k, int rerankSize,
+                               LongToDoubleFunction exact) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Neighbor> heap = new PriorityQueue<>(k + 1,
+                Neighbor.BY_SIMILARITY.reversed());
+        for (Neighbor n : topK(signature, Math.max(k, rerankSize))) {
+            offer(heap, k, new Neighbor(n.getId(), exact.applyAsDouble(n.getId())));
+        }
+        List<Neighbor> result = new ArrayList<>(heap);
+        result.sort(Neighbor.BY_SIMILARITY);
+        return result;
+    }
+
+
+    /**
+     * Finds the k candidates in the table with the highest estimate, as
+     * described in {@link #topK(int[], int)}.
+     *
+     * @param estimate the estimated similarity of the document with the
+     *                 specified id, or NaN if it is no longer indexed
+     */
+    static List<Neighbor> topK(BandTable table, long[] keys, int b,
+                               int signatureSize, int k, LongToDoubleFunction estimate) {
+        LongList collisions = new LongList();
+        table.candidates(keys, collisions::add);
+        long[] ids = collisions.toArray();
+        Arrays.sort(ids);
+
+        // group the distinct ids by their number of colliding bands
+        LongList[] byCount = new LongList[b + 1];
+        for (int i = 0; i < ids.length; ) {
+            int j = i + 1;
+            while (j < ids.length && ids[j] == ids[i]) {
+                j++;
+            }
+            int count = Math.min(j - i, b);
+            if (byCount[count] == null) {
+                byCount[count] = new LongList();
+            }
+            byCount[count].add(ids[i]);
+            i = j;
+        }
+
+        // the worst of the current top k is at the head of the heap
+        PriorityQueue<Neighbor> heap = new PriorityQueue<>(k + 1,
+                Neighbor.BY_SIMILARITY.reversed());
+        for (int count = b; count > 0; count--) {
+            if (byCount[count] == null) {
+                continue;
+            }
+            double bound = 1 - (double) (b - count) / signatureSize;
+            if (heap.size() == k && bound < heap.peek().getSimilarity()) {
+                break;
+            }
+            LongList group = byCount[count];
+            for (int i = 0; i < group.size(); i++) {
+                long id = group.get(i);
+                double similarity = estimate.applyAsDouble(id);
+                if (!Double.isNaN(similarity)) {
+                    offer(heap, k, new Neighbor(id, similarity));
+                }
+            }
+        }
+
+        List<Neighbor> result = new ArrayList<>(heap);
+        result.sort(Neighbor.BY_SIMILARITY);
+        return result;
+    }
+
+
+    private static void offer(PriorityQueue<Neighbor> heap, int k, Neighbor n) {
+        if (heap.size() < k) {
+            heap.add(n);
+        } else if (Neighbor.BY_SIMILARITY.compare(n, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(n);
+        }
+    }
+
+
+    public int getB() {
+        return bandp.getB();
+    }
+
+
+    public int getR() {
+        return bandp.getR();
+    }
+
+
+    Map<Long, Integer> getSlots() {
+        return slots;
+    }
+
+
+    SignatureStore getStore() {
+        return store;
+    }
+
+
+    long[] keys(int[] signature) {
+        return BandTable.keys(bandp.compute(signature));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive longs, used to collect document ids without
+ * boxing them.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class LongList {
+
+    private long[] values;
+
+    private int size;
+
+
+    public LongList() {
+        this(8);
+    }
+
+
+    public LongList(int capacity) {
+        this.values = new long[Math.max(capacity, 1)];
+    }
+
+
+    public void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+
+    public void addAll(long[] values) {
+        for (long value : values) {
+            add(value);
+        }
+    }
+
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index + " >= " + size);
+        }
+        return values[index];
+    }
+
+
+    /**
+     * Removes the first occurrence of the specified value by moving the last
+     * value into its place, so the order of the list is not preserved.
+     *
+     * @return true if the value was found
+     */
+    public boolean removeUnordered(long value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                values[i] = values[--size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Removes and returns the last value of this list.
+     */
+    public long removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("The list is empty.");
+        }
+        return values[--size];
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    public void clear() {
+        size = 0;
+    }
+
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+
+    /**
+     * @return the distinct values of this list, in ascending order
+     */
+    public long[] distinct() {
+        long[] sorted = toArray();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only array of little-endian longs mapped from a section of a file.
+ * The section is mapped in chunks of 1GB, since a single mapping cannot be
+ * larger than 2GB. Reads are thread-safe.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class MappedLongs {
+
+    private static final int CHUNK_SHIFT = 27;
+
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final LongBuffer[] chunks;
+
+    private final long size;
+
+
+    private MappedLongs(LongBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+
+    /**
+     * Maps the specified number of longs, starting at the specified position
+     * of the channel.
+     */
+    static MappedLongs map(FileChannel channel, long position, long size)
+            throws IOException {
+        LongBuffer[] chunks = new LongBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            long from = (long) i << CHUNK_SHIFT;
+            long length = Math.min(size - from, 1L << CHUNK_SHIFT);
+            chunks[i] = channel
+                    .map(FileChannel.MapMode.READ_ONLY, position + from * 8, length * 8)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer();
+        }
+        return new MappedLongs(chunks, size);
+    }
+
+
+    long get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+
+    long size() {
+        return size;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.Similarity;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Signature store whose first signatures are mapped read-only from a
+ * snapshot file (see {@link IndexSnapshot}), so that they are paged in by the
+ * operating system as they are read instead of being loaded at startup.
+ * <p>
+ * Signatures appended after the snapshot are kept in a
+ * {@link HeapSignatureStore}, and signatures replaced in mapped slots are kept
+ * in the heap in front of them, so the file is never modified.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class MappedSignatureStore implements SignatureStore {
+
+    private static final int CHUNK_BYTES = 1 << 30;
+
+    private final IntBuffer[] chunks;
+
+    private final int signaturesPerChunk;
+
+    private final int mappedSize;
+
+    private final Map<Integer, int[]> replaced = new HashMap<>();
+
+    private final HeapSignatureStore appended;
+
+
+    private MappedSignatureStore(IntBuffer[] chunks, int signaturesPerChunk,
+                                 int mappedSize, int signatureSize) {
+        this.chunks = chunks;
+        this.signaturesPerChunk = signaturesPerChunk;
+        this.mappedSize = mappedSize;
+        this.appended = new HeapSignatureStore(signatureSize);
+    }
+
+
+    /**
+     * Maps the specified number of signatures, stored contiguously as
+     * little-endian ints from the specified position of the channel.
+     */
+    static MappedSignatureStore map(FileChannel channel, long position,
+                                    int size, int signatureSize) throws IOException {
+        int signaturesPerChunk = Math.max(1, CHUNK_BYTES / (signatureSize * 4));
+        IntBuffer[] chunks = new IntBuffer[(size + signaturesPerChunk - 1) / signaturesPerChunk];
+        long chunkBytes = (long) signaturesPerChunk * signatureSize * 4;
+        for (int i = 0; i < chunks.length; i++) {
+            int count = Math.min(size - i * signaturesPerChunk, signaturesPerChunk);
+            chunks[i] = channel
+                    .map(FileChannel.MapMode.READ_ONLY, position + i * chunkBytes,
+                            (long) count * signatureSize * 4)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asIntBuffer();
+        }
+        return new MappedSignatureStore(chunks, signaturesPerChunk, size, signatureSize);
+    }
+
+
+    @Override
+    public int append(int[] signature) {
+        return mappedSize + appended.append(signature);
+    }
+
+
+    @Override
+    public void set(int slot, int[] signature) {
+        if (slot >= mappedSize) {
+            appended.set(slot - mappedSize, signature);
+        } else {
+            checkSize(signature);
+            checkSlot(slot);
+            replaced.put(slot, signature.clone());
+        }
+    }
+
+
+    @Override
+    public void get(int slot, int[] destination) {
+        if (slot >= mappedSize) {
+            appended.get(slot - mappedSize, destination);
+            return;
+        }
+        int[] signature = replacement(slot);
+        if (signature != null) {
+            System.arraycopy(signature, 0, destination, 0, signature.length);
+            return;
+        }
+        int signatureSize = getSignatureSize();
+        IntBuffer chunk = chunks[slot / signaturesPerChunk];
+        int offset = (slot % signaturesPerChunk) * signatureSize;
+        for (int i = 0; i < signatureSize; i++) {
+            destination[i] = chunk.get(offset + i);
+        }
+    }
+
+
+    @Override
+    public double signatureIndex(int slot, int[] signature) {
+        if (slot >= mappedSize) {
+            return appended.signatureIndex(slot - mappedSize, signature);
+        }
+        int[] replacement = replacement(slot);
+        if (replacement != null) {
+            return Similarity.signatureIndex(replacement, signature);
+        }
+        int signatureSize = getSignatureSize();
+        IntBuffer chunk = chunks[slot / signaturesPerChunk];
+        int offset = (slot % signaturesPerChunk) * signatureSize;
+        double similarity = 0;
+        for (int i = 0; i < signatureSize; i++) {
+            if (chunk.get(offset + i) == signature[i]) {
+                similarity++;
+            }
+        }
+        return similarity / signatureSize;
+    }
+
+
+    @Override
+    public double signatureIndex(int slot1, int slot2) {
+        return signatureIndex(slot1, get(slot2));
+    }
+
+
+    @Override
+    public int size() {
+        return mappedSize + appended.size();
+    }
+
+
+    @Override
+    public int getSignatureSize() {
+        return appended.getSignatureSize();
+    }
+
+
+    private int[] replacement(int slot) {
+        checkSlot(slot);
+        return replaced.isEmpty() ? null : replaced.get(slot);
+    }
+
+
+    private void checkSlot(int slot) {
+        if (slot < 0) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " is not in [0, " + size() + ").");
+        }
+    }
+
+
+    private void checkSize(int[] signature) {
+        if (signature.length != getSignatureSize()) {
+            throw new IllegalArgumentException("Expected a signature of size " +
+                    getSignatureSize() + " but got " + signature.length + ".");
+        }
+    }
+}
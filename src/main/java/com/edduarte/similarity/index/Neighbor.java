@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import java.util.Comparator;
+
+/**
+ * A document returned by a nearest-neighbor query, with its similarity to the
+ * query.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public final class Neighbor {
+
+    /**
+     * Orders neighbors from the most to the least similar, and by ascending
+     * id when they are equally similar.
+     */
+    public static final Comparator<Neighbor> BY_SIMILARITY =
+            Comparator.comparingDouble(Neighbor::getSimilarity).reversed()
+                    .thenComparingLong(Neighbor::getId);
+
+    private final long id;
+
+    private final double similarity;
+
+
+    public Neighbor(long id, double similarity) {
+        this.id = id;
+        this.similarity = similarity;
+    }
+
+
+    public long getId() {
+        return id;
+    }
+
+
+    public double getSimilarity() {
+        return similarity;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Neighbor)) {
+            return false;
+        }
+        Neighbor other = (Neighbor) o;
+        return id == other.id && Double.compare(similarity, other.similarity) == 0;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(id) + Double.hashCode(similarity);
+    }
+
+
+    @Override
+    public String toString() {
+        return id + "=" + similarity;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Signature store that keeps signatures contiguously in direct buffers,
+ * outside of the heap. Signatures take exactly four bytes per value, with no
+ * object header, and the garbage collector never scans or moves them.
+ * <p>
+ * Buffers are allocated as the store grows and released when the store
+ * becomes unreachable. The first buffer starts small and doubles, by copying
+ * it, until it holds a full chunk, and further buffers are allocated a chunk
+ * at a time, so a small store does not reserve a whole chunk.
+ * <p>
+ * Appends and sets must be made by one thread at a time, but reads of slots
+ * that were appended before the reading thread obtained them are
+ * thread-safe, also while appends are made: the buffers and the size are
+ * published through volatile fields. A read of a slot concurrent with a set of
+ * the same slot may see part of either signature.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class OffHeapSignatureStore implements SignatureStore {
+
+    private static final int DEFAULT_CHUNK_BYTES = 64 << 20;
+
+    private static final int INITIAL_CHUNK_BYTES = 64 << 10;
+
+    private final int signatureSize;
+
+    private final int signaturesPerChunk;
+
+    private volatile IntBuffer[] chunks = new IntBuffer[0];
+
+    private volatile int size;
+
+    /**
+     * The number of slots allocated, only used by the writer.
+     */
+    private int capacity;
+
+
+    public OffHeapSignatureStore(int signatureSize) {
+        this(signatureSize, Math.max(1, DEFAULT_CHUNK_BYTES / (signatureSize * 4)));
+    }
+
+
+    /**
+     * @param signatureSize      the length of every signature
+     * @param signaturesPerChunk the number of signatures in each direct
+     *                           buffer that is allocated
+     */
+    public OffHeapSignatureStore(int signatureSize, int signaturesPerChunk) {
+        if ((long) signatureSize * signaturesPerChunk * 4 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunks must be smaller than 2GB.");
+        }
+        this.signatureSize = signatureSize;
+        this.signaturesPerChunk = signaturesPerChunk;
+    }
+
+
+    @Override
+    public int append(int[] signature) {
+        checkSize(signature);
+        int slot = size;
+        if (slot == capacity) {
+            grow();
+        }
+        write(slot, signature);
+        // published after the signature is written
+        size = slot + 1;
+        return slot;
+    }
+
+
+    @Override
+    public void set(int slot, int[] signature) {
+        checkSize(signature);
+        checkSlot(slot);
+        write(slot, signature);
+    }
+
+
+    @Override
+    public void get(int slot, int[] destination) {
+        checkSlot(slot);
+        IntBuffer chunk = chunks[slot / signaturesPerChunk];
+        int offset = (slot % signaturesPerChunk) * signatureSize;
+        // bulk copy from a view, so concurrent readers keep their own position
+        chunk.duplicate().position(offset).get(destination, 0, signatureSize);
+    }
+
+
+    /**
+     * @return the value at the specified position of the signature in the
+     * specified slot
+     */
+    public int get(int slot, int position) {
+        checkSlot(slot);
+        return chunks[slot / signaturesPerChunk]
+                .get((slot % signaturesPerChunk) * signatureSize + position);
+    }
+
+
+    @Override
+    public double signatureIndex(int slot, int[] signature) {
+        checkSlot(slot);
+        IntBuffer chunk = chunks[slot / signaturesPerChunk];
+        int offset = (slot % signaturesPerChunk) * signatureSize;
+        double similarity = 0;
+        for (int i = 0; i < signatureSize; i++) {
+            if (chunk.get(offset + i) == signature[i]) {
+                similarity++;
+            }
+        }
+        return similarity / signatureSize;
+    }
+
+
+    @Override
+    public double signatureIndex(int slot1, int slot2) {
+        checkSlot(slot1);
+        checkSlot(slot2);
+        IntBuffer[] chunks = this.chunks;
+        IntBuffer chunk1 = chunks[slot1 / signaturesPerChunk];
+        IntBuffer chunk2 = chunks[slot2 / signaturesPerChunk];
+        int offset1 = (slot1 % signaturesPerChunk) * signatureSize;
+        int offset2 = (slot2 % signaturesPerChunk) * signatureSize;
+        double similarity = 0;
+        for (int i = 0; i < signatureSize; i++) {
+            if (chunk1.get(offset1 + i) == chunk2.get(offset2 + i)) {
+                similarity++;
+            }
+        }
+        return similarity / signatureSize;
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    @Override
+    public int getSignatureSize() {
+        return signatureSize;
+    }
+
+
+    /**
+     * @return the number of bytes allocated outside of the heap
+     */
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (IntBuffer chunk : chunks) {
+            bytes += chunk.capacity() * 4L;
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Doubles the first buffer until it holds a full chunk, and then adds a
+     * chunk. Readers keep using the buffers they obtained, which still hold
+     * every slot they can read.
+     */
+    private void grow() {
+        IntBuffer[] current = chunks;
+        if (capacity < signaturesPerChunk) {
+            int initial = Math.max(1, INITIAL_CHUNK_BYTES / (signatureSize * 4));
+            int slots = (int) Math.min(signaturesPerChunk, Math.max(initial, 2L * capacity));
+            IntBuffer first = allocate(slots);
+            if (capacity > 0) {
+                first.put(current[0].duplicate().position(0).limit(capacity * signatureSize));
+                first.clear();
+            }
+            chunks = new IntBuffer[]{first};
+            capacity = slots;
+        } else {
+            IntBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = allocate(signaturesPerChunk);
+            chunks = grown;
+            capacity += signaturesPerChunk;
+        }
+    }
+
+
+    private IntBuffer allocate(int slots) {
+        return ByteBuffer.allocateDirect(slots * signatureSize * 4)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+    }
+
+
+    private void write(int slot, int[] signature) {
+        IntBuffer chunk = chunks[slot / signaturesPerChunk];
+        int offset = (slot % signaturesPerChunk) * signatureSize;
+        chunk.duplicate().position(offset).put(signature, 0, signatureSize);
+    }
+
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " is not in [0, " + size + ").");
+        }
+    }
+
+
+    private void checkSize(int[] signature) {
+        if (signature.length != signatureSize) {
+            throw new IllegalArgumentException("Expected a signature of size " +
+                    signatureSize + " but got " + signature.length + ".");
+        }
+    }
+}
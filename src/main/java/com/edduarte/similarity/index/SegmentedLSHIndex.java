@@ -0,0 +1,742 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * LSH index for collections whose documents are frequently updated and
+ * deleted, organized in segments like a log-structured merge tree.
+ * <p>
+ * Documents are added to a mutable segment, an {@link LSHIndex} in the heap.
+ * Once it holds {@link #withSegmentSize(int) segmentSize} documents, it is
+ * replaced by an empty one and frozen in the background into an immutable
+ * segment with compact, array-based band tables; until then, it is still
+ * queried as it was.
+ * Deleting or updating a document in a frozen segment only marks it with a
+ * tombstone, which lookups skip. Segments where too many documents are
+ * deleted, or the smallest segments when there are too many of them, are
+ * merged in the background into a new segment without the deleted
+ * documents, so stale entries do not accumulate and queries look up a
+ * bounded number of segments.
+ * <p>
+ * This class is thread-safe. Queries run concurrently with each other;
+ * writes and the swap of frozen or merged segments briefly exclude them, but
+ * building those segments runs without blocking either.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class SegmentedLSHIndex {
+
+    private final Signature2BandsConverter bandp;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object compaction = new Object();
+
+    private final List<FrozenSegment> segments = new ArrayList<>();
+
+    private final List<PendingSegment> pending = new ArrayList<>();
+
+    private final Map<Long, FrozenSegment> frozenIds = new HashMap<>();
+
+    private LSHIndex mutable;
+
+    private int segmentSize = 10000;
+
+    private int maxSegments = 8;
+
+    private double maxDeletedRatio = 0.3;
+
+    private ExecutionStrategy strategy = ExecutionStrategy.defaults();
+
+    private boolean compacting;
+
+
+    /**
+     * @param b the number of bands
+     * @param r the number of rows
+     */
+    public SegmentedLSHIndex(int b, int r) {
+        this.bandp = new Signature2BandsConverter(b, r);
+        this.mutable = new LSHIndex(b, r);
+    }
+
+
+    /**
+     * Sets the number of documents in the mutable segment at which it is
+     * frozen. Defaults to 10000.
+     *
+     * @throws IllegalArgumentException if a frozen segment cannot hold that
+     *                                  many documents
+     */
+    public SegmentedLSHIndex withSegmentSize(int segmentSize) {
+        FrozenSegment.checkSize(segmentSize, signatureSize(), bandp.getB());
+        this.segmentSize = Math.max(1, segmentSize);
+        return this;
+    }
+
+
+    /**
+     * Sets the number of frozen segments above which the smallest ones are
+     * merged. Defaults to 8.
+     */
+    public SegmentedLSHIndex withMaxSegments(int maxSegments) {
+        this.maxSegments = Math.max(1, maxSegments);
+        return this;
+    }
+
+
+    /**
+     * Sets the fraction of deleted documents above which a frozen segment is
+     * rewritten. Defaults to 0.3.
+     */
+    public SegmentedLSHIndex withMaxDeletedRatio(double maxDeletedRatio) {
+        this.maxDeletedRatio = maxDeletedRatio;
+        return this;
+    }
+
+
+    /**
+     * Sets the strategy that freezes and merges segments, with the number of
+     * postings to write as their cost. Defaults to {@link ExecutionStrategy#defaults()}.
+     */
+    public SegmentedLSHIndex withExecutionStrategy(ExecutionStrategy strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+
+    /**
+     * Adds a document to the index, replacing its previous signature if the
+     * id was already indexed.
+     */
+    public void add(long id, int[] signature) {
+        PendingSegment full = null;
+        lock.writeLock().lock();
+        try {
+            if (!mutable.contains(id)) {
+                deleteFrozen(id);
+            }
+            mutable.add(id, signature);
+            if (mutable.size() >= segmentSize) {
+                full = rotate();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full != null) {
+            scheduleFreeze(full);
+        }
+        maybeCompact();
+    }
+
+
+    /**
+     * Removes a document from the index.
+     *
+     * @return true if the id was indexed
+     */
+    public boolean remove(long id) {
+        boolean removed;
+        lock.writeLock().lock();
+        try {
+            removed = mutable.remove(id) || deleteFrozen(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeCompact();
+        return removed;
+    }
+
+
+    /**
+     * Freezes the mutable segment on the calling thread, regardless of its
+     * size. Segments that were already being frozen in the background are
+     * not waited for.
+     */
+    public void flush() {
+        PendingSegment full;
+        lock.writeLock().lock();
+        try {
+            full = mutable.size() > 0 ? rotate() : null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full != null) {
+            freeze(full);
+        }
+        maybeCompact();
+    }
+
+
+    /**
+     * Merges every frozen segment into one, without the deleted documents,
+     * on the calling thread. Segments whose documents would not fit in one
+     * segment are merged into as few segments as they fit in. If a merge is
+     * running in the background, waits for it to finish first.
+     */
+    public void compact() throws InterruptedException {
+        synchronized (compaction) {
+            while (compacting) {
+                compaction.wait();
+            }
+            compacting = true;
+        }
+        try {
+            List<List<FrozenSegment>> groups = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                long maxSize = FrozenSegment.maxSize(signatureSize(), bandp.getB());
+                long groupSize = 0;
+                List<FrozenSegment> group = new ArrayList<>();
+                for (FrozenSegment segment : segments) {
+                    if (!group.isEmpty() && groupSize + segment.liveCount() > maxSize) {
+                        groups.add(group);
+                        group = new ArrayList<>();
+                        groupSize = 0;
+                    }
+                    group.add(segment);
+                    groupSize += segment.liveCount();
+                }
+                groups.add(group);
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (List<FrozenSegment> group : groups) {
+                merge(group);
+            }
+        } finally {
+            finishCompaction();
+        }
+    }
+
+
+    /**
+     * @return the signature of the specified document, or null if it is not
+     * indexed
+     */
+    public int[] getSignature(long id) {
+        lock.readLock().lock();
+        try {
+            if (mutable.contains(id)) {
+                return mutable.getSignature(id);
+            }
+            PendingSegment p = findPending(id);
+            if (p != null) {
+                return p.index.getSignature(id);
+            }
+            FrozenSegment segment = frozenIds.get(id);
+            return segment != null ? segment.getSignature(segment.find(id)) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return mutable.contains(id) || findPending(id) != null
+                    || frozenIds.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = frozenIds.size() + mutable.size();
+            for (PendingSegment p : pending) {
+                size += p.index.size() - p.deleted.size();
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return the number of frozen segments
+     */
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return the ids of the documents that share at least one band with the
+     * specified signature, in ascending order
+     */
+    public long[] candidates(int[] signature) {
+        long[] keys = keys(signature);
+        LongList ids = new LongList();
+        lock.readLock().lock();
+        try {
+            for (FrozenSegment segment : segments) {
+                segment.candidates(keys, doc -> ids.add(segment.getId(doc)));
+            }
+            for (PendingSegment p : pending) {
+                for (long id : p.index.candidates(signature)) {
+                    if (!p.deleted.contains(id)) {
+                        ids.add(id);
+                    }
+                }
+            }
+            ids.addAll(mutable.candidates(signature));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids.distinct();
+    }
+
+
+    /**
+     * @return the ids of the candidate documents whose estimated similarity
+     * with the specified signature is at least the threshold, in ascending
+     * order
+     */
+    public long[] query(int[] signature, double threshold) {
+        LongList result = new LongList();
+        lock.readLock().lock();
+        try {
+            forEachCandidate(signature, (id, similarity) -> {
+                if (similarity >= threshold) {
+                    result.add(id);
+                }
+            });
+            for (PendingSegment p : pending) {
+                for (long id : p.index.query(signature, threshold)) {
+                    if (!p.deleted.contains(id)) {
+                        result.add(id);
+                    }
+                }
+            }
+            result.addAll(mutable.query(signature, threshold));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result.distinct();
+    }
+
+
+    /**
+     * Finds the k candidate documents with the highest estimated similarity
+     * to the specified signature.
+     *
+     * @return at most k neighbors, from the most to the least similar (see
+     * {@link Neighbor#BY_SIMILARITY})
+     */
+    public List<Neighbor> topK(int[] signature, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Neighbor> heap = new PriorityQueue<>(k + 1,
+                Neighbor.BY_SIMILARITY.reversed());
+        lock.readLock().lock();
+        try {
+            forEachCandidate(signature, (id, similarity) ->
+                    offer(heap, k, new Neighbor(id, similarity)));
+            for (PendingSegment p : pending) {
+                // enough neighbors to fill the heap after the deleted ones
+                for (Neighbor n : p.index.topK(signature, k + p.deleted.size())) {
+                    if (!p.deleted.contains(n.getId())) {
+                        offer(heap, k, n);
+                    }
+                }
+            }
+            for (Neighbor n : mutable.topK(signature, k)) {
+                offer(heap, k, n);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Neighbor> result = new ArrayList<>(heap);
+        result.sort(Neighbor.BY_SIMILARITY);
+        return result;
+    }
+
+
+    public int getB() {
+        return bandp.getB();
+    }
+
+
+    public int getR() {
+        return bandp.getR();
+    }
+
+
+    /**
+     * Passes every distinct live candidate of the frozen segments to the
+     * consumer, with its estimated similarity.
+     */
+    private void forEachCandidate(int[] signature, ScoredIdConsumer consumer) {
+        long[] keys = keys(signature);
+        BitSet seen = new BitSet();
+        for (FrozenSegment segment : segments) {
+            seen.clear();
+            segment.candidates(keys, doc -> {
+                if (!seen.get(doc)) {
+                    seen.set(doc);
+                    consumer.accept(segment.getId(doc), segment.signatureIndex(doc, signature));
+                }
+            });
+        }
+    }
+
+
+    private long[] keys(int[] signature) {
+        return BandTable.keys(bandp.compute(signature));
+    }
+
+
+    private static void offer(PriorityQueue<Neighbor> heap, int k, Neighbor n) {
+        if (heap.size() < k) {
+            heap.add(n);
+        } else if (Neighbor.BY_SIMILARITY.compare(n, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(n);
+        }
+    }
+
+
+    /**
+     * Deletes the live copy of the document with the specified id from the
+     * segments that are being frozen or from the frozen segments, where it
+     * is marked with a tombstone. Must be called with the write lock held.
+     */
+    private boolean deleteFrozen(long id) {
+        PendingSegment p = findPending(id);
+        if (p != null) {
+            return p.deleted.add(id);
+        }
+        FrozenSegment segment = frozenIds.remove(id);
+        return segment != null && segment.delete(id);
+    }
+
+
+    /**
+     * @return the segment being frozen that holds the live copy of the
+     * document with the specified id, or null if there is none. Must be
+     * called with a lock held.
+     */
+    private PendingSegment findPending(long id) {
+        for (PendingSegment p : pending) {
+            if (p.index.contains(id) && !p.deleted.contains(id)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Replaces the mutable segment with an empty one, and keeps the previous
+     * one readable until it is frozen. Must be called with the write lock
+     * held.
+     */
+    private PendingSegment rotate() {
+        PendingSegment full = new PendingSegment(mutable);
+        pending.add(full);
+        mutable = new LSHIndex(bandp.getB(), bandp.getR());
+        return full;
+    }
+
+
+    private void scheduleFreeze(PendingSegment full) {
+        long cost = (long) full.index.size() * bandp.getB();
+        try {
+            strategy.executorFor(cost).execute(() -> {
+                freeze(full);
+                maybeCompact();
+            });
+        } catch (RejectedExecutionException ex) {
+            freeze(full);
+        }
+    }
+
+
+    /**
+     * Builds a frozen segment from a segment that is no longer written, and
+     * swaps it in. Documents of the pending segment that were deleted or
+     * updated meanwhile are marked with tombstones.
+     */
+    private void freeze(PendingSegment full) {
+        // the index of a pending segment is only read, so it can be copied
+        // without the lock
+        Map<Long, Integer> slots = full.index.getSlots();
+        SignatureStore store = full.index.getStore();
+        int signatureSize = store.getSignatureSize();
+        FrozenSegment.checkSize(slots.size(), signatureSize, bandp.getB());
+        long[] ids = new long[slots.size()];
+        int n = 0;
+        for (Long id : slots.keySet()) {
+            ids[n++] = id;
+        }
+        Arrays.sort(ids);
+        int[] signatures = new int[ids.length * signatureSize];
+        int[] signature = new int[signatureSize];
+        for (int doc = 0; doc < ids.length; doc++) {
+            store.get(slots.get(ids[doc]), signature);
+            System.arraycopy(signature, 0, signatures, doc * signatureSize, signatureSize);
+        }
+        FrozenSegment segment = FrozenSegment.build(ids, signatures, signatureSize, bandp);
+
+        lock.writeLock().lock();
+        try {
+            for (long id : ids) {
+                if (full.deleted.contains(id)) {
+                    segment.delete(id);
+                } else {
+                    frozenIds.put(id, segment);
+                }
+            }
+            pending.remove(full);
+            if (segment.liveCount() > 0) {
+                segments.add(segment);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Starts a merge if one is needed and none is running.
+     */
+    private void maybeCompact() {
+        synchronized (compaction) {
+            if (compacting) {
+                return;
+            }
+            compacting = true;
+        }
+        List<FrozenSegment> inputs;
+        lock.readLock().lock();
+        try {
+            inputs = selectMerge();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (inputs.isEmpty()) {
+            finishCompaction();
+            return;
+        }
+        long cost = 0;
+        for (FrozenSegment segment : inputs) {
+            cost += segment.postingCount();
+        }
+        try {
+            strategy.executorFor(cost).execute(() -> {
+                runMerge(inputs);
+                maybeCompact();
+            });
+        } catch (RejectedExecutionException ex) {
+            finishCompaction();
+        }
+    }
+
+
+    private void finishCompaction() {
+        synchronized (compaction) {
+            compacting = false;
+            compaction.notifyAll();
+        }
+    }
+
+
+    /**
+     * @return the segments with too many deleted documents, and the smallest
+     * segments while there are too many of them, as long as their live
+     * documents fit in one segment
+     */
+    private List<FrozenSegment> selectMerge() {
+        long maxSize = FrozenSegment.maxSize(signatureSize(), bandp.getB());
+        long size = 0;
+        List<FrozenSegment> selected = new ArrayList<>();
+        List<FrozenSegment> others = new ArrayList<>();
+        for (FrozenSegment segment : segments) {
+            if (segment.liveCount() < segment.size()
+                    && segment.deletedRatio() >= maxDeletedRatio
+                    && size + segment.liveCount() <= maxSize) {
+                selected.add(segment);
+                size += segment.liveCount();
+            } else {
+                others.add(segment);
+            }
+        }
+        others.sort(Comparator.comparingInt(FrozenSegment::liveCount));
+        // the merged segment replaces the selected ones
+        int i = 0;
+        while (others.size() - i + Math.min(selected.size(), 1) > maxSegments
+                && size + others.get(i).liveCount() <= maxSize) {
+            size += others.get(i).liveCount();
+            selected.add(others.get(i++));
+        }
+        if (selected.size() == 1 && selected.get(0).liveCount() == selected.get(0).size()) {
+            // merging a single segment without deleted documents changes nothing
+            selected.clear();
+        }
+        return selected;
+    }
+
+
+    /**
+     * Merges the specified segments, and releases the compaction started by
+     * {@link #maybeCompact()}.
+     */
+    private void runMerge(List<FrozenSegment> inputs) {
+        try {
+            merge(inputs);
+        } finally {
+            finishCompaction();
+        }
+    }
+
+
+    /**
+     * Merges the live documents of the specified segments into a new one and
+     * swaps it in. Documents deleted while the merge runs are deleted from
+     * the new segment before it is swapped in. The caller holds the
+     * compaction.
+     */
+    private void merge(List<FrozenSegment> inputs) {
+        BitSet[] deleted = new BitSet[inputs.size()];
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                deleted[i] = inputs.get(i).getDeleted();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        FrozenSegment merged = merge(inputs, deleted);
+
+        lock.writeLock().lock();
+        try {
+            Set<FrozenSegment> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+            replaced.addAll(inputs);
+            for (int doc = 0; doc < merged.size(); doc++) {
+                long id = merged.getId(doc);
+                if (replaced.contains(frozenIds.get(id))) {
+                    frozenIds.put(id, merged);
+                } else {
+                    // deleted or updated while merging
+                    merged.delete(id);
+                }
+            }
+            segments.removeIf(replaced::contains);
+            if (merged.liveCount() > 0) {
+                segments.add(merged);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Merges the documents of the segments that are not in their deleted
+     * sets, in ascending order of id.
+     */
+    private FrozenSegment merge(List<FrozenSegment> inputs, BitSet[] deleted) {
+        int signatureSize = inputs.isEmpty() ? 0 : inputs.get(0).getSignatureSize();
+        long live = 0;
+        int[] next = new int[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            live += inputs.get(i).size() - deleted[i].cardinality();
+            next[i] = deleted[i].nextClearBit(0);
+        }
+        FrozenSegment.checkSize(live, signatureSize, bandp.getB());
+        int size = (int) live;
+        long[] ids = new long[size];
+        int[] signatures = new int[size * signatureSize];
+        for (int doc = 0; doc < size; doc++) {
+            // live ids are distinct across segments, so a scan of the heads
+            // of the few inputs finds the smallest one
+            int min = -1;
+            for (int i = 0; i < inputs.size(); i++) {
+                if (next[i] < inputs.get(i).size() && (min < 0 ||
+                        inputs.get(i).getId(next[i]) < inputs.get(min).getId(next[min]))) {
+                    min = i;
+                }
+            }
+            FrozenSegment segment = inputs.get(min);
+            ids[doc] = segment.getId(next[min]);
+            segment.copySignature(next[min], signatures, doc * signatureSize);
+            next[min] = deleted[min].nextClearBit(next[min] + 1);
+        }
+        return FrozenSegment.build(ids, signatures, signatureSize, bandp);
+    }
+
+
+    private int signatureSize() {
+        return bandp.getB() * bandp.getR();
+    }
+
+
+    /**
+     * Former mutable segment that is being frozen. Its index is no longer
+     * written; documents deleted from it are recorded apart.
+     */
+    private static final class PendingSegment {
+
+        private final LSHIndex index;
+
+        private final Set<Long> deleted = new HashSet<>();
+
+
+        private PendingSegment(LSHIndex index) {
+            this.index = index;
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface ScoredIdConsumer {
+
+        void accept(long id, double similarity);
+    }
+}
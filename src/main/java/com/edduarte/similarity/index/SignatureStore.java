@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+/**
+ * Container of minhash signatures of a fixed size, addressed by the slot
+ * returned when they were appended.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public interface SignatureStore {
+
+    /**
+     * Appends a signature to the end of this store.
+     *
+     * @return the slot of the signature
+     */
+    int append(int[] signature);
+
+
+    /**
+     * Replaces the signature in the specified slot.
+     */
+    void set(int slot, int[] signature);
+
+
+    /**
+     * Copies the signature in the specified slot into the destination array,
+     * which must have at least {@link #getSignatureSize()} values.
+     */
+    void get(int slot, int[] destination);
+
+
+    /**
+     * @return a copy of the signature in the specified slot
+     */
+    default int[] get(int slot) {
+        int[] signature = new int[getSignatureSize()];
+        get(slot, signature);
+        return signature;
+    }
+
+
+    /**
+     * @return the fraction of positions where the signature in the specified
+     * slot and the other signature are equal, as in
+     * {@link com.edduarte.similarity.Similarity#signatureIndex(int[], int[])}
+     */
+    double signatureIndex(int slot, int[] signature);
+
+
+    /**
+     * @return the fraction of positions where the signatures in the specified
+     * slots are equal
+     */
+    double signatureIndex(int slot1, int slot2);
+
+
+    /**
+     * @return the number of slots
+     */
+    int size();
+
+
+    int getSignatureSize();
+}
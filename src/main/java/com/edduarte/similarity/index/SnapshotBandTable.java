@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Band table of an index restored from a snapshot (see
+ * {@link IndexSnapshot}). The buckets of the snapshot are mapped from the
+ * file, as band keys in ascending order with the offset of their ids in a
+ * postings section, and are found by binary search without loading them.
+ * <p>
+ * The mapped buckets are never modified. Ids that are added after the
+ * restore are kept in a {@link HashBandTable}, and the ids of documents that
+ * are removed are filtered out of the mapped buckets. As in
+ * {@link LSHIndex}, a document must be removed before it is added again.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class SnapshotBandTable implements BandTable {
+
+    private final MappedLongs buckets;
+
+    private final long bucketCount;
+
+    private final MappedLongs postings;
+
+    private final HashBandTable added = new HashBandTable();
+
+    private final Set<Long> removed = new HashSet<>();
+
+
+    /**
+     * @param buckets  pairs of band key and postings offset, sorted by key,
+     *                 followed by a pair with the total number of postings
+     * @param postings the ids of every bucket, one after the other
+     */
+    SnapshotBandTable(MappedLongs buckets, MappedLongs postings) {
+        this.buckets = buckets;
+        this.bucketCount = buckets.size() / 2 - 1;
+        this.postings = postings;
+    }
+
+
+    @Override
+    public void add(long id, long[] keys) {
+        added.add(id, keys);
+    }
+
+
+    @Override
+    public void remove(long id, long[] keys) {
+        added.remove(id, keys);
+        removed.add(id);
+    }
+
+
+    @Override
+    public void candidates(long[] keys, LongConsumer sink) {
+        for (long key : keys) {
+            long bucket = find(key);
+            if (bucket < 0) {
+                continue;
+            }
+            long from = buckets.get(2 * bucket + 1);
+            long to = buckets.get(2 * bucket + 3);
+            for (long i = from; i < to; i++) {
+                long id = postings.get(i);
+                if (removed.isEmpty() || !removed.contains(id)) {
+                    sink.accept(id);
+                }
+            }
+        }
+        added.candidates(keys, sink);
+    }
+
+
+    private long find(long key) {
+        long lo = 0;
+        long hi = bucketCount - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long value = buckets.get(2 * mid);
+            if (value < key) {
+                lo = mid + 1;
+            } else if (value > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map from document ids to signature slots of an index restored from a
+ * snapshot (see {@link IndexSnapshot}). The ids of the snapshot are mapped
+ * from the file in ascending order, and the document in the i-th position
+ * is in slot i, so they are found by binary search without loading them.
+ * Ids that are added or moved after the restore are kept in a hash map, and
+ * ids that are removed are marked in a bit set.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class SnapshotSlots extends AbstractMap<Long, Integer> {
+
+    private final MappedLongs ids;
+
+    private final BitSet removed = new BitSet();
+
+    private final Map<Long, Integer> added = new HashMap<>();
+
+    private int removedCount;
+
+
+    SnapshotSlots(MappedLongs ids) {
+        this.ids = ids;
+    }
+
+
+    @Override
+    public Integer get(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        Integer slot = added.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        int i = find((Long) key);
+        return i >= 0 ? i : null;
+    }
+
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+
+    @Override
+    public Integer put(Long key, Integer value) {
+        Integer previous = remove(key);
+        added.put(key, value);
+        return previous;
+    }
+
+
+    @Override
+    public Integer remove(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        Integer slot = added.remove(key);
+        if (slot != null) {
+            return slot;
+        }
+        int i = find((Long) key);
+        if (i < 0) {
+            return null;
+        }
+        removed.set(i);
+        removedCount++;
+        return i;
+    }
+
+
+    @Override
+    public int size() {
+        return (int) ids.size() - removedCount + added.size();
+    }
+
+
+    @Override
+    public Set<Entry<Long, Integer>> entrySet() {
+        return new AbstractSet<Entry<Long, Integer>>() {
+            @Override
+            public Iterator<Entry<Long, Integer>> iterator() {
+                return new EntryIterator();
+            }
+
+
+            @Override
+            public int size() {
+                return SnapshotSlots.this.size();
+            }
+        };
+    }
+
+
+    /**
+     * @return the position of the id in the snapshot, or -1 if it is not
+     * there or was removed
+     */
+    private int find(long id) {
+        int lo = 0;
+        int hi = (int) ids.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long value = ids.get(mid);
+            if (value < id) {
+                lo = mid + 1;
+            } else if (value > id) {
+                hi = mid - 1;
+            } else {
+                return removed.get(mid) ? -1 : mid;
+            }
+        }
+        return -1;
+    }
+
+
+    private class EntryIterator implements Iterator<Entry<Long, Integer>> {
+
+        private final Iterator<Entry<Long, Integer>> addedEntries =
+                added.entrySet().iterator();
+
+        private int next = removed.nextClearBit(0);
+
+
+        @Override
+        public boolean hasNext() {
+            return next < ids.size() || addedEntries.hasNext();
+        }
+
+
+        @Override
+        public Entry<Long, Integer> next() {
+            if (next < ids.size()) {
+                Entry<Long, Integer> entry = new SimpleImmutableEntry<>(ids.get(next), next);
+                next = removed.nextClearBit(next + 1);
+                return entry;
+            }
+            if (!addedEntries.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return addedEntries.next();
+        }
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of the documents inserted into and deleted from an
+ * {@link LSHIndex}, so that the changes made after the last
+ * {@link IndexSnapshot} survive a crash. Inserts are logged with their
+ * signature, so replaying the log does not shingle or hash anything.
+ * <p>
+ * Every record is written with its length and a CRC32C checksum. When the
+ * log is opened, a record that was only partially written by a crash is
+ * detected and cut off, along with anything after it.
+ * <p>
+ * Every record is written to the file as soon as it is logged, so it
+ * survives the process being killed. By default, {@link #insert(long, int[])}
+ * and {@link #delete(long)} also return only once their record is synced to
+ * the storage device. Threads that log concurrently share a sync (group
+ * commit): while one thread syncs, the others write their records, and the
+ * next sync covers all of them. With
+ * {@link #withSyncBatch(int, long, TimeUnit)}, records are synced in batches
+ * instead, and a crash of the operating system or a power loss can lose the
+ * records written since the last sync.
+ * <p>
+ * This class is thread-safe. A typical startup restores the last snapshot
+ * and replays the log on top of it:
+ * <pre>{@code
+ * LSHIndex index = IndexSnapshot.open(snapshotFile).restore();
+ * WriteAheadLog log = new WriteAheadLog(logFile);
+ * log.replay(index);
+ * }</pre>
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class WriteAheadLog implements Closeable {
+
+    static final int MAGIC = 0x4C534857;
+
+    static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private static final byte INSERT = 1;
+
+    private static final byte DELETE = 2;
+
+    private final FileChannel channel;
+
+    private final Object lock = new Object();
+
+    private ByteBuffer record = newBuffer(1 << 16);
+
+    private int unsynced;
+
+    private long appended;
+
+    private long durable;
+
+    private boolean syncing;
+
+    private long end;
+
+    private long lastSync = System.nanoTime();
+
+    private int batchRecords = 1;
+
+    private long batchNanos;
+
+    private IOException failure;
+
+
+    /**
+     * Opens the log in the specified file, creating it if it does not exist.
+     * Records after the last complete one, left by a crash while they were
+     * being written, are removed.
+     *
+     * @throws IllegalArgumentException if the file is not a log of a known
+     *                                  version
+     */
+    public WriteAheadLog(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                ByteBuffer header = newBuffer(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                write(header, 0);
+                channel.truncate(HEADER_BYTES);
+                channel.force(true);
+                end = HEADER_BYTES;
+            } else {
+                ByteBuffer header = read(0, HEADER_BYTES);
+                if (header.getInt() != MAGIC) {
+                    throw new IllegalArgumentException("Not a write-ahead log.");
+                }
+                int version = header.getInt();
+                if (version != VERSION) {
+                    throw new IllegalArgumentException("Unsupported log version " + version + ".");
+                }
+                end = scan(null);
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Syncs records in batches instead of one sync per call: a call that
+     * logs a record writes it and returns without waiting for the sync,
+     * unless at least the specified number of records are unsynced or the
+     * specified time passed since the last sync. The interval is only
+     * checked when a record is logged, so the records of a log that stays
+     * idle are left unsynced until {@link #sync()} or {@link #close()}.
+     *
+     * @param records  the maximum number of records to leave unsynced
+     * @param interval the time after the last sync from which the next
+     *                 record logged is synced
+     */
+    public WriteAheadLog withSyncBatch(int records, long interval, TimeUnit unit) {
+        synchronized (lock) {
+            this.batchRecords = Math.max(1, records);
+            this.batchNanos = unit.toNanos(interval);
+        }
+        return this;
+    }
+
+
+    /**
+     * Logs the insertion of a document, or the replacement of its signature.
+     *
+     * @return the sequence number of the record
+     */
+    public long insert(long id, int[] signature) throws IOException {
+        long sequence;
+        synchronized (lock) {
+            ensureOpen();
+            beginRecord(INSERT, id, 4 + 4 * signature.length);
+            record.putInt(signature.length);
+            for (int value : signature) {
+                record.putInt(value);
+            }
+            sequence = endRecord();
+            if (!isSyncDue()) {
+                return sequence;
+            }
+        }
+        sync(sequence);
+        return sequence;
+    }
+
+
+    /**
+     * Logs the removal of a document.
+     *
+     * @return the sequence number of the record
+     */
+    public long delete(long id) throws IOException {
+        long sequence;
+        synchronized (lock) {
+            ensureOpen();
+            beginRecord(DELETE, id, 0);
+            sequence = endRecord();
+            if (!isSyncDue()) {
+                return sequence;
+            }
+        }
+        sync(sequence);
+        return sequence;
+    }
+
+
+    /**
+     * Waits until every record logged so far is synced.
+     */
+    public void sync() throws IOException {
+        long sequence;
+        synchronized (lock) {
+            sequence = appended;
+        }
+        sync(sequence);
+    }
+
+
+    /**
+     * Waits until the record with the specified sequence number, and every
+     * record before it, is synced. If no other thread is syncing, the calling
+     * thread syncs every record written so far; otherwise it waits for that
+     * sync to finish and checks again.
+     */
+    public void sync(long sequence) throws IOException {
+        long target;
+        synchronized (lock) {
+            while (true) {
+                if (failure != null) {
+                    throw new IOException("The log failed to write or sync.", failure);
+                }
+                if (durable >= sequence) {
+                    return;
+                }
+                if (!syncing) {
+                    break;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a sync.");
+                }
+            }
+            // records are written under the lock, so every record up to the
+            // target is in the file before the sync starts
+            syncing = true;
+            target = appended;
+            unsynced = 0;
+        }
+
+        IOException error = null;
+        try {
+            channel.force(false);
+        } catch (IOException ex) {
+            error = ex;
+        }
+
+        synchronized (lock) {
+            syncing = false;
+            if (error == null) {
+                durable = Math.max(durable, target);
+                lastSync = System.nanoTime();
+            } else {
+                // the written records may not be on the device, so nothing
+                // can be acknowledged any more
+                failure = error;
+            }
+            lock.notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+
+    /**
+     * Applies every record in the log to the index, in the order they were
+     * logged. Inserts replace the signatures of documents that are already
+     * indexed and deletes of documents that are not indexed are ignored, so
+     * the log can be replayed over a snapshot that already contains some of
+     * its records.
+     *
+     * @return the number of records applied
+     */
+    public long replay(LSHIndex index) throws IOException {
+        sync();
+        return scan(index);
+    }
+
+
+    /**
+     * Removes every record from the log. Call this after writing a snapshot
+     * that contains every logged change, while no other thread is logging.
+     */
+    public void reset() throws IOException {
+        sync();
+        synchronized (lock) {
+            channel.truncate(HEADER_BYTES);
+            channel.force(true);
+            end = HEADER_BYTES;
+        }
+    }
+
+
+    /**
+     * @return the number of bytes of the log that are written
+     */
+    public long length() {
+        synchronized (lock) {
+            return end;
+        }
+    }
+
+
+    /**
+     * Syncs every written record and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (channel.isOpen() && failure == null) {
+                sync();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    private boolean isSyncDue() {
+        unsynced++;
+        return unsynced >= batchRecords
+                || System.nanoTime() - lastSync >= batchNanos;
+    }
+
+
+    private void beginRecord(byte type, long id, int extraBytes) {
+        int capacity = RECORD_HEADER_BYTES + 9 + extraBytes;
+        if (record.capacity() < capacity) {
+            record = newBuffer(Math.max(record.capacity() * 2, capacity));
+        }
+        record.clear().position(RECORD_HEADER_BYTES);
+        record.put(type);
+        record.putLong(id);
+    }
+
+
+    /**
+     * Writes the record to the end of the file.
+     *
+     * @return the sequence number of the record
+     */
+    private long endRecord() throws IOException {
+        int length = record.position() - RECORD_HEADER_BYTES;
+        CRC32C crc = new CRC32C();
+        ByteBuffer payload = record.duplicate();
+        payload.position(RECORD_HEADER_BYTES).limit(RECORD_HEADER_BYTES + length);
+        crc.update(payload);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        try {
+            write(record, end);
+        } catch (IOException ex) {
+            // the record may be partially written, and is cut off when the
+            // log is opened again
+            failure = ex;
+            throw ex;
+        }
+        end += RECORD_HEADER_BYTES + length;
+        return ++appended;
+    }
+
+
+    private void ensureOpen() throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("The log is closed.");
+        }
+        if (failure != null) {
+            throw new IOException("The log failed to write or sync.", failure);
+        }
+    }
+
+
+    /**
+     * Reads the records from the start of the log, applying them to the
+     * index if it is not null.
+     *
+     * @return the position after the last complete record, or the number of
+     * records applied if the index is not null
+     */
+    private long scan(LSHIndex index) throws IOException {
+        long size = channel.size();
+        long position = HEADER_BYTES;
+        long count = 0;
+        ByteBuffer buffer = newBuffer(1 << 16);
+        CRC32C crc = new CRC32C();
+        while (position + RECORD_HEADER_BYTES <= size) {
+            ByteBuffer header = read(position, RECORD_HEADER_BYTES);
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 9 || position + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            if (buffer.capacity() < length) {
+                buffer = newBuffer(length);
+            }
+            buffer.clear().limit(length);
+            readFully(buffer, position + RECORD_HEADER_BYTES);
+            buffer.flip();
+            crc.reset();
+            crc.update(buffer.duplicate());
+            if ((int) crc.getValue() != checksum || !apply(buffer, index)) {
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+            count++;
+        }
+        return index != null ? count : position;
+    }
+
+
+    private static boolean apply(ByteBuffer record, LSHIndex index) {
+        byte type = record.get();
+        long id = record.getLong();
+        if (type == INSERT) {
+            int length = record.getInt();
+            if (length < 0 || record.remaining() != 4L * length) {
+                return false;
+            }
+            if (index != null) {
+                int[] signature = new int[length];
+                record.asIntBuffer().get(signature);
+                index.add(id, signature);
+            }
+            return true;
+        } else if (type == DELETE) {
+            if (index != null) {
+                index.remove(id);
+            }
+            return true;
+        }
+        return false;
+    }
+
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = newBuffer(length);
+        readFully(buffer, position);
+        buffer.flip();
+        return buffer;
+    }
+
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of the log.");
+            }
+            position += n;
+        }
+    }
+
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index.shard;
+
+import com.edduarte.similarity.index.BandTable;
+import com.edduarte.similarity.index.HashBandTable;
+import com.edduarte.similarity.index.LongList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves a band table to {@link SocketBandTable} clients, so that a shard of
+ * a {@link ShardedBandTable} can be kept in a worker process. Every
+ * connection is handled by its own daemon thread, and requests are applied
+ * to the table one at a time.
+ * <p>
+ * To start a worker process that keeps its shard in the heap:
+ * <pre>
+ * java -cp near-neighbor-search.jar com.edduarte.similarity.index.shard.BandTableServer 7411
+ * </pre>
+ * The protocol has no authentication, so the worker listens on the loopback
+ * address unless a bind address is given after the port, e.g.
+ * {@code 7411 10.0.0.5}, in which case it must only be reachable by trusted
+ * clients.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class BandTableServer implements Closeable {
+
+    private final BandTable table;
+
+    private final ServerSocket serverSocket;
+
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * Starts serving the specified table on the specified port of the
+     * loopback address. Use port 0 to pick any free port.
+     */
+    public BandTableServer(BandTable table, int port) throws IOException {
+        this(table, new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port));
+    }
+
+
+    /**
+     * Starts serving the specified table on the specified address.
+     */
+    public BandTableServer(BandTable table, InetSocketAddress address)
+            throws IOException {
+        this.table = table;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address);
+        Thread acceptor = new Thread(this::accept,
+                "band-table-server-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7411;
+        InetAddress host = args.length > 1
+                ? InetAddress.getByName(args[1])
+                : InetAddress.getLoopbackAddress();
+        try (BandTableServer server = new BandTableServer(new HashBandTable(),
+                new InetSocketAddress(host, port))) {
+            System.err.println("Serving band table shard on " + server.getAddress());
+            Thread.currentThread().join();
+        }
+    }
+
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException ex) {
+                // the server socket was closed
+                return;
+            }
+            connections.add(socket);
+            Thread handler = new Thread(() -> serve(socket),
+                    "band-table-connection-" + socket.getPort());
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(s.getOutputStream()))) {
+            s.setTcpNoDelay(true);
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException ex) {
+                    return;
+                }
+                long id = in.readLong();
+                long[] keys = Protocol.readLongs(in, Protocol.MAX_KEYS);
+                try {
+                    LongList ids = handle(op, id, keys);
+                    out.writeByte(Protocol.OK);
+                    if (ids != null) {
+                        Protocol.writeLongs(out, ids.toArray(), ids.size());
+                    }
+                } catch (RuntimeException ex) {
+                    out.writeByte(Protocol.ERROR);
+                    out.writeUTF(String.valueOf(ex.getMessage()));
+                }
+                out.flush();
+            }
+        } catch (IOException ex) {
+            // the connection was closed by the client or by close()
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+
+    private LongList handle(byte op, long id, long[] keys) {
+        synchronized (table) {
+            switch (op) {
+                case Protocol.ADD:
+                    table.add(id, keys);
+                    return null;
+                case Protocol.REMOVE:
+                    table.remove(id, keys);
+                    return null;
+                case Protocol.CANDIDATES:
+                    LongList ids = new LongList();
+                    table.candidates(keys, ids::add);
+                    return ids;
+                default:
+                    throw new IllegalArgumentException("Unknown operation " + op + ".");
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index.shard;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Wire format shared by {@link SocketBandTable} and {@link BandTableServer}.
+ * A request is an operation byte, a document id (unused by queries) and a
+ * length-prefixed array of band keys. A response is a status byte, followed
+ * by a length-prefixed array of ids for queries or by an error message.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class Protocol {
+
+    static final byte ADD = 1;
+
+    static final byte REMOVE = 2;
+
+    static final byte CANDIDATES = 3;
+
+    static final byte OK = 0;
+
+    static final byte ERROR = 1;
+
+    /**
+     * The largest number of band keys in a request, far above the number of
+     * bands of any index.
+     */
+    static final int MAX_KEYS = 1 << 16;
+
+    /**
+     * The largest number of ids in a response.
+     */
+    static final int MAX_IDS = 1 << 27;
+
+
+    private Protocol() {
+    }
+
+
+    static void writeLongs(DataOutputStream out, long[] values, int length)
+            throws IOException {
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            out.writeLong(values[i]);
+        }
+    }
+
+
+    /**
+     * Reads a length-prefixed array, failing before anything is allocated if
+     * the length is negative or larger than the specified maximum, as sent
+     * by a corrupt or hostile peer.
+     */
+    static long[] readLongs(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid array length " + length + ".");
+        }
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index.shard;
+
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.index.BandTable;
+import com.edduarte.similarity.index.LongList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * Band table that partitions band keys across several shards, each of which
+ * can be kept in this process (e.g. a
+ * {@link com.edduarte.similarity.index.HashBandTable}) or in a worker process
+ * reached through a {@link SocketBandTable}. Every key is owned by exactly one
+ * shard, so the capacity of the table grows with the number of shards.
+ * <p>
+ * Writes and queries are split by shard and fanned out on the execution
+ * strategy, and the candidates returned by every shard are merged on the
+ * calling thread. The default strategy contacts shards one after the other;
+ * with remote shards, use a strategy backed by a pool so that they are
+ * contacted in parallel.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ShardedBandTable implements BandTable, Closeable {
+
+    private final List<BandTable> shards;
+
+    private final ExecutionStrategy exec;
+
+
+    public ShardedBandTable(List<? extends BandTable> shards) {
+        this(shards, ExecutionStrategy.inline());
+    }
+
+
+    /**
+     * @param shards the shards, which must be given in the same order by
+     *               every coordinator of the same index
+     * @param exec   the strategy that runs the requests to each shard
+     */
+    public ShardedBandTable(List<? extends BandTable> shards,
+                            ExecutionStrategy exec) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required.");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.exec = exec;
+    }
+
+
+    @Override
+    public void add(long id, long[] keys) {
+        long[][] partitions = partition(keys);
+        List<Future<Void>> futures = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            BandTable shard = shards.get(i);
+            long[] shardKeys = partitions[i];
+            if (shardKeys.length > 0) {
+                futures.add(exec.submit(() -> {
+                    shard.add(id, shardKeys);
+                    return null;
+                }, shardKeys.length));
+            }
+        }
+        await(futures);
+    }
+
+
+    @Override
+    public void remove(long id, long[] keys) {
+        long[][] partitions = partition(keys);
+        List<Future<Void>> futures = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            BandTable shard = shards.get(i);
+            long[] shardKeys = partitions[i];
+            if (shardKeys.length > 0) {
+                futures.add(exec.submit(() -> {
+                    shard.remove(id, shardKeys);
+                    return null;
+                }, shardKeys.length));
+            }
+        }
+        await(futures);
+    }
+
+
+    @Override
+    public void candidates(long[] keys, LongConsumer sink) {
+        long[][] partitions = partition(keys);
+        List<Future<long[]>> futures = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            BandTable shard = shards.get(i);
+            long[] shardKeys = partitions[i];
+            if (shardKeys.length > 0) {
+                futures.add(exec.submit(() -> {
+                    LongList ids = new LongList();
+                    shard.candidates(shardKeys, ids::add);
+                    return ids.toArray();
+                }, shardKeys.length));
+            }
+        }
+        for (long[] ids : await(futures)) {
+            for (long id : ids) {
+                sink.accept(id);
+            }
+        }
+    }
+
+
+    /**
+     * @return the index of the shard that owns the specified band key
+     */
+    public int shardOf(long key) {
+        // band values are sums of products, so their low bits are mixed
+        // before being reduced to a shard
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) ((key >>> 1) % shards.size());
+    }
+
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+
+    /**
+     * Closes every shard that holds resources, such as the connections to
+     * remote shards.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (BandTable shard : shards) {
+            if (shard instanceof Closeable) {
+                try {
+                    ((Closeable) shard).close();
+                } catch (IOException ex) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+
+    private long[][] partition(long[] keys) {
+        int n = shards.size();
+        int[] shardOfKey = new int[keys.length];
+        int[] counts = new int[n];
+        for (int i = 0; i < keys.length; i++) {
+            shardOfKey[i] = shardOf(keys[i]);
+            counts[shardOfKey[i]]++;
+        }
+        long[][] partitions = new long[n][];
+        for (int s = 0; s < n; s++) {
+            partitions[s] = new long[counts[s]];
+            counts[s] = 0;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            int s = shardOfKey[i];
+            partitions[s][counts[s]++] = keys[i];
+        }
+        return partitions;
+    }
+
+
+    private static <T> List<T> await(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException | InterruptedException ex) {
+            String m = "There was a problem processing a shard request.";
+            throw new RuntimeException(m, ex);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index.shard;
+
+import com.edduarte.similarity.index.BandTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.function.LongConsumer;
+
+/**
+ * Band table kept by a {@link BandTableServer} in another process, reached
+ * over a TCP connection. Requests on the same instance are sent one at a
+ * time; use one instance per thread, or a {@link ShardedBandTable} with a
+ * pooled execution strategy, to keep several requests in flight.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class SocketBandTable implements BandTable, Closeable {
+
+    private final InetSocketAddress address;
+
+    private final Socket socket;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+
+    public SocketBandTable(String host, int port) throws IOException {
+        this(new InetSocketAddress(host, port));
+    }
+
+
+    public SocketBandTable(InetSocketAddress address) throws IOException {
+        this.address = address;
+        this.socket = new Socket();
+        this.socket.setTcpNoDelay(true);
+        this.socket.connect(address);
+        this.in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+
+    @Override
+    public synchronized void add(long id, long[] keys) {
+        try {
+            send(Protocol.ADD, id, keys);
+            receiveStatus();
+        } catch (IOException ex) {
+            throw failure(ex);
+        }
+    }
+
+
+    @Override
+    public synchronized void remove(long id, long[] keys) {
+        try {
+            send(Protocol.REMOVE, id, keys);
+            receiveStatus();
+        } catch (IOException ex) {
+            throw failure(ex);
+        }
+    }
+
+
+    @Override
+    public synchronized void candidates(long[] keys, LongConsumer sink) {
+        long[] ids;
+        try {
+            send(Protocol.CANDIDATES, 0, keys);
+            receiveStatus();
+            ids = Protocol.readLongs(in, Protocol.MAX_IDS);
+        } catch (IOException ex) {
+            throw failure(ex);
+        }
+        for (long id : ids) {
+            sink.accept(id);
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+
+    private void send(byte op, long id, long[] keys) throws IOException {
+        out.writeByte(op);
+        out.writeLong(id);
+        Protocol.writeLongs(out, keys, keys.length);
+        out.flush();
+    }
+
+
+    private void receiveStatus() throws IOException {
+        if (in.readByte() != Protocol.OK) {
+            String m = "Shard " + address + " failed: " + in.readUTF();
+            throw new IllegalStateException(m);
+        }
+    }
+
+
+    private RuntimeException failure(IOException ex) {
+        String m = "There was a problem communicating with shard " + address + ".";
+        return new RuntimeException(m, ex);
+    }
+}
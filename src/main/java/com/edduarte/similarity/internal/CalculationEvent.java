@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a similarity calculation between two inputs.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+@Name("com.edduarte.similarity.Calculation")
+@Label("Similarity Calculation")
+@Category("Near-Neighbor Search")
+@Description("A similarity calculation between two strings or sets")
+@StackTrace(false)
+class CalculationEvent extends Event {
+
+    /**
+     * Hash method reported for set engines, which sign elements with the
+     * universal hash family of {@link com.edduarte.similarity.converter.Set2SignatureConverter}.
+     */
+    static final String UNIVERSAL_HASH = "Universal";
+
+    @Label("Engine")
+    String engine;
+
+    @Label("First Input Size")
+    @Description("Length of the first string or size of the first set")
+    int inputSize1;
+
+    @Label("Second Input Size")
+    @Description("Length of the second string or size of the second set")
+    int inputSize2;
+
+    @Label("Signature Size")
+    int signatureSize;
+
+    @Label("Hash Method")
+    String hashMethod;
+
+    @Label("Candidate Pair")
+    @Description("Whether LSH considered the inputs a candidate pair")
+    boolean candidate;
+
+    @Label("Similarity")
+    double similarity;
+
+
+    /**
+     * @return a started event, or null if this event is not being recorded
+     */
+    static CalculationEvent start() {
+        CalculationEvent event = new CalculationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+
+    /**
+     * Ends and commits the specified event, if it was started.
+     */
+    static void end(CalculationEvent event, Object engine,
+                    int inputSize1, int inputSize2,
+                    int signatureSize, Object hashMethod,
+                    boolean candidate, double similarity) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = engine.getClass().getSimpleName();
+            event.inputSize1 = inputSize1;
+            event.inputSize2 = inputSize2;
+            event.signatureSize = signatureSize;
+            event.hashMethod = hashMethod != null ? hashMethod.toString() : null;
+            event.candidate = candidate;
+            event.similarity = similarity;
+            event.commit();
+        }
+    }
+}
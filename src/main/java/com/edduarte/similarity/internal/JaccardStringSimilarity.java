@@ -19,8 +19,12 @@ package com.edduarte.similarity.internal;
 import com.edduarte.similarity.Similarity;
 import com.edduarte.similarity.StringSimilarity;
 import com.edduarte.similarity.converter.KShingler;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -32,10 +36,12 @@ import java.util.concurrent.Future;
  */
 public class JaccardStringSimilarity implements StringSimilarity {
 
-    private final ExecutorService exec;
+    private final ExecutionStrategy exec;
 
     private final KShingler kShingler;
 
+    private final SimilarityMetrics metrics;
+
 
     /**
      * Instantiates a Similarity class for strings using the Jaccard algorithm.
@@ -45,13 +51,54 @@ public class JaccardStringSimilarity implements StringSimilarity {
      * @param k    the length k of the shingles to generate
      */
     public JaccardStringSimilarity(ExecutorService exec, int k) {
+        this(ExecutionStrategy.of(exec), k);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the Jaccard algorithm.
+     *
+     * @param exec the strategy that decides where the shingle processing
+     *             tasks are run
+     * @param k    the length k of the shingles to generate
+     */
+    public JaccardStringSimilarity(ExecutionStrategy exec, int k) {
+        this(exec, k, SimilarityMetrics.NOOP);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the Jaccard algorithm.
+     *
+     * @param exec    the strategy that decides where the shingle processing
+     *                tasks are run
+     * @param k       the length k of the shingles to generate
+     * @param metrics the listener that is notified of the work done by each
+     *                processing stage
+     */
+    public JaccardStringSimilarity(ExecutionStrategy exec, int k,
+                                   SimilarityMetrics metrics) {
         this.exec = exec;
         this.kShingler = new KShingler(k);
+        this.metrics = metrics;
     }
 
 
     @Override
     public double calculate(String s1, String s2) {
+        CalculationEvent event = CalculationEvent.start();
+        double similarity = jaccardIndex(s1, s2);
+        CalculationEvent.end(event, this, s1.length(), s2.length(), 0, null,
+                true, similarity);
+        return similarity;
+    }
+
+
+    /**
+     * Calculates the similarity without recording a calculation event, for
+     * engines that use this one as their verification stage.
+     */
+    double jaccardIndex(String s1, String s2) {
         ShinglePair shingles = getShingles(s1, s2);
         double similarity = Similarity.jaccardIndex(shingles.shingles1, shingles.shingles2);
         shingles = null;
@@ -59,10 +106,35 @@ public class JaccardStringSimilarity implements StringSimilarity {
     }
 
 
+    @Override
+    public CompletableFuture<Double> calculateAsync(String s1, String s2) {
+        CalculationEvent event = CalculationEvent.start();
+        return shinglesAsync(s1).thenCombine(shinglesAsync(s2),
+                Similarity::jaccardIndex)
+                .whenComplete((similarity, ex) -> {
+                    if (ex == null) {
+                        CalculationEvent.end(event, this, s1.length(),
+                                s2.length(), 0, null, true, similarity);
+                    }
+                });
+    }
+
+
+    /**
+     * Generates the shingles of the specified string without blocking the
+     * calling thread.
+     */
+    public CompletableFuture<List<CharSequence>> shinglesAsync(String s) {
+        return exec.submit(shingleTask(s), s.length());
+    }
+
+
     ShinglePair getShingles(String s1, String s2) {
 
-        Future<List<CharSequence>> future1 = exec.submit(kShingler.apply(s1));
-        Future<List<CharSequence>> future2 = exec.submit(kShingler.apply(s2));
+        Future<List<CharSequence>> future1 =
+                exec.submit(shingleTask(s1), s1.length());
+        Future<List<CharSequence>> future2 =
+                exec.submit(shingleTask(s2), s2.length());
 
         try {
             List<CharSequence> shingles1 = future1.get();
@@ -75,6 +147,11 @@ public class JaccardStringSimilarity implements StringSimilarity {
     }
 
 
+    private Callable<List<CharSequence>> shingleTask(String s) {
+        return Stages.shingling(metrics, kShingler.apply(s), s.length());
+    }
+
+
     static class ShinglePair {
 
         final List<CharSequence> shingles1;
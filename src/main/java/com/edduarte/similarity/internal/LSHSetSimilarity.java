@@ -17,14 +17,17 @@
 package com.edduarte.similarity.internal;
 
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 import com.edduarte.similarity.SetSimilarity;
-import com.edduarte.similarity.Similarity;
 import com.edduarte.similarity.converter.Set2SignatureConverter;
 import com.edduarte.similarity.converter.Signature2BandsConverter;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
 
 /**
  * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
@@ -39,7 +42,13 @@ public class LSHSetSimilarity implements SetSimilarity {
 
     private final Signature2BandsConverter bandp;
 
-    private final ExecutorService exec;
+    private final ExecutionStrategy exec;
+
+    private final int sigSize;
+
+    private final double threshold;
+
+    private final SimilarityMetrics metrics;
 
 
     /**
@@ -56,10 +65,52 @@ public class LSHSetSimilarity implements SetSimilarity {
      *             number of false positives and false negatives.
      */
     public LSHSetSimilarity(final ExecutorService exec, final int n, final int b, final int r, final double s) {
+        this(ExecutionStrategy.of(exec), n, b, r, s);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for number sets using the LSH algorithm.
+     *
+     * @param exec the strategy that decides where the signature and band
+     *             processing tasks are run
+     * @param n    the total number of unique elements in both sets
+     * @param b    the number of bands
+     * @param r    the number of rows
+     * @param s    the threshold (value between 0.0 and 1.0) that balances the
+     *             trade-off between the number of false positives and false
+     *             negatives. A sensible threshold is 0.5, so we have a equal
+     *             number of false positives and false negatives.
+     */
+    public LSHSetSimilarity(final ExecutionStrategy exec, final int n, final int b, final int r, final double s) {
+        this(exec, n, b, r, s, SimilarityMetrics.NOOP);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for number sets using the LSH algorithm.
+     *
+     * @param exec    the strategy that decides where the signature and band
+     *                processing tasks are run
+     * @param n       the total number of unique elements in both sets
+     * @param b       the number of bands
+     * @param r       the number of rows
+     * @param s       the threshold (value between 0.0 and 1.0) that balances
+     *                the trade-off between the number of false positives and
+     *                false negatives. A sensible threshold is 0.5, so we have
+     *                a equal number of false positives and false negatives.
+     * @param metrics the listener that is notified of the work done by each
+     *                processing stage
+     */
+    public LSHSetSimilarity(final ExecutionStrategy exec, final int n, final int b, final int r, final double s,
+                            final SimilarityMetrics metrics) {
         // signature size is determined by a threshold S
         this.exec = exec;
+        this.threshold = s;
+        this.metrics = metrics;
         final int R = (int) Math.ceil(Math.log(1.0 / b) / Math.log(s)) + 1;
         final int sigSize = R * b;
+        this.sigSize = sigSize;
         this.jaccard = new JaccardSetSimilarity();
         this.sigp = new Set2SignatureConverter(n, sigSize);
         this.bandp = new Signature2BandsConverter(b, r);
@@ -70,8 +121,57 @@ public class LSHSetSimilarity implements SetSimilarity {
     public double calculate(
         final Collection<? extends Number> c1,
         final Collection<? extends Number> c2) {
-        return isCandidatePair(c1, c2) ?
-            this.jaccard.calculate(c1, c2) : 0;
+        final CalculationEvent event = CalculationEvent.start();
+        final boolean candidate = isCandidatePair(c1, c2);
+        final double similarity = candidate ? verify(c1, c2) : 0;
+        CalculationEvent.end(event, this, c1.size(), c2.size(), this.sigSize,
+            CalculationEvent.UNIVERSAL_HASH, candidate, similarity);
+        return similarity;
+    }
+
+
+    @Override
+    public CompletableFuture<Double> calculateAsync(
+        final Collection<? extends Number> c1,
+        final Collection<? extends Number> c2) {
+        final CalculationEvent event = CalculationEvent.start();
+        return isCandidatePairAsync(c1, c2).thenApply(isCandidate -> {
+            final double similarity = isCandidate ? verify(c1, c2) : 0;
+            CalculationEvent.end(event, this, c1.size(), c2.size(), this.sigSize,
+                CalculationEvent.UNIVERSAL_HASH, isCandidate, similarity);
+            return similarity;
+        });
+    }
+
+
+    /**
+     * Determines if the specified sets are a candidate pair without blocking
+     * the calling thread.
+     */
+    public CompletableFuture<Boolean> isCandidatePairAsync(
+        final Collection<? extends Number> c1,
+        final Collection<? extends Number> c2) {
+        return bandsAsync(c1).thenCombine(bandsAsync(c2),
+            (bands1, bands2) -> Stages.candidateCheck(this.metrics, bands1, bands2));
+    }
+
+
+    /**
+     * Generates the minhash signature of the specified set without blocking
+     * the calling thread.
+     */
+    public CompletableFuture<int[]> signatureAsync(final Collection<? extends Number> c) {
+        return this.exec.submit(signatureTask(c), (long) c.size() * this.sigSize);
+    }
+
+
+    /**
+     * Generates the LSH bands of the specified set without blocking the
+     * calling thread.
+     */
+    public CompletableFuture<int[]> bandsAsync(final Collection<? extends Number> c) {
+        return signatureAsync(c).thenCompose(sig ->
+            this.exec.submit(bandsTask(sig), sig.length));
     }
 
 
@@ -79,23 +179,45 @@ public class LSHSetSimilarity implements SetSimilarity {
         final Collection<? extends Number> c1,
         final Collection<? extends Number> c2) {
         try {
-            final Future<int[]> signatureFuture1 = this.exec.submit(this.sigp.apply(c1));
-            final Future<int[]> signatureFuture2 = this.exec.submit(this.sigp.apply(c2));
+            final Future<int[]> signatureFuture1 = this.exec.submit(
+                signatureTask(c1), (long) c1.size() * this.sigSize);
+            final Future<int[]> signatureFuture2 = this.exec.submit(
+                signatureTask(c2), (long) c2.size() * this.sigSize);
 
             final int[] signature1 = signatureFuture1.get();
             final int[] signature2 = signatureFuture2.get();
 
-            final Future<int[]> bandsFuture1 = this.exec.submit(this.bandp.apply(signature1));
-            final Future<int[]> bandsFuture2 = this.exec.submit(this.bandp.apply(signature2));
+            final Future<int[]> bandsFuture1 = this.exec.submit(
+                bandsTask(signature1), this.sigSize);
+            final Future<int[]> bandsFuture2 = this.exec.submit(
+                bandsTask(signature2), this.sigSize);
 
             final int[] bands1 = bandsFuture1.get();
             final int[] bands2 = bandsFuture2.get();
 
-            return Similarity.isCandidatePair(bands1, bands2);
+            return Stages.candidateCheck(this.metrics, bands1, bands2);
 
         } catch (ExecutionException | InterruptedException ex) {
             final String m = "There was a problem processing set signatures.";
             throw new RuntimeException(m, ex);
         }
     }
+
+
+    private double verify(
+        final Collection<? extends Number> c1,
+        final Collection<? extends Number> c2) {
+        return Stages.verification(this.metrics, this.threshold,
+            () -> this.jaccard.calculate(c1, c2));
+    }
+
+
+    private Callable<int[]> signatureTask(final Collection<? extends Number> c) {
+        return Stages.signing(this.metrics, this.sigp.apply(c), c.size(), this.sigSize);
+    }
+
+
+    private Callable<int[]> bandsTask(final int[] signature) {
+        return Stages.banding(this.metrics, this.bandp.apply(signature), signature.length);
+    }
 }
@@ -20,8 +20,13 @@ import com.edduarte.similarity.Similarity;
 import com.edduarte.similarity.StringSimilarity;
 import com.edduarte.similarity.converter.KShingles2SignatureConverter;
 import com.edduarte.similarity.converter.Signature2BandsConverter;
+import com.edduarte.similarity.execution.ExecutionStrategy;
 import com.edduarte.similarity.hash.HashProvider.HashMethod;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -39,7 +44,17 @@ public class LSHStringSimilarity implements StringSimilarity {
 
     private final Signature2BandsConverter bandp;
 
-    private final ExecutorService exec;
+    private final ExecutionStrategy exec;
+
+    private final int signatureSize;
+
+    private final double threshold;
+
+    private final HashMethod hash;
+
+    private final SimilarityMetrics metrics;
+
+    private final boolean lazyBands;
 
 
     /**
@@ -58,49 +73,235 @@ public class LSHStringSimilarity implements StringSimilarity {
      */
     public LSHStringSimilarity(ExecutorService exec, int b, int r, double s,
                                HashMethod hash, int k) {
+        this(ExecutionStrategy.of(exec), b, r, s, hash, k);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the LSH algorithm.
+     *
+     * @param exec the strategy that decides where the shingle, signature and
+     *             band processing tasks are run
+     * @param b    the number of bands
+     * @param r    the number of rows
+     * @param s    the threshold (value between 0.0 and 1.0) that balances the
+     *             trade-off between the number of false positives and false
+     *             negatives. A sensible threshold is 0.5, so we have a equal
+     *             number of false positives and false negatives.
+     * @param hash the hash method to use when hashing shingles to signatures
+     * @param k    the length k of the shingles to generate
+     */
+    public LSHStringSimilarity(ExecutionStrategy exec, int b, int r, double s,
+                               HashMethod hash, int k) {
+        this(exec, b, r, s, hash, k, SimilarityMetrics.NOOP);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the LSH algorithm.
+     *
+     * @param exec    the strategy that decides where the shingle, signature
+     *                and band processing tasks are run
+     * @param b       the number of bands
+     * @param r       the number of rows
+     * @param s       the threshold (value between 0.0 and 1.0) that balances
+     *                the trade-off between the number of false positives and
+     *                false negatives. A sensible threshold is 0.5, so we have
+     *                a equal number of false positives and false negatives.
+     * @param hash    the hash method to use when hashing shingles to
+     *                signatures
+     * @param k       the length k of the shingles to generate
+     * @param metrics the listener that is notified of the work done by each
+     *                processing stage
+     */
+    public LSHStringSimilarity(ExecutionStrategy exec, int b, int r, double s,
+                               HashMethod hash, int k,
+                               SimilarityMetrics metrics) {
+        this(exec, b, r, s, hash, k, metrics, false);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the LSH algorithm.
+     *
+     * @param exec      the strategy that decides where the shingle, signature
+     *                  and band processing tasks are run
+     * @param b         the number of bands
+     * @param r         the number of rows
+     * @param s         the threshold (value between 0.0 and 1.0) that
+     *                  balances the trade-off between the number of false
+     *                  positives and false negatives
+     * @param hash      the hash method to use when hashing shingles to
+     *                  signatures
+     * @param k         the length k of the shingles to generate
+     * @param metrics   the listener that is notified of the work done by each
+     *                  processing stage
+     * @param lazyBands if true and the hash method provides a 64-bit function,
+     *                  candidate pairs are checked one band at a time on the
+     *                  calling thread, stopping at the first matching band
+     *                  (see {@link LazyBands})
+     */
+    public LSHStringSimilarity(ExecutionStrategy exec, int b, int r, double s,
+                               HashMethod hash, int k,
+                               SimilarityMetrics metrics, boolean lazyBands) {
         // signature size is determined by a threshold S
         int R = (int) Math.ceil(Math.log(1.0 / b) / Math.log(s)) + 1;
         int signatureSize = R * b;
 
-        this.jaccard = new JaccardStringSimilarity(exec, k);
+        this.jaccard = new JaccardStringSimilarity(exec, k, metrics);
         this.sigp = new KShingles2SignatureConverter(hash, signatureSize);
         this.bandp = new Signature2BandsConverter(b, r);
+        this.signatureSize = signatureSize;
+        this.threshold = s;
+        this.hash = hash;
+        this.metrics = metrics;
         this.exec = exec;
+        this.lazyBands = lazyBands && sigp.isDerived();
     }
 
 
     @Override
     public double calculate(String s1, String s2) {
-        return isCandidatePair(s1, s2) ?
-                jaccard.calculate(s1, s2) : 0;
+        CalculationEvent event = CalculationEvent.start();
+        boolean candidate = isCandidatePair(s1, s2);
+        double similarity = candidate ?
+                Stages.verification(metrics, threshold,
+                        () -> jaccard.jaccardIndex(s1, s2)) : 0;
+        CalculationEvent.end(event, this, s1.length(), s2.length(),
+                signatureSize, hash, candidate, similarity);
+        return similarity;
+    }
+
+
+    @Override
+    public CompletableFuture<Double> calculateAsync(String s1, String s2) {
+        // shingles are generated once and shared by both the banding and the
+        // jaccard stages
+        CompletableFuture<List<CharSequence>> shingles1 = jaccard.shinglesAsync(s1);
+        CompletableFuture<List<CharSequence>> shingles2 = jaccard.shinglesAsync(s2);
+        CalculationEvent event = CalculationEvent.start();
+        return isCandidatePairAsync(shingles1, shingles2)
+                .thenCompose(isCandidate -> (isCandidate ?
+                        shingles1.thenCombine(shingles2, (sh1, sh2) ->
+                                Stages.verification(metrics, threshold,
+                                        () -> Similarity.jaccardIndex(sh1, sh2))) :
+                        CompletableFuture.completedFuture(0.0))
+                        .whenComplete((similarity, ex) -> {
+                            if (ex == null) {
+                                CalculationEvent.end(event, this, s1.length(),
+                                        s2.length(), signatureSize, hash,
+                                        isCandidate, similarity);
+                            }
+                        }));
+    }
+
+
+    /**
+     * Determines if the specified strings are a candidate pair without
+     * blocking the calling thread.
+     */
+    public CompletableFuture<Boolean> isCandidatePairAsync(String s1, String s2) {
+        return isCandidatePairAsync(jaccard.shinglesAsync(s1),
+                jaccard.shinglesAsync(s2));
+    }
+
+
+    private CompletableFuture<Boolean> isCandidatePairAsync(
+            CompletableFuture<List<CharSequence>> shingles1,
+            CompletableFuture<List<CharSequence>> shingles2) {
+        if (lazyBands) {
+            return shingles1.thenCombine(shingles2, this::isCandidatePairLazily);
+        }
+        return bandsAsync(shingles1).thenCombine(bandsAsync(shingles2),
+                this::isCandidatePair);
+    }
+
+
+    /**
+     * Generates the minhash signature of the specified string without
+     * blocking the calling thread.
+     */
+    public CompletableFuture<int[]> signatureAsync(String s) {
+        return signatureAsync(jaccard.shinglesAsync(s));
+    }
+
+
+    /**
+     * Generates the LSH bands of the specified string without blocking the
+     * calling thread.
+     */
+    public CompletableFuture<int[]> bandsAsync(String s) {
+        return bandsAsync(jaccard.shinglesAsync(s));
+    }
+
+
+    private CompletableFuture<int[]> signatureAsync(
+            CompletableFuture<List<CharSequence>> shingles) {
+        return shingles.thenCompose(sh -> exec.submit(
+                signatureTask(sh), (long) sh.size() * signatureSize));
+    }
+
+
+    private CompletableFuture<int[]> bandsAsync(
+            CompletableFuture<List<CharSequence>> shingles) {
+        return signatureAsync(shingles).thenCompose(sig -> exec.submit(
+                bandsTask(sig), sig.length));
     }
 
 
     public boolean isCandidatePair(String s1, String s2) {
         JaccardStringSimilarity.ShinglePair pair =
                 jaccard.getShingles(s1, s2);
+        if (lazyBands) {
+            return isCandidatePairLazily(pair.shingles1, pair.shingles2);
+        }
         try {
-            Future<int[]> signatureFuture1 = exec
-                    .submit(sigp.apply(pair.shingles1));
-            Future<int[]> signatureFuture2 = exec
-                    .submit(sigp.apply(pair.shingles2));
+            Future<int[]> signatureFuture1 = exec.submit(
+                    signatureTask(pair.shingles1),
+                    (long) pair.shingles1.size() * signatureSize);
+            Future<int[]> signatureFuture2 = exec.submit(
+                    signatureTask(pair.shingles2),
+                    (long) pair.shingles2.size() * signatureSize);
 
             int[] signature1 = signatureFuture1.get();
             int[] signature2 = signatureFuture2.get();
 
             Future<int[]> bandsFuture1 = exec
-                    .submit(bandp.apply(signature1));
+                    .submit(bandsTask(signature1), signature1.length);
             Future<int[]> bandsFuture2 = exec
-                    .submit(bandp.apply(signature2));
+                    .submit(bandsTask(signature2), signature2.length);
 
             int[] bands1 = bandsFuture1.get();
             int[] bands2 = bandsFuture2.get();
 
-            return Similarity.isCandidatePair(bands1, bands2);
+            return isCandidatePair(bands1, bands2);
 
         } catch (ExecutionException | InterruptedException ex) {
             String m = "There was a problem processing set signatures.";
             throw new RuntimeException(m, ex);
         }
     }
+
+
+    private boolean isCandidatePairLazily(List<CharSequence> shingles1,
+                                          List<CharSequence> shingles2) {
+        return LazyBands.isCandidatePair(metrics, bandp, signatureSize,
+                sigp.hashShingles(shingles1), sigp.hashShingles(shingles2));
+    }
+
+
+    private boolean isCandidatePair(int[] bands1, int[] bands2) {
+        return Stages.candidateCheck(metrics, bands1, bands2);
+    }
+
+
+    private Callable<int[]> signatureTask(List<CharSequence> shingles) {
+        return Stages.signing(metrics, sigp.apply(shingles), shingles.size(),
+                signatureSize);
+    }
+
+
+    private Callable<int[]> bandsTask(int[] signature) {
+        return Stages.banding(metrics, bandp.apply(signature), signature.length);
+    }
 }
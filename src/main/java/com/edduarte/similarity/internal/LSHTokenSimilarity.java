@@ -0,0 +1,261 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.internal;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.StringSimilarity;
+import com.edduarte.similarity.converter.HashedShingles2SignatureConverter;
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+import com.edduarte.similarity.converter.TokenShingler;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Similarity class for strings using the LSH algorithm over word n-gram
+ * shingles, which are hashed once by a {@link TokenShingler}. Candidate pairs
+ * are verified with the Jaccard index of their shingle hashes.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class LSHTokenSimilarity implements StringSimilarity {
+
+    private final ExecutionStrategy exec;
+
+    private final TokenShingler shingler;
+
+    private final HashedShingles2SignatureConverter sigp;
+
+    private final Signature2BandsConverter bandp;
+
+    private final int signatureSize;
+
+    private final double threshold;
+
+    private final SimilarityMetrics metrics;
+
+    private final boolean lazyBands;
+
+
+    /**
+     * Instantiates a Similarity class for strings using the LSH algorithm
+     * over word n-grams.
+     *
+     * @param exec the strategy that decides where the shingle, signature and
+     *             band processing tasks are run
+     * @param b    the number of bands
+     * @param r    the number of rows
+     * @param s    the threshold (value between 0.0 and 1.0) that balances the
+     *             trade-off between the number of false positives and false
+     *             negatives
+     * @param n    the number of words of the shingles to generate
+     */
+    public LSHTokenSimilarity(ExecutionStrategy exec, int b, int r, double s,
+                              int n) {
+        this(exec, b, r, s, new TokenShingler(n), SimilarityMetrics.NOOP);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the LSH algorithm
+     * over word n-grams.
+     *
+     * @param exec     the strategy that decides where the shingle, signature
+     *                 and band processing tasks are run
+     * @param b        the number of bands
+     * @param r        the number of rows
+     * @param s        the threshold (value between 0.0 and 1.0) that
+     *                 balances the trade-off between the number of false
+     *                 positives and false negatives
+     * @param shingler the shingler that splits strings into word n-grams
+     * @param metrics  the listener that is notified of the work done by each
+     *                 processing stage
+     */
+    public LSHTokenSimilarity(ExecutionStrategy exec, int b, int r, double s,
+                              TokenShingler shingler,
+                              SimilarityMetrics metrics) {
+        this(exec, b, r, s, shingler, metrics, false);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the LSH algorithm
+     * over word n-grams.
+     *
+     * @param exec      the strategy that decides where the shingle, signature
+     *                  and band processing tasks are run
+     * @param b         the number of bands
+     * @param r         the number of rows
+     * @param s         the threshold (value between 0.0 and 1.0) that
+     *                  balances the trade-off between the number of false
+     *                  positives and false negatives
+     * @param shingler  the shingler that splits strings into word n-grams
+     * @param metrics   the listener that is notified of the work done by each
+     *                  processing stage
+     * @param lazyBands if true, candidate pairs are checked one band at a
+     *                  time on the calling thread, stopping at the first
+     *                  matching band (see {@link LazyBands})
+     */
+    public LSHTokenSimilarity(ExecutionStrategy exec, int b, int r, double s,
+                              TokenShingler shingler,
+                              SimilarityMetrics metrics, boolean lazyBands) {
+        // signature size is determined by a threshold S
+        int R = (int) Math.ceil(Math.log(1.0 / b) / Math.log(s)) + 1;
+        int signatureSize = R * b;
+
+        this.exec = exec;
+        this.shingler = shingler;
+        this.sigp = new HashedShingles2SignatureConverter(signatureSize);
+        this.bandp = new Signature2BandsConverter(b, r);
+        this.signatureSize = signatureSize;
+        this.threshold = s;
+        this.metrics = metrics;
+        this.lazyBands = lazyBands;
+    }
+
+
+    @Override
+    public double calculate(String s1, String s2) {
+        CalculationEvent event = CalculationEvent.start();
+        Future<long[]> shinglesFuture1 = exec.submit(shingleTask(s1), s1.length());
+        Future<long[]> shinglesFuture2 = exec.submit(shingleTask(s2), s2.length());
+        try {
+            long[] shingles1 = shinglesFuture1.get();
+            long[] shingles2 = shinglesFuture2.get();
+
+            boolean candidate = lazyBands ?
+                    isCandidatePairLazily(shingles1, shingles2) :
+                    isCandidatePair(shingles1, shingles2);
+            double similarity = candidate ? verify(shingles1, shingles2) : 0;
+            CalculationEvent.end(event, this, s1.length(), s2.length(),
+                    signatureSize, MinHashTokenSimilarity.HASH, candidate,
+                    similarity);
+            return similarity;
+
+        } catch (ExecutionException | InterruptedException ex) {
+            String m = "There was a problem processing shingle signatures.";
+            throw new RuntimeException(m, ex);
+        }
+    }
+
+
+    @Override
+    public CompletableFuture<Double> calculateAsync(String s1, String s2) {
+        // shingles are generated once and shared by both the banding and the
+        // jaccard stages
+        CompletableFuture<long[]> shingles1 = shinglesAsync(s1);
+        CompletableFuture<long[]> shingles2 = shinglesAsync(s2);
+        CalculationEvent event = CalculationEvent.start();
+        CompletableFuture<Boolean> candidate = lazyBands ?
+                shingles1.thenCombine(shingles2, this::isCandidatePairLazily) :
+                bandsAsync(shingles1).thenCombine(bandsAsync(shingles2),
+                        (bands1, bands2) -> Stages.candidateCheck(metrics, bands1, bands2));
+        return candidate
+                .thenCompose(isCandidate -> (isCandidate ?
+                        shingles1.thenCombine(shingles2, this::verify) :
+                        CompletableFuture.completedFuture(0.0))
+                        .whenComplete((similarity, ex) -> {
+                            if (ex == null) {
+                                CalculationEvent.end(event, this, s1.length(),
+                                        s2.length(), signatureSize,
+                                        MinHashTokenSimilarity.HASH,
+                                        isCandidate, similarity);
+                            }
+                        }));
+    }
+
+
+    /**
+     * Generates the hashes of the word n-grams of the specified string
+     * without blocking the calling thread.
+     */
+    public CompletableFuture<long[]> shinglesAsync(String s) {
+        return exec.submit(shingleTask(s), s.length());
+    }
+
+
+    /**
+     * Generates the LSH bands of the specified string without blocking the
+     * calling thread.
+     */
+    public CompletableFuture<int[]> bandsAsync(String s) {
+        return bandsAsync(shinglesAsync(s));
+    }
+
+
+    private CompletableFuture<int[]> bandsAsync(CompletableFuture<long[]> shingles) {
+        return shingles
+                .thenCompose(sh -> exec.submit(signatureTask(sh),
+                        (long) sh.length * signatureSize))
+                .thenCompose(sig -> exec.submit(bandsTask(sig), sig.length));
+    }
+
+
+    private boolean isCandidatePair(long[] shingles1, long[] shingles2)
+            throws ExecutionException, InterruptedException {
+        Future<int[]> signatureFuture1 = exec.submit(signatureTask(shingles1),
+                (long) shingles1.length * signatureSize);
+        Future<int[]> signatureFuture2 = exec.submit(signatureTask(shingles2),
+                (long) shingles2.length * signatureSize);
+
+        int[] signature1 = signatureFuture1.get();
+        int[] signature2 = signatureFuture2.get();
+
+        Future<int[]> bandsFuture1 = exec.submit(bandsTask(signature1),
+                signature1.length);
+        Future<int[]> bandsFuture2 = exec.submit(bandsTask(signature2),
+                signature2.length);
+
+        return Stages.candidateCheck(metrics,
+                bandsFuture1.get(), bandsFuture2.get());
+    }
+
+
+    private boolean isCandidatePairLazily(long[] shingles1, long[] shingles2) {
+        return LazyBands.isCandidatePair(metrics, bandp, signatureSize,
+                shingles1, shingles2);
+    }
+
+
+    private double verify(long[] shingles1, long[] shingles2) {
+        return Stages.verification(metrics, threshold,
+                () -> Similarity.jaccardIndex(shingles1, shingles2));
+    }
+
+
+    private Callable<long[]> shingleTask(String s) {
+        return Stages.hashedShingling(metrics, shingler.apply(s), s.length());
+    }
+
+
+    private Callable<int[]> signatureTask(long[] shingles) {
+        return Stages.signing(metrics, sigp.apply(shingles), shingles.length,
+                signatureSize);
+    }
+
+
+    private Callable<int[]> bandsTask(int[] signature) {
+        return Stages.banding(metrics, bandp.apply(signature), signature.length);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.internal;
+
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+import com.edduarte.similarity.hash.HashProvider;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
+import com.edduarte.similarity.metrics.Stage;
+
+import java.util.Arrays;
+
+/**
+ * Checks if two inputs are a LSH candidate pair one band at a time: the
+ * signature slots of a band are derived from the 64-bit shingle hashes of
+ * both inputs, the band values are compared, and the check stops at the
+ * first band that matches. For near-duplicates the first band usually
+ * matches, so most of the signature slots are never computed.
+ * <p>
+ * The band values are the same as those of
+ * {@link Signature2BandsConverter#compute(int[])} over the full signatures,
+ * so the decision is identical to the eager check.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class LazyBands {
+
+    private LazyBands() {
+    }
+
+
+    /**
+     * Checks the bands of the two inputs, reporting the signature slots
+     * actually computed to the metrics listener as the signing stage.
+     */
+    static boolean isCandidatePair(SimilarityMetrics metrics,
+                                   Signature2BandsConverter bandp,
+                                   int sigSize,
+                                   long[] hashes1,
+                                   long[] hashes2) {
+        boolean reporting = metrics.isEnabled();
+        StageEvent event = StageEvent.start();
+        long start = reporting ? System.nanoTime() : 0;
+
+        int[] rows1 = new int[sigSize];
+        int[] rows2 = new int[sigSize];
+        int b = bandp.getB();
+        int band = 0;
+        boolean candidate = false;
+        while (band < b && !candidate) {
+            int from = bandp.bandFrom(sigSize, band);
+            int to = bandp.bandTo(sigSize, band);
+            candidate = bandValue(hashes1, rows1, from, to)
+                    == bandValue(hashes2, rows2, from, to);
+            band++;
+        }
+
+        int rows = bandp.bandTo(sigSize, band - 1);
+        int elements = hashes1.length + hashes2.length;
+        if (event != null) {
+            event.end(Stage.SIGNING.name(), elements, (long) elements * rows);
+        }
+        if (reporting) {
+            metrics.onSigning(System.nanoTime() - start, elements, (long) elements * rows);
+        }
+        metrics.onCandidateCheck(candidate);
+        return candidate;
+    }
+
+
+    private static int bandValue(long[] hashes, int[] rows, int from, int to) {
+        Arrays.fill(rows, from, to, Integer.MAX_VALUE);
+        for (long hash : hashes) {
+            HashProvider.minHash(hash, rows, from, to);
+        }
+        return Signature2BandsConverter.band(rows, from, to);
+    }
+}
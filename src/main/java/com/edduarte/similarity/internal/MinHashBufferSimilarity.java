@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.internal;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.converter.Utf8Shingler;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Similarity class for UTF-8 encoded buffers and files using the MinHashing
+ * algorithm over character shingles, which are hashed straight from the
+ * bytes by a {@link Utf8Shingler}.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class MinHashBufferSimilarity implements Similarity<ByteBuffer> {
+
+    private final ExecutionStrategy exec;
+
+    private final Utf8Shingler shingler;
+
+    private final int sigSize;
+
+    private final SimilarityMetrics metrics;
+
+
+    /**
+     * Instantiates a Similarity class for UTF-8 encoded buffers using the
+     * MinHashing algorithm.
+     *
+     * @param exec    the strategy that decides where the shingle and signature
+     *                processing tasks are run
+     * @param sigSize the length of the signature array to be generated
+     * @param k       the number of characters of the shingles to generate
+     * @param metrics the listener that is notified of the work done by each
+     *                processing stage
+     */
+    public MinHashBufferSimilarity(ExecutionStrategy exec, int sigSize, int k,
+                                   SimilarityMetrics metrics) {
+        this.exec = exec;
+        this.shingler = new Utf8Shingler(k);
+        this.sigSize = sigSize;
+        this.metrics = metrics;
+    }
+
+
+    @Override
+    public double calculate(ByteBuffer b1, ByteBuffer b2) {
+        CalculationEvent event = CalculationEvent.start();
+        Future<int[]> signatureFuture1 = signatureAsync(b1);
+        Future<int[]> signatureFuture2 = signatureAsync(b2);
+        try {
+            double similarity = Similarity.signatureIndex(
+                    signatureFuture1.get(), signatureFuture2.get());
+            CalculationEvent.end(event, this, b1.remaining(), b2.remaining(),
+                    sigSize, MinHashTokenSimilarity.HASH, true, similarity);
+            return similarity;
+
+        } catch (ExecutionException | InterruptedException ex) {
+            String m = "There was a problem processing shingle signatures.";
+            throw new RuntimeException(m, ex);
+        }
+    }
+
+
+    @Override
+    public CompletableFuture<Double> calculateAsync(ByteBuffer b1, ByteBuffer b2) {
+        CalculationEvent event = CalculationEvent.start();
+        return signatureAsync(b1).thenCombine(signatureAsync(b2),
+                Similarity::signatureIndex)
+                .whenComplete((similarity, ex) -> {
+                    if (ex == null) {
+                        CalculationEvent.end(event, this, b1.remaining(),
+                                b2.remaining(), sigSize,
+                                MinHashTokenSimilarity.HASH, true, similarity);
+                    }
+                });
+    }
+
+
+    /**
+     * Calculates the similarity between two UTF-8 encoded files, which are
+     * memory-mapped instead of read into the heap.
+     */
+    public double calculate(Path file1, Path file2) throws IOException {
+        return calculate(Utf8Shingler.map(file1), Utf8Shingler.map(file2));
+    }
+
+
+    /**
+     * Generates the minhash signature of the remaining bytes of the specified
+     * buffer without blocking the calling thread. The shingles are folded
+     * into the signature as they are hashed, so they are never collected.
+     */
+    public CompletableFuture<int[]> signatureAsync(ByteBuffer b) {
+        return exec.submit(signatureTask(b), (long) b.remaining() * sigSize);
+    }
+
+
+    /**
+     * Generates the minhash signature of the specified UTF-8 encoded file on
+     * the calling thread.
+     */
+    public int[] signature(Path file) throws IOException {
+        return shingler.signature(file, sigSize);
+    }
+
+
+    private Callable<int[]> signatureTask(ByteBuffer b) {
+        // every shingle starts at a different byte, so the number of bytes
+        // is an upper bound on the number of shingles
+        return Stages.signing(metrics, () -> shingler.signature(b, sigSize),
+                b.remaining(), sigSize);
+    }
+}
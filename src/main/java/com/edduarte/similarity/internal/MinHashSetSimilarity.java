@@ -17,6 +17,8 @@
 package com.edduarte.similarity.internal;
 
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -24,6 +26,8 @@ import java.util.concurrent.Future;
 import com.edduarte.similarity.SetSimilarity;
 import com.edduarte.similarity.Similarity;
 import com.edduarte.similarity.converter.Set2SignatureConverter;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
 
 /**
  * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
@@ -34,7 +38,11 @@ public class MinHashSetSimilarity implements SetSimilarity {
 
     private final Set2SignatureConverter p;
 
-    private final ExecutorService exec;
+    private final ExecutionStrategy exec;
+
+    private final int sigSize;
+
+    private final SimilarityMetrics metrics;
 
 
     /**
@@ -47,8 +55,41 @@ public class MinHashSetSimilarity implements SetSimilarity {
      * @param sigSize the length of the signature array to be generated
      */
     public MinHashSetSimilarity(final ExecutorService exec, final int n, final int sigSize) {
+        this(ExecutionStrategy.of(exec), n, sigSize);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for number sets using the MinHashing
+     * algorithm.
+     *
+     * @param exec    the strategy that decides where the signature processing
+     *                tasks are run
+     * @param n       the total number of unique elements in both sets
+     * @param sigSize the length of the signature array to be generated
+     */
+    public MinHashSetSimilarity(final ExecutionStrategy exec, final int n, final int sigSize) {
+        this(exec, n, sigSize, SimilarityMetrics.NOOP);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for number sets using the MinHashing
+     * algorithm.
+     *
+     * @param exec    the strategy that decides where the signature processing
+     *                tasks are run
+     * @param n       the total number of unique elements in both sets
+     * @param sigSize the length of the signature array to be generated
+     * @param metrics the listener that is notified of the work done by each
+     *                processing stage
+     */
+    public MinHashSetSimilarity(final ExecutionStrategy exec, final int n, final int sigSize,
+                                final SimilarityMetrics metrics) {
         this.exec = exec;
         this.p = new Set2SignatureConverter(n, sigSize);
+        this.sigSize = sigSize;
+        this.metrics = metrics;
     }
 
 
@@ -56,18 +97,55 @@ public class MinHashSetSimilarity implements SetSimilarity {
     public double calculate(
         final Collection<? extends Number> c1,
         final Collection<? extends Number> c2) {
-        final Future<int[]> signatureFuture1 = this.exec.submit(this.p.apply(c1));
-        final Future<int[]> signatureFuture2 = this.exec.submit(this.p.apply(c2));
+        final CalculationEvent event = CalculationEvent.start();
+        final Future<int[]> signatureFuture1 = this.exec.submit(
+            signatureTask(c1), (long) c1.size() * this.sigSize);
+        final Future<int[]> signatureFuture2 = this.exec.submit(
+            signatureTask(c2), (long) c2.size() * this.sigSize);
 
         try {
             final int[] signature1 = signatureFuture1.get();
             final int[] signature2 = signatureFuture2.get();
 
-            return Similarity.signatureIndex(signature1, signature2);
+            final double similarity = Similarity.signatureIndex(signature1, signature2);
+            CalculationEvent.end(event, this, c1.size(), c2.size(), this.sigSize,
+                CalculationEvent.UNIVERSAL_HASH, true, similarity);
+            return similarity;
 
         } catch (ExecutionException | InterruptedException ex) {
             final String m = "There was a problem processing set signatures.";
             throw new RuntimeException(m, ex);
         }
     }
+
+
+    @Override
+    public CompletableFuture<Double> calculateAsync(
+        final Collection<? extends Number> c1,
+        final Collection<? extends Number> c2) {
+        final CalculationEvent event = CalculationEvent.start();
+        return signatureAsync(c1).thenCombine(signatureAsync(c2),
+            Similarity::signatureIndex)
+            .whenComplete((similarity, ex) -> {
+                if (ex == null) {
+                    CalculationEvent.end(event, this, c1.size(), c2.size(),
+                        this.sigSize, CalculationEvent.UNIVERSAL_HASH, true,
+                        similarity);
+                }
+            });
+    }
+
+
+    /**
+     * Generates the minhash signature of the specified set without blocking
+     * the calling thread.
+     */
+    public CompletableFuture<int[]> signatureAsync(final Collection<? extends Number> c) {
+        return this.exec.submit(signatureTask(c), (long) c.size() * this.sigSize);
+    }
+
+
+    private Callable<int[]> signatureTask(final Collection<? extends Number> c) {
+        return Stages.signing(this.metrics, this.p.apply(c), c.size(), this.sigSize);
+    }
 }
@@ -20,9 +20,13 @@ package com.edduarte.similarity.internal;
 import com.edduarte.similarity.Similarity;
 import com.edduarte.similarity.StringSimilarity;
 import com.edduarte.similarity.converter.KShingles2SignatureConverter;
+import com.edduarte.similarity.execution.ExecutionStrategy;
 import com.edduarte.similarity.hash.HashProvider.HashMethod;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -34,12 +38,18 @@ import java.util.concurrent.Future;
  */
 public class MinHashStringSimilarity implements StringSimilarity {
 
-    private final ExecutorService exec;
+    private final ExecutionStrategy exec;
 
     private final JaccardStringSimilarity jaccard;
 
     private final KShingles2SignatureConverter p;
 
+    private final int sigSize;
+
+    private final HashMethod hash;
+
+    private final SimilarityMetrics metrics;
+
 
     /**
      * Instantiates a Similarity class for strings using the MinHashing
@@ -53,24 +63,92 @@ public class MinHashStringSimilarity implements StringSimilarity {
      */
     public MinHashStringSimilarity(ExecutorService exec, int sigSize,
                                    HashMethod hash, int k) {
-        this.jaccard = new JaccardStringSimilarity(exec, k);
+        this(ExecutionStrategy.of(exec), sigSize, hash, k);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the MinHashing
+     * algorithm.
+     *
+     * @param exec    the strategy that decides where the shingle and signature
+     *                processing tasks are run
+     * @param sigSize the length of the signature array to be generated
+     * @param hash    the hash method to use when hashing shingles to signatures
+     * @param k       the length k of the shingles to generate
+     */
+    public MinHashStringSimilarity(ExecutionStrategy exec, int sigSize,
+                                   HashMethod hash, int k) {
+        this(exec, sigSize, hash, k, SimilarityMetrics.NOOP);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the MinHashing
+     * algorithm.
+     *
+     * @param exec    the strategy that decides where the shingle and signature
+     *                processing tasks are run
+     * @param sigSize the length of the signature array to be generated
+     * @param hash    the hash method to use when hashing shingles to signatures
+     * @param k       the length k of the shingles to generate
+     * @param metrics the listener that is notified of the work done by each
+     *                processing stage
+     */
+    public MinHashStringSimilarity(ExecutionStrategy exec, int sigSize,
+                                   HashMethod hash, int k,
+                                   SimilarityMetrics metrics) {
+        this.jaccard = new JaccardStringSimilarity(exec, k, metrics);
         this.p = new KShingles2SignatureConverter(hash, sigSize);
+        this.sigSize = sigSize;
+        this.hash = hash;
+        this.metrics = metrics;
         this.exec = exec;
     }
 
 
     @Override
     public double calculate(String s1, String s2) {
+        CalculationEvent event = CalculationEvent.start();
         JaccardStringSimilarity.ShinglePair p = jaccard.getShingles(s1, s2);
         int[][] signatures = getSignatures(p.shingles1, p.shingles2);
-        return Similarity.signatureIndex(signatures[0], signatures[1]);
+        double similarity = Similarity.signatureIndex(signatures[0], signatures[1]);
+        CalculationEvent.end(event, this, s1.length(), s2.length(), sigSize,
+                hash, true, similarity);
+        return similarity;
+    }
+
+
+    @Override
+    public CompletableFuture<Double> calculateAsync(String s1, String s2) {
+        CalculationEvent event = CalculationEvent.start();
+        return signatureAsync(s1).thenCombine(signatureAsync(s2),
+                Similarity::signatureIndex)
+                .whenComplete((similarity, ex) -> {
+                    if (ex == null) {
+                        CalculationEvent.end(event, this, s1.length(),
+                                s2.length(), sigSize, hash, true, similarity);
+                    }
+                });
+    }
+
+
+    /**
+     * Generates the minhash signature of the specified string without
+     * blocking the calling thread.
+     */
+    public CompletableFuture<int[]> signatureAsync(String s) {
+        return jaccard.shinglesAsync(s).thenCompose(shingles -> exec.submit(
+                signatureTask(shingles), (long) shingles.size() * sigSize));
     }
 
 
     private int[][] getSignatures(List<CharSequence> shingles1,
                                   List<CharSequence> shingles2) {
-        Future<int[]> signatureFuture1 = exec.submit(p.apply(shingles1));
-        Future<int[]> signatureFuture2 = exec.submit(p.apply(shingles2));
+        Future<int[]> signatureFuture1 = exec.submit(signatureTask(shingles1),
+                (long) shingles1.size() * sigSize);
+        Future<int[]> signatureFuture2 = exec.submit(signatureTask(shingles2),
+                (long) shingles2.size() * sigSize);
 
         try {
             int[] signature1 = signatureFuture1.get();
@@ -86,4 +164,9 @@ public class MinHashStringSimilarity implements StringSimilarity {
             throw new RuntimeException(m, ex);
         }
     }
+
+
+    private Callable<int[]> signatureTask(List<CharSequence> shingles) {
+        return Stages.signing(metrics, p.apply(shingles), shingles.size(), sigSize);
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.internal;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.StringSimilarity;
+import com.edduarte.similarity.converter.HashedShingles2SignatureConverter;
+import com.edduarte.similarity.converter.TokenShingler;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Similarity class for strings using the MinHashing algorithm over word
+ * n-gram shingles, which are hashed once by a {@link TokenShingler}.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class MinHashTokenSimilarity implements StringSimilarity {
+
+    /**
+     * Hash method reported in flight recorder events.
+     */
+    static final String HASH = "Murmur3_x64";
+
+    private final ExecutionStrategy exec;
+
+    private final TokenShingler shingler;
+
+    private final HashedShingles2SignatureConverter p;
+
+    private final int sigSize;
+
+    private final SimilarityMetrics metrics;
+
+
+    /**
+     * Instantiates a Similarity class for strings using the MinHashing
+     * algorithm over word n-grams.
+     *
+     * @param exec    the strategy that decides where the shingle and signature
+     *                processing tasks are run
+     * @param sigSize the length of the signature array to be generated
+     * @param n       the number of words of the shingles to generate
+     */
+    public MinHashTokenSimilarity(ExecutionStrategy exec, int sigSize, int n) {
+        this(exec, sigSize, new TokenShingler(n), SimilarityMetrics.NOOP);
+    }
+
+
+    /**
+     * Instantiates a Similarity class for strings using the MinHashing
+     * algorithm over word n-grams.
+     *
+     * @param exec     the strategy that decides where the shingle and
+     *                 signature processing tasks are run
+     * @param sigSize  the length of the signature array to be generated
+     * @param shingler the shingler that splits strings into word n-grams
+     * @param metrics  the listener that is notified of the work done by each
+     *                 processing stage
+     */
+    public MinHashTokenSimilarity(ExecutionStrategy exec, int sigSize,
+                                  TokenShingler shingler,
+                                  SimilarityMetrics metrics) {
+        this.exec = exec;
+        this.shingler = shingler;
+        this.p = new HashedShingles2SignatureConverter(sigSize);
+        this.sigSize = sigSize;
+        this.metrics = metrics;
+    }
+
+
+    @Override
+    public double calculate(String s1, String s2) {
+        CalculationEvent event = CalculationEvent.start();
+        Future<long[]> shinglesFuture1 = exec.submit(shingleTask(s1), s1.length());
+        Future<long[]> shinglesFuture2 = exec.submit(shingleTask(s2), s2.length());
+        try {
+            long[] shingles1 = shinglesFuture1.get();
+            long[] shingles2 = shinglesFuture2.get();
+
+            Future<int[]> signatureFuture1 = exec.submit(signatureTask(shingles1),
+                    (long) shingles1.length * sigSize);
+            Future<int[]> signatureFuture2 = exec.submit(signatureTask(shingles2),
+                    (long) shingles2.length * sigSize);
+
+            double similarity = Similarity.signatureIndex(
+                    signatureFuture1.get(), signatureFuture2.get());
+            CalculationEvent.end(event, this, s1.length(), s2.length(), sigSize,
+                    HASH, true, similarity);
+            return similarity;
+
+        } catch (ExecutionException | InterruptedException ex) {
+            String m = "There was a problem processing shingle signatures.";
+            throw new RuntimeException(m, ex);
+        }
+    }
+
+
+    @Override
+    public CompletableFuture<Double> calculateAsync(String s1, String s2) {
+        CalculationEvent event = CalculationEvent.start();
+        return signatureAsync(s1).thenCombine(signatureAsync(s2),
+                Similarity::signatureIndex)
+                .whenComplete((similarity, ex) -> {
+                    if (ex == null) {
+                        CalculationEvent.end(event, this, s1.length(),
+                                s2.length(), sigSize, HASH, true, similarity);
+                    }
+                });
+    }
+
+
+    /**
+     * Generates the hashes of the word n-grams of the specified string
+     * without blocking the calling thread.
+     */
+    public CompletableFuture<long[]> shinglesAsync(String s) {
+        return exec.submit(shingleTask(s), s.length());
+    }
+
+
+    /**
+     * Generates the minhash signature of the specified string without
+     * blocking the calling thread.
+     */
+    public CompletableFuture<int[]> signatureAsync(String s) {
+        return shinglesAsync(s).thenCompose(shingles -> exec.submit(
+                signatureTask(shingles), (long) shingles.length * sigSize));
+    }
+
+
+    private Callable<long[]> shingleTask(String s) {
+        return Stages.hashedShingling(metrics, shingler.apply(s), s.length());
+    }
+
+
+    private Callable<int[]> signatureTask(long[] shingles) {
+        return Stages.signing(metrics, p.apply(shingles), shingles.length, sigSize);
+    }
+}
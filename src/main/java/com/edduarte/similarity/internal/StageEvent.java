@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a single processing stage (shingling, signing or
+ * banding one input) of a similarity engine.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+@Name("com.edduarte.similarity.Stage")
+@Label("Similarity Stage")
+@Category("Near-Neighbor Search")
+@Description("A shingling, signing or banding task of a similarity engine")
+@StackTrace(false)
+class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Input Size")
+    @Description("Characters of the string, shingles or set elements to sign, or the signature length")
+    int inputSize;
+
+    @Label("Output Size")
+    @Description("Shingles generated, hash values computed, or bands generated")
+    long outputSize;
+
+
+    /**
+     * @return a started event, or null if this event is not being recorded
+     */
+    static StageEvent start() {
+        StageEvent event = new StageEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+
+    static boolean isRecording() {
+        return new StageEvent().isEnabled();
+    }
+
+
+    void end(String stage, int inputSize, long outputSize) {
+        end();
+        if (shouldCommit()) {
+            this.stage = stage;
+            this.inputSize = inputSize;
+            this.outputSize = outputSize;
+            commit();
+        }
+    }
+}
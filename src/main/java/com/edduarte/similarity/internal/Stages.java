@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.internal;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
+import com.edduarte.similarity.metrics.Stage;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Wraps the processing tasks of the engines so that the time they take and the
+ * work they do is reported to a {@link SimilarityMetrics} listener and recorded
+ * as {@link StageEvent}s. When the listener is disabled and the event is not
+ * being recorded, the tasks are returned as they are.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class Stages {
+
+    private Stages() {
+    }
+
+
+    static Callable<List<CharSequence>> shingling(
+            SimilarityMetrics metrics,
+            Callable<List<CharSequence>> task,
+            int length) {
+        return timed(metrics, Stage.SHINGLING, task, length, List::size,
+                (nanos, shingles) -> metrics.onShingling(nanos, length, shingles.size()));
+    }
+
+
+    static Callable<long[]> hashedShingling(
+            SimilarityMetrics metrics,
+            Callable<long[]> task,
+            int length) {
+        return timed(metrics, Stage.SHINGLING, task, length, shingles -> shingles.length,
+                (nanos, shingles) -> metrics.onShingling(nanos, length, shingles.length));
+    }
+
+
+    static Callable<int[]> signing(
+            SimilarityMetrics metrics,
+            Callable<int[]> task,
+            int elements,
+            int sigSize) {
+        long hashEvaluations = (long) elements * sigSize;
+        return timed(metrics, Stage.SIGNING, task, elements, sig -> hashEvaluations,
+                (nanos, sig) -> metrics.onSigning(nanos, elements, hashEvaluations));
+    }
+
+
+    static Callable<int[]> banding(
+            SimilarityMetrics metrics,
+            Callable<int[]> task,
+            int sigSize) {
+        return timed(metrics, Stage.BANDING, task, sigSize, bands -> bands.length,
+                (nanos, bands) -> metrics.onBanding(nanos, sigSize, bands.length));
+    }
+
+
+    static boolean candidateCheck(
+            SimilarityMetrics metrics,
+            int[] bands1,
+            int[] bands2) {
+        boolean candidate = Similarity.isCandidatePair(bands1, bands2);
+        metrics.onCandidateCheck(candidate);
+        return candidate;
+    }
+
+
+    static double verification(
+            SimilarityMetrics metrics,
+            double threshold,
+            DoubleSupplier jaccard) {
+        if (!metrics.isEnabled()) {
+            return jaccard.getAsDouble();
+        }
+        long start = System.nanoTime();
+        double similarity = jaccard.getAsDouble();
+        metrics.onVerification(System.nanoTime() - start, similarity, threshold);
+        return similarity;
+    }
+
+
+    private static <T> Callable<T> timed(
+            SimilarityMetrics metrics,
+            Stage stage,
+            Callable<T> task,
+            int inputSize,
+            ToLongFunction<T> outputSize,
+            Report<T> report) {
+        boolean reporting = metrics.isEnabled();
+        if (!reporting && !StageEvent.isRecording()) {
+            return task;
+        }
+        return () -> {
+            StageEvent event = StageEvent.start();
+            long start = System.nanoTime();
+            T result = task.call();
+            long nanos = System.nanoTime() - start;
+            if (event != null) {
+                event.end(stage.name(), inputSize, outputSize.applyAsLong(result));
+            }
+            if (reporting) {
+                report.report(nanos, result);
+            }
+            return result;
+        };
+    }
+
+
+    @FunctionalInterface
+    private interface Report<T> {
+
+        void report(long nanos, T result);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.join;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+import com.edduarte.similarity.index.BandTable;
+import com.edduarte.similarity.index.LongList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.LongFunction;
+
+/**
+ * All-pairs similarity join for collections that do not fit in memory. Every
+ * document added is split into LSH bands, and a (band key, document id)
+ * record is written for each band. Records are sorted externally, so that
+ * the documents of each band bucket come out together, and every pair of
+ * documents in a bucket is a candidate pair. Candidates can be deduplicated
+ * with a second external sort, since two documents that share several bands
+ * are found in several buckets.
+ * <p>
+ * Memory use is bounded by the budget given at construction, except for the
+ * ids of a single bucket, which are held together to generate its pairs. Use
+ * {@link #withMaxBucketSize(int)} to skip buckets that are too large to be
+ * useful, e.g. those of boilerplate shared by most documents.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ExternalBandJoin implements Closeable {
+
+    private final Signature2BandsConverter bandp;
+
+    private final Path workDir;
+
+    private final long memoryBudget;
+
+    private final ExternalSorter records;
+
+    private int maxBucketSize = Integer.MAX_VALUE;
+
+    private boolean deduplicate = true;
+
+    private boolean finished;
+
+    private long skippedBuckets;
+
+
+    /**
+     * @param b            the number of bands
+     * @param r            the number of rows
+     * @param workDir      the directory where sorted run files are written
+     * @param memoryBudget the approximate number of bytes the join may use
+     */
+    public ExternalBandJoin(int b, int r, Path workDir, long memoryBudget) {
+        this.bandp = new Signature2BandsConverter(b, r);
+        this.workDir = workDir;
+        this.memoryBudget = memoryBudget;
+        // the band records and the candidate pairs are sorted one after the
+        // other, but the merge of the former feeds the latter
+        this.records = new ExternalSorter(workDir, memoryBudget / 2);
+    }
+
+
+    /**
+     * Skips buckets with more documents than the specified size, instead of
+     * generating the quadratic number of pairs they contain.
+     */
+    public ExternalBandJoin withMaxBucketSize(int maxBucketSize) {
+        this.maxBucketSize = maxBucketSize;
+        return this;
+    }
+
+
+    /**
+     * Enables or disables the external sort that removes duplicate candidate
+     * pairs. When disabled, a pair is produced once for every band it shares.
+     */
+    public ExternalBandJoin withDeduplication(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+        return this;
+    }
+
+
+    /**
+     * Adds a document from its minhash signature.
+     */
+    public void add(long id, int[] signature) throws IOException {
+        addBands(id, bandp.compute(signature));
+    }
+
+
+    /**
+     * Adds a document from the bands generated by a
+     * {@link Signature2BandsConverter} with the same number of bands.
+     */
+    public void addBands(long id, int[] bands) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The join was already run.");
+        }
+        for (int i = 0; i < bands.length; i++) {
+            records.add(BandTable.key(i, bands[i]), id);
+        }
+    }
+
+
+    /**
+     * Produces every candidate pair, with the smaller id first. Pairs are in
+     * ascending order when deduplication is enabled. This method can only be
+     * called once.
+     *
+     * @return the number of pairs produced
+     */
+    public long candidates(PairConsumer sink) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The join was already run.");
+        }
+        finished = true;
+        if (!deduplicate) {
+            return buckets(sink);
+        }
+        try (ExternalSorter pairs = new ExternalSorter(workDir, memoryBudget / 2)) {
+            buckets((id1, id2) -> {
+                try {
+                    pairs.add(id1, id2);
+                } catch (IOException ex) {
+                    String m = "There was a problem spilling candidate pairs.";
+                    throw new RuntimeException(m, ex);
+                }
+            });
+            long count = 0;
+            try (ExternalSorter.Cursor cursor = pairs.sorted()) {
+                long previous1 = 0;
+                long previous2 = 0;
+                while (cursor.next()) {
+                    long id1 = cursor.first();
+                    long id2 = cursor.second();
+                    if (count == 0 || id1 != previous1 || id2 != previous2) {
+                        sink.accept(id1, id2);
+                        count++;
+                        previous1 = id1;
+                        previous2 = id2;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+
+    /**
+     * Produces the candidate pairs whose similarity, as calculated by the
+     * verifier, is at least the threshold.
+     *
+     * @return the number of pairs produced
+     */
+    public long join(Verifier verifier, double threshold, ScoredPairConsumer sink)
+            throws IOException {
+        long[] count = new long[1];
+        candidates((id1, id2) -> {
+            double similarity = verifier.similarity(id1, id2);
+            if (similarity >= threshold) {
+                sink.accept(id1, id2, similarity);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+
+    /**
+     * @return the number of buckets skipped for being larger than the
+     * maximum bucket size
+     */
+    public long getSkippedBuckets() {
+        return skippedBuckets;
+    }
+
+
+    /**
+     * Deletes every run file left in the work directory.
+     */
+    @Override
+    public void close() throws IOException {
+        records.close();
+    }
+
+
+    private long buckets(PairConsumer sink) throws IOException {
+        long count = 0;
+        LongList bucket = new LongList();
+        try (ExternalSorter.Cursor cursor = records.sorted()) {
+            boolean hasNext = cursor.next();
+            while (hasNext) {
+                long key = cursor.first();
+                bucket.clear();
+                boolean oversized = false;
+                do {
+                    if (!oversized) {
+                        long id = cursor.second();
+                        // a document added twice shares its own buckets
+                        if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != id) {
+                            bucket.add(id);
+                        }
+                        if (bucket.size() > maxBucketSize) {
+                            oversized = true;
+                            bucket.clear();
+                            skippedBuckets++;
+                        }
+                    }
+                    hasNext = cursor.next();
+                } while (hasNext && cursor.first() == key);
+
+                // ids are sorted within a bucket, so pairs come smaller first
+                for (int i = 0; i < bucket.size(); i++) {
+                    for (int j = i + 1; j < bucket.size(); j++) {
+                        sink.accept(bucket.get(i), bucket.get(j));
+                        count++;
+                    }
+                }
+            }
+        }
+        records.close();
+        return count;
+    }
+
+
+    /**
+     * Verifier that estimates the similarity of two documents from their
+     * minhash signatures, as returned by the specified lookup.
+     */
+    public static Verifier signatures(LongFunction<int[]> lookup) {
+        return (id1, id2) ->
+                Similarity.signatureIndex(lookup.apply(id1), lookup.apply(id2));
+    }
+
+
+    /**
+     * Receives candidate pairs of document ids.
+     */
+    @FunctionalInterface
+    public interface PairConsumer {
+
+        void accept(long id1, long id2);
+    }
+
+
+    /**
+     * Calculates the similarity between two documents, e.g. their Jaccard
+     * index or the estimate given by their signatures.
+     */
+    @FunctionalInterface
+    public interface Verifier {
+
+        double similarity(long id1, long id2);
+    }
+
+
+    /**
+     * Receives the pairs of document ids that passed verification.
+     */
+    @FunctionalInterface
+    public interface ScoredPairConsumer {
+
+        void accept(long id1, long id2, double similarity);
+    }
+}
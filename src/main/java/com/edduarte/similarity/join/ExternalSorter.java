@@ -0,0 +1,367 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.join;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts records of two longs, in ascending order of the first and then of the
+ * second value, within a fixed memory budget. Records are buffered in memory
+ * and, once the buffer is full, sorted and written to a run file in the work
+ * directory. Runs are then merged k-way, in several passes if there are more
+ * runs than can be merged at once.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+final class ExternalSorter implements Closeable {
+
+    private static final int RECORD_BYTES = 16;
+
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final Path workDir;
+
+    private final int fanIn;
+
+    private final List<Path> runs = new ArrayList<>();
+
+    private long[] buffer;
+
+    private int size;
+
+
+    /**
+     * @param workDir      the directory where run files are written
+     * @param memoryBudget the approximate number of bytes this sorter may use
+     *                     for buffering records and reading runs
+     */
+    ExternalSorter(Path workDir, long memoryBudget) {
+        this.workDir = workDir;
+        long records = Math.max(1024, memoryBudget / RECORD_BYTES);
+        this.buffer = new long[(int) Math.min(records, Integer.MAX_VALUE / 4) * 2];
+        this.fanIn = (int) Math.max(2, Math.min(256, memoryBudget / IO_BUFFER_BYTES));
+    }
+
+
+    void add(long first, long second) throws IOException {
+        if (size * 2 == buffer.length) {
+            spill();
+        }
+        buffer[size * 2] = first;
+        buffer[size * 2 + 1] = second;
+        size++;
+    }
+
+
+    /**
+     * @return the number of run files written so far
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+
+
+    /**
+     * Finishes sorting and returns a cursor over every record added. No more
+     * records can be added after this call.
+     */
+    Cursor sorted() throws IOException {
+        if (runs.isEmpty()) {
+            sort(buffer, 0, size);
+            return new ArrayCursor(buffer, size);
+        }
+        if (size > 0) {
+            spill();
+        }
+        // release the sort buffer so its memory can be used for merging
+        buffer = null;
+        while (runs.size() > fanIn) {
+            List<Path> batch = new ArrayList<>(runs.subList(0, fanIn));
+            runs.subList(0, fanIn).clear();
+            Path merged = newRun();
+            try (Cursor cursor = new MergeCursor(batch);
+                 DataOutputStream out = open(merged)) {
+                while (cursor.next()) {
+                    out.writeLong(cursor.first());
+                    out.writeLong(cursor.second());
+                }
+            }
+            for (Path run : batch) {
+                Files.deleteIfExists(run);
+            }
+            runs.add(merged);
+        }
+        return new MergeCursor(runs);
+    }
+
+
+    /**
+     * Deletes every run file.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+
+    private void spill() throws IOException {
+        sort(buffer, 0, size);
+        Path run = newRun();
+        try (DataOutputStream out = open(run)) {
+            for (int i = 0; i < size * 2; i++) {
+                out.writeLong(buffer[i]);
+            }
+        }
+        runs.add(run);
+        size = 0;
+    }
+
+
+    private Path newRun() throws IOException {
+        return Files.createTempFile(workDir, "run-", ".bin");
+    }
+
+
+    private static DataOutputStream open(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(run), IO_BUFFER_BYTES));
+    }
+
+
+    private static int compare(long a1, long b1, long a2, long b2) {
+        int c = Long.compare(a1, a2);
+        return c != 0 ? c : Long.compare(b1, b2);
+    }
+
+
+    /**
+     * Sorts the records in [lo, hi) of an array of interleaved record values.
+     */
+    static void sort(long[] r, int lo, int hi) {
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            int mid = (lo + hi - 1) >>> 1;
+            long pa = r[mid * 2];
+            long pb = r[mid * 2 + 1];
+            int i = lo - 1;
+            int j = hi;
+            while (true) {
+                do {
+                    i++;
+                } while (compare(r[i * 2], r[i * 2 + 1], pa, pb) < 0);
+                do {
+                    j--;
+                } while (compare(r[j * 2], r[j * 2 + 1], pa, pb) > 0);
+                if (i >= j) {
+                    break;
+                }
+                swap(r, i, j);
+            }
+            // recurse into the smaller half to bound the stack depth
+            if (j + 1 - lo < hi - j - 1) {
+                sort(r, lo, j + 1);
+                lo = j + 1;
+            } else {
+                sort(r, j + 1, hi);
+                hi = j + 1;
+            }
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            long a = r[i * 2];
+            long b = r[i * 2 + 1];
+            int j = i - 1;
+            while (j >= lo && compare(r[j * 2], r[j * 2 + 1], a, b) > 0) {
+                r[(j + 1) * 2] = r[j * 2];
+                r[(j + 1) * 2 + 1] = r[j * 2 + 1];
+                j--;
+            }
+            r[(j + 1) * 2] = a;
+            r[(j + 1) * 2 + 1] = b;
+        }
+    }
+
+
+    private static void swap(long[] r, int i, int j) {
+        long a = r[i * 2];
+        long b = r[i * 2 + 1];
+        r[i * 2] = r[j * 2];
+        r[i * 2 + 1] = r[j * 2 + 1];
+        r[j * 2] = a;
+        r[j * 2 + 1] = b;
+    }
+
+
+    /**
+     * Iterator over sorted records.
+     */
+    interface Cursor extends Closeable {
+
+        /**
+         * Moves to the next record.
+         *
+         * @return false if there are no more records
+         */
+        boolean next() throws IOException;
+
+
+        long first();
+
+
+        long second();
+    }
+
+
+    private static final class ArrayCursor implements Cursor {
+
+        private final long[] records;
+
+        private final int size;
+
+        private int position = -1;
+
+
+        private ArrayCursor(long[] records, int size) {
+            this.records = records;
+            this.size = size;
+        }
+
+
+        @Override
+        public boolean next() {
+            return ++position < size;
+        }
+
+
+        @Override
+        public long first() {
+            return records[position * 2];
+        }
+
+
+        @Override
+        public long second() {
+            return records[position * 2 + 1];
+        }
+
+
+        @Override
+        public void close() {
+        }
+    }
+
+
+    private static final class MergeCursor implements Cursor {
+
+        private final List<RunReader> readers = new ArrayList<>();
+
+        private final PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                (r1, r2) -> compare(r1.first, r1.second, r2.first, r2.second));
+
+        private RunReader current;
+
+
+        private MergeCursor(List<Path> runs) throws IOException {
+            try {
+                for (Path run : runs) {
+                    RunReader reader = new RunReader(run);
+                    readers.add(reader);
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                }
+            } catch (IOException ex) {
+                close();
+                throw ex;
+            }
+        }
+
+
+        @Override
+        public boolean next() throws IOException {
+            if (current != null && current.advance()) {
+                queue.add(current);
+            }
+            current = queue.poll();
+            return current != null;
+        }
+
+
+        @Override
+        public long first() {
+            return current.first;
+        }
+
+
+        @Override
+        public long second() {
+            return current.second;
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+
+    private static final class RunReader {
+
+        private final DataInputStream in;
+
+        private long first;
+
+        private long second;
+
+
+        private RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(run), IO_BUFFER_BYTES));
+        }
+
+
+        private boolean advance() throws IOException {
+            try {
+                first = in.readLong();
+            } catch (EOFException ex) {
+                return false;
+            }
+            second = in.readLong();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.join;
+
+import com.edduarte.similarity.index.LongList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exact all-pairs similarity join: finds every pair of sets with a Jaccard
+ * index of at least a threshold, with no false negatives, following the
+ * PPJoin+ algorithm of Xiao et al., "Efficient Similarity Joins for Near
+ * Duplicate Detection".
+ * <p>
+ * Elements are ordered by ascending global frequency, so that the rare ones
+ * come first in every set. Two sets can only reach the threshold if they
+ * share an element in their prefixes, so only prefixes are indexed and
+ * probed. Sets are processed by ascending size, and candidates are further
+ * pruned by their size (length filter), by the number of elements that can
+ * still be shared after the positions where they matched (positional filter)
+ * and by a lower bound of the difference of their remaining elements
+ * (suffix filter). The surviving candidates are verified exactly.
+ * <p>
+ * The elements can be shingle ids, such as the hashes generated by a
+ * {@link com.edduarte.similarity.converter.TokenShingler}, or numbers of a
+ * set. The sets are held in memory.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class PrefixFilterJoin {
+
+    /**
+     * Tolerance applied to the bounds derived from the threshold, so that
+     * rounding errors never prune a pair that reaches it.
+     */
+    private static final double EPSILON = 1e-9;
+
+    private final double threshold;
+
+    private final LongList ids = new LongList();
+
+    private final List<long[]> sets = new ArrayList<>();
+
+    private int maxDepth = 2;
+
+    private long candidates;
+
+
+    /**
+     * @param threshold the minimum Jaccard index (between 0.0 exclusive and
+     *                  1.0) of the pairs to find
+     */
+    public PrefixFilterJoin(double threshold) {
+        if (!(threshold > 0 && threshold <= 1)) {
+            throw new IllegalArgumentException(
+                    "The threshold must be in (0, 1], but was " + threshold + ".");
+        }
+        this.threshold = threshold;
+    }
+
+
+    /**
+     * The number of recursive partitions of the suffix filter (defaults to 2).
+     * A depth of 0 disables the suffix filter.
+     */
+    public PrefixFilterJoin withSuffixFilterDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+
+    /**
+     * Adds a set of elements. Repeated elements are counted once.
+     */
+    public void add(long id, long[] set) {
+        ids.add(id);
+        sets.add(set.clone());
+    }
+
+
+    /**
+     * Adds a set of numbers. Repeated numbers are counted once.
+     */
+    public void add(long id, Collection<? extends Number> set) {
+        long[] values = new long[set.size()];
+        int n = 0;
+        for (Number x : set) {
+            values[n++] = x.longValue();
+        }
+        ids.add(id);
+        sets.add(values);
+    }
+
+
+    /**
+     * Produces every pair of sets whose Jaccard index is at least the
+     * threshold, with the smaller id first, together with that index.
+     *
+     * @return the number of pairs produced
+     */
+    public long join(ExternalBandJoin.ScoredPairConsumer sink) {
+        int[][] records = rankRecords();
+        Integer[] order = new Integer[records.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> records[a].length != records[b].length ?
+                Integer.compare(records[a].length, records[b].length) :
+                Integer.compare(a, b));
+
+        // index of the prefix entries of each element, as (record, position)
+        // pairs in the order the records were processed, i.e. by size
+        Map<Integer, LongList> index = new HashMap<>();
+        Map<Integer, int[]> starts = new HashMap<>();
+        int[] overlap = new int[records.length];
+        int[] lastX = new int[records.length];
+        int[] lastY = new int[records.length];
+        int[] touched = new int[records.length];
+        long pairs = 0;
+        candidates = 0;
+
+        for (int xi : order) {
+            int[] x = records[xi];
+            if (x.length == 0) {
+                continue;
+            }
+            int probePrefix = x.length - ceil(threshold * x.length) + 1;
+            int indexPrefix = x.length
+                    - ceil(2 * threshold / (1 + threshold) * x.length) + 1;
+            double minLength = threshold * x.length - EPSILON;
+            int touchedCount = 0;
+
+            for (int i = 0; i < probePrefix; i++) {
+                LongList entries = index.get(x[i]);
+                if (entries == null) {
+                    continue;
+                }
+                int[] start = starts.get(x[i]);
+                // records are processed by size, so entries too short for x
+                // are too short for every later record as well
+                while (start[0] < entries.size()
+                        && records[(int) (entries.get(start[0]) >>> 32)].length < minLength) {
+                    start[0]++;
+                }
+                for (int e = start[0]; e < entries.size(); e++) {
+                    long entry = entries.get(e);
+                    int yi = (int) (entry >>> 32);
+                    int j = (int) entry;
+                    if (overlap[yi] < 0) {
+                        continue;
+                    }
+                    int[] y = records[yi];
+                    int alpha = ceil(threshold / (1 + threshold) * (x.length + y.length));
+                    if (overlap[yi] == 0) {
+                        touched[touchedCount++] = yi;
+                        // no element before positions i and j is shared, so
+                        // the suffixes must make up for the rest of alpha
+                        int maxHamming = x.length + y.length - 2 * alpha - (i + j);
+                        if (maxDepth > 0 && suffixFilter(x, i + 1, x.length,
+                                y, j + 1, y.length, maxHamming, 1) > maxHamming) {
+                            overlap[yi] = -1;
+                            continue;
+                        }
+                    }
+                    int bound = 1 + Math.min(x.length - i - 1, y.length - j - 1);
+                    if (overlap[yi] + bound >= alpha) {
+                        overlap[yi]++;
+                        lastX[yi] = i;
+                        lastY[yi] = j;
+                    } else {
+                        overlap[yi] = -1;
+                    }
+                }
+            }
+
+            for (int t = 0; t < touchedCount; t++) {
+                int yi = touched[t];
+                if (overlap[yi] > 0) {
+                    candidates++;
+                    int[] y = records[yi];
+                    int alpha = ceil(threshold / (1 + threshold) * (x.length + y.length));
+                    int common = overlap[yi] + overlap(x, lastX[yi] + 1,
+                            y, lastY[yi] + 1, alpha - overlap[yi]);
+                    double similarity = (double) common / (x.length + y.length - common);
+                    if (similarity >= threshold) {
+                        long id1 = ids.get(xi);
+                        long id2 = ids.get(yi);
+                        sink.accept(Math.min(id1, id2), Math.max(id1, id2), similarity);
+                        pairs++;
+                    }
+                }
+                overlap[yi] = 0;
+            }
+
+            for (int i = 0; i < indexPrefix; i++) {
+                index.computeIfAbsent(x[i], w -> {
+                    starts.put(w, new int[1]);
+                    return new LongList();
+                }).add((long) xi << 32 | i);
+            }
+        }
+        return pairs;
+    }
+
+
+    /**
+     * @return the number of candidate pairs that survived the filters and
+     * were verified in the last join
+     */
+    public long getCandidates() {
+        return candidates;
+    }
+
+
+    /**
+     * Replaces every element by its rank in the global order of ascending
+     * frequency, and sorts the elements of every set by rank.
+     */
+    private int[][] rankRecords() {
+        Map<Long, int[]> frequencies = new HashMap<>();
+        long[][] distinct = new long[sets.size()][];
+        for (int r = 0; r < distinct.length; r++) {
+            long[] set = sets.get(r).clone();
+            Arrays.sort(set);
+            int n = 0;
+            for (int i = 0; i < set.length; i++) {
+                if (i == 0 || set[i] != set[i - 1]) {
+                    set[n++] = set[i];
+                }
+            }
+            distinct[r] = Arrays.copyOf(set, n);
+            for (long element : distinct[r]) {
+                frequencies.computeIfAbsent(element, e -> new int[1])[0]++;
+            }
+        }
+
+        Long[] elements = frequencies.keySet().toArray(new Long[0]);
+        Arrays.sort(elements, (a, b) -> {
+            int fa = frequencies.get(a)[0];
+            int fb = frequencies.get(b)[0];
+            return fa != fb ? Integer.compare(fa, fb) : Long.compare(a, b);
+        });
+        Map<Long, Integer> ranks = new HashMap<>();
+        for (int rank = 0; rank < elements.length; rank++) {
+            ranks.put(elements[rank], rank);
+        }
+
+        int[][] records = new int[distinct.length][];
+        for (int r = 0; r < records.length; r++) {
+            int[] record = new int[distinct[r].length];
+            for (int i = 0; i < record.length; i++) {
+                record[i] = ranks.get(distinct[r][i]);
+            }
+            Arrays.sort(record);
+            records[r] = record;
+        }
+        return records;
+    }
+
+
+    /**
+     * Counts the elements shared by x[from1, ...) and y[from2, ...), stopping
+     * as soon as the specified number of elements can no longer be reached.
+     */
+    private static int overlap(int[] x, int i, int[] y, int j, int required) {
+        int common = 0;
+        while (i < x.length && j < y.length) {
+            if (common + Math.min(x.length - i, y.length - j) < required) {
+                break;
+            }
+            if (x[i] == y[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (x[i] < y[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return common;
+    }
+
+
+    /**
+     * Computes a lower bound of the number of elements that are in only one
+     * of x[xFrom, xTo) and y[yFrom, yTo), by recursively partitioning both
+     * around the middle element of y. Stops refining the bound as soon as it
+     * exceeds maxHamming.
+     */
+    private int suffixFilter(int[] x, int xFrom, int xTo,
+                             int[] y, int yFrom, int yTo,
+                             int maxHamming, int depth) {
+        int xLength = xTo - xFrom;
+        int yLength = yTo - yFrom;
+        if (depth > maxDepth || xLength == 0 || yLength == 0) {
+            return Math.abs(xLength - yLength);
+        }
+        int mid = yFrom + yLength / 2;
+        int w = y[mid];
+        int p = Arrays.binarySearch(x, xFrom, xTo, w);
+        int diff = p >= 0 ? 0 : 1;
+        int xSplit = p >= 0 ? p : -p - 1;
+        int xRightFrom = p >= 0 ? p + 1 : xSplit;
+
+        int left = Math.abs((xSplit - xFrom) - (mid - yFrom));
+        int right = Math.abs((xTo - xRightFrom) - (yTo - mid - 1));
+        int hamming = left + right + diff;
+        if (hamming > maxHamming) {
+            return hamming;
+        }
+        int leftHamming = suffixFilter(x, xFrom, xSplit, y, yFrom, mid,
+                maxHamming - right - diff, depth + 1);
+        hamming = leftHamming + right + diff;
+        if (hamming > maxHamming) {
+            return hamming;
+        }
+        int rightHamming = suffixFilter(x, xRightFrom, xTo, y, mid + 1, yTo,
+                maxHamming - leftHamming - diff, depth + 1);
+        return leftHamming + rightHamming + diff;
+    }
+
+
+    private static int ceil(double value) {
+        return (int) Math.ceil(value - EPSILON);
+    }
+}
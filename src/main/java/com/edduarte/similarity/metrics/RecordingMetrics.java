@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics listener that keeps a latency histogram per {@link Stage} and
+ * counters of the work done by the engines, to be polled and exported to a
+ * monitoring system.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class RecordingMetrics implements SimilarityMetrics {
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+
+    private final LongAdder shingles = new LongAdder();
+
+    private final LongAdder hashEvaluations = new LongAdder();
+
+    private final LongAdder candidateChecks = new LongAdder();
+
+    private final LongAdder candidates = new LongAdder();
+
+    private final LongAdder verifications = new LongAdder();
+
+    private final LongAdder verified = new LongAdder();
+
+
+    public RecordingMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+
+    @Override
+    public void onShingling(long nanos, int length, int shingles) {
+        histograms.get(Stage.SHINGLING).record(nanos);
+        this.shingles.add(shingles);
+    }
+
+
+    @Override
+    public void onSigning(long nanos, int elements, long hashEvaluations) {
+        histograms.get(Stage.SIGNING).record(nanos);
+        this.hashEvaluations.add(hashEvaluations);
+    }
+
+
+    @Override
+    public void onBanding(long nanos, int signatureSize, int bands) {
+        histograms.get(Stage.BANDING).record(nanos);
+    }
+
+
+    @Override
+    public void onCandidateCheck(boolean candidate) {
+        candidateChecks.increment();
+        if (candidate) {
+            candidates.increment();
+        }
+    }
+
+
+    @Override
+    public void onVerification(long nanos, double similarity, double threshold) {
+        histograms.get(Stage.VERIFICATION).record(nanos);
+        verifications.increment();
+        if (similarity >= threshold) {
+            verified.increment();
+        }
+    }
+
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+
+    /**
+     * @return the total number of shingles that were generated
+     */
+    public long getShingleCount() {
+        return shingles.sum();
+    }
+
+
+    /**
+     * @return the total number of hash values computed for signatures
+     */
+    public long getHashEvaluationCount() {
+        return hashEvaluations.sum();
+    }
+
+
+    /**
+     * @return the fraction of compared pairs that were candidate pairs
+     */
+    public double getCandidateRate() {
+        long checks = candidateChecks.sum();
+        return checks == 0 ? 0 : (double) candidates.sum() / checks;
+    }
+
+
+    /**
+     * @return the fraction of verified candidate pairs whose similarity was
+     * at least the configured threshold, i.e. the ones that were not false
+     * positives
+     */
+    public double getVerificationRate() {
+        long v = verifications.sum();
+        return v == 0 ? 0 : (double) verified.sum() / v;
+    }
+
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        shingles.reset();
+        hashEvaluations.reset();
+        candidateChecks.reset();
+        candidates.reset();
+        verifications.reset();
+        verified.reset();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.metrics;
+
+/**
+ * Listener that is notified of the work done in each processing stage of the
+ * similarity engines. Every method has an empty default implementation, so
+ * implementations only need to override the events they are interested in.
+ * <p>
+ * Methods can be called concurrently from the threads that run the engine
+ * tasks, so implementations must be thread-safe and should return quickly.
+ *
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public interface SimilarityMetrics {
+
+    /**
+     * Listener that ignores every event. Engines check {@link #isEnabled()}
+     * before timing a stage, so using it costs close to nothing.
+     */
+    SimilarityMetrics NOOP = new SimilarityMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+
+    /**
+     * @return false if the engines can skip timing and reporting stages
+     * altogether
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+
+    /**
+     * A string was split into shingles.
+     *
+     * @param nanos     the time it took
+     * @param length    the length of the string
+     * @param shingles  the number of shingles that were generated
+     */
+    default void onShingling(long nanos, int length, int shingles) {
+    }
+
+
+    /**
+     * Shingles or set elements were hashed into a signature.
+     *
+     * @param nanos           the time it took
+     * @param elements        the number of shingles or set elements
+     * @param hashEvaluations the number of hash values that were computed
+     */
+    default void onSigning(long nanos, int elements, long hashEvaluations) {
+    }
+
+
+    /**
+     * A signature was grouped into bands.
+     *
+     * @param nanos         the time it took
+     * @param signatureSize the length of the signature
+     * @param bands         the number of bands
+     */
+    default void onBanding(long nanos, int signatureSize, int bands) {
+    }
+
+
+    /**
+     * The bands of two inputs were compared.
+     *
+     * @param candidate true if the two inputs are a candidate pair
+     */
+    default void onCandidateCheck(boolean candidate) {
+    }
+
+
+    /**
+     * The exact similarity of a candidate pair was calculated.
+     *
+     * @param nanos      the time it took
+     * @param similarity the calculated similarity
+     * @param threshold  the threshold the engine was configured with; a
+     *                   candidate pair below it is a false positive
+     */
+    default void onVerification(long nanos, double similarity, double threshold) {
+    }
+}
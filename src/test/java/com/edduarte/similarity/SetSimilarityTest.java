@@ -119,4 +119,27 @@ public class SetSimilarityTest {
 
 
     }
+
+
+    @Test
+    public void asyncTest() {
+        Similarity.JaccardFactory j = Similarity.jaccard();
+        assertEquals(j.of(c1, c3), j.ofAsync(c1, c3).join(), 0);
+        assertEquals(j.of(c3, c4), j.ofAsync(c3, c4).join(), 0);
+
+        // signatures of equal sets are always equal, regardless of the random
+        // coefficients picked for each call
+        Similarity.MinHashFactory m = Similarity.minhash()
+                .withExecutor(executorService);
+        assertEquals(1.0, m.ofAsync(c1, c2).join(), 0);
+
+        Similarity.LSHFactory l = Similarity.lsh();
+        assertEquals(1.0, l.ofAsync(c1, c2).join(), 0);
+        double index = l.ofAsync(c1, c4).join();
+        try {
+            assertEquals(0.6363636363636364, index, 0);
+        } catch (AssertionError error) {
+            assertEquals(0, index, 0);
+        }
+    }
 }
@@ -113,4 +113,30 @@ public class StringSimilarityTest {
         assertEquals(0.9772727272727273, s.of(s2, s4), 0);
         assertEquals(0.6984126984126984, s.of(s3, s4), 0);
     }
+
+
+    @Test
+    public void asyncTest() {
+        // async variants chain the same stages, so they must produce the same
+        // values as the blocking calls
+        Similarity.JaccardFactory j = Similarity.jaccard()
+                .withShingleLength(3)
+                .withExecutor(executorService);
+        assertEquals(j.of(s1, s3), j.ofAsync(s1, s3).join(), 0);
+        assertEquals(j.of(s3, s4), j.ofAsync(s3, s4).join(), 0);
+
+        Similarity.MinHashFactory m = Similarity.minhash()
+                .withShingleLength(3)
+                .withSignatureSize(200)
+                .withExecutor(executorService);
+        assertEquals(m.of(s1, s3), m.ofAsync(s1, s3).join(), 0);
+        assertEquals(m.of(s3, s4), m.ofAsync(s3, s4).join(), 0);
+
+        Similarity.LSHFactory l = Similarity.lsh()
+                .withShingleLength(3)
+                .withExecutor(executorService);
+        assertEquals(l.of(s1, s2), l.ofAsync(s1, s2).join(), 0);
+        assertEquals(l.of(s1, s3), l.ofAsync(s1, s3).join(), 0);
+        assertEquals(l.of(s1, s4), l.ofAsync(s1, s4).join(), 0);
+    }
 }
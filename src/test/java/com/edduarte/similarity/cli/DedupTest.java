@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.cli;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class DedupTest {
+
+    private static final String d1 = "Argus Panoptes is the 100-eyed giant in Greek mythology, " +
+            "a watchman who never slept with all of his eyes closed.";
+
+    private static final String d2 = "Argus Panoptes is the 100-eyed giant in Greek mythology, " +
+            "a watchman who never slept with all of his eyes closed!";
+
+    private static final String d3 = "Argus Panoptes is the 100-eyed giant of Greek mythology, " +
+            "a watchman who never slept with all of his eyes closed.";
+
+    private static final String other = "Lorem ipsum dolor sit amet, consectetur adipiscing " +
+            "elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final PrintStream log = new PrintStream(new ByteArrayOutputStream());
+
+
+    @Test
+    public void linesTest() throws Exception {
+        Path input = folder.newFile("corpus.txt").toPath();
+        Path output = folder.getRoot().toPath().resolve("clusters.tsv");
+        Files.write(input, Arrays.asList(d1, other, d2, "short", d3), StandardCharsets.UTF_8);
+
+        List<List<String>> clusters = Dedup.parse(new String[]{
+                "--input", input.toString(), "--output", output.toString(),
+                "--lines", "--threshold", "0.7", "--threads", "2"})
+                .withLog(log)
+                .run();
+        assertEquals(1, clusters.size());
+        assertEquals(Arrays.asList("1", "3", "5"), clusters.get(0));
+        assertEquals(Arrays.asList("1\t3\t5"),
+                Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    public void emptyLinesTest() throws Exception {
+        Path input = folder.newFile("corpus.txt").toPath();
+        Path output = folder.getRoot().toPath().resolve("clusters.tsv");
+        Files.write(input, Arrays.asList(d1, "", "", "ok", "hi", d2), StandardCharsets.UTF_8);
+
+        List<List<String>> clusters = Dedup.parse(new String[]{
+                "--input", input.toString(), "--output", output.toString(),
+                "--lines", "--threshold", "0.7"})
+                .withLog(log)
+                .run();
+        assertEquals(1, clusters.size());
+        assertEquals(Arrays.asList("1", "6"), clusters.get(0));
+
+        clusters = Dedup.parse(new String[]{
+                "--input", input.toString(), "--output", output.toString(),
+                "--lines", "--words", "2", "--threshold", "0.7"})
+                .withLog(log)
+                .run();
+        assertEquals(1, clusters.size());
+        assertEquals(Arrays.asList("1", "6"), clusters.get(0));
+    }
+
+
+    @Test
+    public void directoryTest() throws Exception {
+        Path dir = folder.newFolder("corpus").toPath();
+        Files.createDirectories(dir.resolve("nested"));
+        Files.write(dir.resolve("a.txt"), d1.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("nested").resolve("b.txt"), d2.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("c.txt"), other.getBytes(StandardCharsets.UTF_8));
+        Path output = folder.getRoot().toPath().resolve("clusters.tsv");
+
+        List<List<String>> clusters = new Dedup(dir, output)
+                .withWordShingles(2)
+                .withThreshold(0.7)
+                .withLog(log)
+                .run();
+        assertEquals(1, clusters.size());
+        assertEquals(2, clusters.get(0).size());
+        assertTrue(clusters.get(0).get(0).endsWith("a.txt"));
+        assertTrue(clusters.get(0).get(1).endsWith("b.txt"));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void usageTest() {
+        Dedup.parse(new String[]{"--input", "corpus"});
+    }
+}
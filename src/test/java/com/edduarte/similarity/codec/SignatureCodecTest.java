@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.codec;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class SignatureCodecTest {
+
+    @Test
+    public void roundTripTest() {
+        Random random = new Random(1);
+        // three signatures of 100 values, encoded in bulk
+        int[] values = new int[300];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt();
+        }
+        for (int bits : new int[]{1, 3, 8, 16, 17, 32}) {
+            SignatureCodec codec = SignatureCodec.bBit("Murmur3", bits);
+            ByteBuffer buffer = ByteBuffer.allocate(64 + codec.encodedSize(values.length));
+            codec.header(100).write(buffer);
+            codec.encode(values, 0, values.length, buffer);
+            buffer.flip();
+
+            CodecHeader header = CodecHeader.read(buffer);
+            assertEquals("Murmur3", header.getHashFamily());
+            assertEquals(bits, header.getBits());
+            assertEquals(100, header.getSize());
+            assertEquals(codec.encodedSize(values.length), buffer.remaining());
+
+            int[] decoded = new int[values.length];
+            SignatureCodec.of(header).decode(buffer, decoded, 0, decoded.length);
+            for (int i = 0; i < values.length; i++) {
+                long mask = bits == 32 ? 0xffffffffL : (1L << bits) - 1;
+                assertEquals(values[i] & mask, decoded[i] & 0xffffffffL);
+            }
+        }
+    }
+
+
+    @Test
+    public void bBitSimilarityTest() {
+        Random random = new Random(2);
+        int[] signature1 = new int[4000];
+        int[] signature2 = new int[4000];
+        for (int i = 0; i < signature1.length; i++) {
+            signature1[i] = random.nextInt();
+            signature2[i] = i % 2 == 0 ? signature1[i] : random.nextInt();
+        }
+        double full = Similarity.signatureIndex(signature1, signature2);
+
+        SignatureCodec codec = SignatureCodec.bBit("Murmur3", 2);
+        ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(8000));
+        codec.encode(signature1, buffer);
+        codec.encode(signature2, buffer);
+        assertEquals(2000, buffer.position());
+        buffer.flip();
+        int[] decoded1 = new int[4000];
+        int[] decoded2 = new int[4000];
+        codec.decode(buffer, decoded1);
+        codec.decode(buffer, decoded2);
+
+        // a quarter of the differing positions collide by chance
+        double raw = Similarity.signatureIndex(decoded1, decoded2);
+        assertEquals(0.625, raw, 0.03);
+        assertEquals(full, codec.signatureIndex(decoded1, decoded2), 0.03);
+        assertEquals(full, SignatureCodec.full("Murmur3")
+                .signatureIndex(signature1, signature2), 1e-6);
+    }
+
+
+    @Test
+    public void bandsTest() {
+        int[] bands = {0, 1, -1, 5, Integer.MAX_VALUE, Integer.MIN_VALUE, 42, 42};
+        BandCodec codec = new BandCodec("Universal");
+        ByteBuffer buffer = ByteBuffer.allocate(64 + codec.encodedSize(bands.length));
+        codec.header(bands.length).write(buffer);
+        codec.encode(bands, buffer);
+        buffer.flip();
+
+        CodecHeader header = CodecHeader.read(buffer);
+        assertEquals(CodecHeader.Kind.BANDS, header.getKind());
+        int[] decoded = new int[header.getSize()];
+        BandCodec.of(header).decode(buffer, decoded);
+        assertArrayEquals(bands, decoded);
+        assertEquals(0, buffer.remaining());
+    }
+
+
+    @Test
+    public void bandSizeTest() {
+        // real band output: uniform 32-bit hashes of the rows
+        Random random = new Random(13);
+        Signature2BandsConverter converter = new Signature2BandsConverter(20, 5);
+        int count = 100;
+        int[] bands = new int[count * 20];
+        for (int i = 0; i < count; i++) {
+            int[] signature = new int[100];
+            for (int j = 0; j < signature.length; j++) {
+                signature[j] = random.nextInt();
+            }
+            System.arraycopy(converter.compute(signature), 0, bands, i * 20, 20);
+        }
+
+        for (int bits : new int[]{32, 16}) {
+            BandCodec codec = new BandCodec("Murmur3x64", bits);
+            ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(bands.length));
+            codec.encode(bands, buffer);
+            // never larger than the raw ints
+            assertEquals(bands.length * bits / 8, buffer.position());
+            buffer.flip();
+
+            int[] decoded = new int[bands.length];
+            BandCodec.of(codec.header(20)).decode(buffer, decoded);
+            for (int i = 0; i < bands.length; i++) {
+                assertEquals(bits == 32 ? bands[i] : bands[i] & 0xffff, decoded[i]);
+            }
+        }
+    }
+}
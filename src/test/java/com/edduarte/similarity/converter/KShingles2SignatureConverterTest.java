@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.converter;
+
+import com.edduarte.similarity.hash.HashProvider;
+import com.edduarte.similarity.hash.HashProvider.HashMethod;
+import com.edduarte.similarity.hash.Murmur3;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class KShingles2SignatureConverterTest {
+
+    private static final String s1 = "The Argus Panoptes, o gigante de cem olhos da mitologia grega ☃ ç.";
+
+
+    @Test
+    public void derivedSignatureTest() throws Exception {
+        List<CharSequence> shingles = new KShingler(5).apply(s1).call();
+        long[] hashes = new long[shingles.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            byte[] bytes = shingles.get(i).toString().getBytes(StandardCharsets.UTF_8);
+            hashes[i] = Murmur3.hash64(bytes, 0);
+        }
+
+        int[] expected = new HashedShingles2SignatureConverter(100).compute(hashes);
+        int[] sig = new KShingles2SignatureConverter(HashMethod.Murmur3x64, 100)
+                .apply(shingles).call();
+        assertArrayEquals(expected, sig);
+    }
+
+
+    @Test
+    public void encodeUtf8Test() {
+        String s = "aç☃𝄞\ud800b\udc00";
+        byte[] dest = new byte[s.length() * 3];
+        int length = KShingles2SignatureConverter.encodeUtf8(s, dest);
+        byte[] expected = s.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, length);
+        for (int i = 0; i < length; i++) {
+            assertEquals(expected[i], dest[i]);
+        }
+    }
+
+
+    @Test
+    public void derivedPositionsTest() {
+        byte[] value = "shingle".getBytes(StandardCharsets.UTF_8);
+        int[] positions = HashProvider.hashMurmur3x64(value, 1000, 200);
+        assertEquals(200, positions.length);
+        for (int p : positions) {
+            assertTrue(p >= 0 && p < 1000);
+        }
+        assertArrayEquals(positions, HashMethod.Murmur3x64.getHashFunction().hash(value, 1000, 200));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.converter;
+
+import com.edduarte.similarity.hash.HashProvider;
+import com.edduarte.similarity.hash.HashProvider.HashMethod;
+import com.edduarte.similarity.hash.Murmur3;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ParallelSignatureTest {
+
+    private static final int SIG_SIZE = 128;
+
+    // large enough to be split in chunks
+    private static final int ELEMENTS = (int) (4 * ParallelSignature.PARALLEL_COST / SIG_SIZE);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+
+    @Test
+    public void hashedShinglesTest() throws Exception {
+        Random random = new Random(5);
+        long[] shingles = new long[ELEMENTS];
+        for (int i = 0; i < shingles.length; i++) {
+            shingles[i] = random.nextLong();
+        }
+
+        int[] expected = new int[SIG_SIZE];
+        Arrays.fill(expected, Integer.MAX_VALUE);
+        for (long shingle : shingles) {
+            HashProvider.minHash(shingle, expected);
+        }
+
+        HashedShingles2SignatureConverter converter = new HashedShingles2SignatureConverter(SIG_SIZE);
+        assertArrayEquals(expected, POOL.submit(() -> converter.compute(shingles)).get());
+    }
+
+
+    @Test
+    public void utf8Test() throws Exception {
+        // a mix of 1 to 4 byte code points, so that ranges split code points
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        int[] codePoints = {'a', 'z', ' ', 0xe9, 0x2603, 0x1d11e};
+        while (text.length() < ELEMENTS) {
+            text.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 3, bytes.length - 3).slice();
+        buffer.position(1);
+
+        Utf8Shingler shingler = new Utf8Shingler(5);
+        int[] expected = new int[SIG_SIZE];
+        Arrays.fill(expected, Integer.MAX_VALUE);
+        for (long shingle : shingler.compute(buffer)) {
+            HashProvider.minHash(shingle, expected);
+        }
+
+        assertArrayEquals(expected, POOL.submit(() -> shingler.signature(buffer, SIG_SIZE)).get());
+        assertArrayEquals(expected, shingler.signature(buffer, SIG_SIZE));
+        assertEquals(1, buffer.position());
+    }
+
+
+    @Test
+    public void kShinglesTest() throws Exception {
+        List<CharSequence> shingles = new ArrayList<>();
+        int[] expected = new int[SIG_SIZE];
+        Arrays.fill(expected, Integer.MAX_VALUE);
+        for (int i = 0; i < ELEMENTS; i++) {
+            String shingle = Integer.toString(i, 36);
+            shingles.add(shingle);
+            HashProvider.minHash(Murmur3.hash64(shingle.getBytes(StandardCharsets.UTF_8), 0), expected);
+        }
+
+        KShingles2SignatureConverter converter = new KShingles2SignatureConverter(HashMethod.Murmur3x64, SIG_SIZE);
+        assertArrayEquals(expected, POOL.submit(converter.apply(shingles)).get());
+    }
+
+
+    @Test
+    public void setTest() throws Exception {
+        List<Integer> set = new ArrayList<>();
+        for (int i = 0; i < ELEMENTS; i++) {
+            set.add(i * 7);
+        }
+        Set2SignatureConverter converter = new Set2SignatureConverter(ELEMENTS * 7, SIG_SIZE);
+        int half = ELEMENTS / 2;
+        assertTrue((long) half * SIG_SIZE >= ParallelSignature.PARALLEL_COST);
+
+        // the signature of a union is the slot-wise min of the signatures
+        int[] first = converter.compute(set.subList(0, half));
+        int[] second = converter.compute(set.subList(half, ELEMENTS));
+        int[] expected = new int[SIG_SIZE];
+        for (int i = 0; i < SIG_SIZE; i++) {
+            expected[i] = Math.min(first[i], second[i]);
+        }
+
+        assertArrayEquals(expected, converter.compute(set));
+        assertArrayEquals(expected, POOL.submit(() -> converter.compute(set)).get());
+        assertArrayEquals(expected, POOL.submit(converter.apply(set)).get());
+    }
+}
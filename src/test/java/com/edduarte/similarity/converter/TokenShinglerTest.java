@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.converter;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.hash.Murmur3;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class TokenShinglerTest {
+
+    private static final String s1 = "The Argus Panoptes is the 100-eyed giant in Greek mythology, " +
+            "a watchman who never slept with all of his eyes closed.";
+
+    private static final String s2 = "The Argus Panoptes is the 100-eyed giant in Greek mythology, " +
+            "a guardian who never slept with all of his eyes closed.";
+
+
+    @Test
+    public void murmur3Test() {
+        assertEquals(0, Murmur3.hash64(new byte[0], 0));
+        assertEquals(0xcbd8a7b341bd9b02L,
+                Murmur3.hash64("hello".getBytes(StandardCharsets.UTF_8), 0));
+
+        // characters hash like their UTF-16LE encoding, for every tail length
+        String text = "near-neighbor search ação";
+        for (int from = 0; from < 5; from++) {
+            for (int to = from; to <= text.length(); to++) {
+                byte[] bytes = text.substring(from, to)
+                        .getBytes(StandardCharsets.UTF_16LE);
+                assertEquals(Murmur3.hash64(bytes, 42),
+                        Murmur3.hash64(text, from, to, 42));
+            }
+        }
+    }
+
+
+    @Test
+    public void shinglesTest() {
+        TokenShingler shingler = new TokenShingler(3);
+        // 22 words
+        assertEquals(20, shingler.compute(s1).length);
+        assertEquals(1, shingler.compute("two words").length);
+        assertEquals(0, shingler.compute(" ,. ").length);
+
+        // delimiters do not matter, only the words and their order
+        assertArrayEquals(shingler.compute("a b c d"), shingler.compute("a, b; c  d."));
+        assertNotEquals(shingler.compute("a b c")[0], shingler.compute("c b a")[0]);
+
+        TokenShingler whitespace = new TokenShingler(1, Pattern.compile("\\s+"));
+        assertArrayEquals(whitespace.compute("100-eyed giant"),
+                new long[]{whitespace.compute("100-eyed")[0],
+                        whitespace.compute("giant")[0]});
+
+        // 20 word trigrams in each, 4 of which differ
+        double jaccard = Similarity.jaccardIndex(shingler.compute(s1), shingler.compute(s2));
+        assertEquals(17.0 / 23.0, jaccard, 0);
+    }
+
+
+    @Test
+    public void factoryTest() {
+        double minhash = Similarity.minhash()
+                .withWordShingles(3)
+                .withSignatureSize(400)
+                .of(s1, s2);
+        assertEquals(17.0 / 23.0, minhash, 0.1);
+        assertEquals(1.0, Similarity.minhash().withWordShingles(3).of(s1, s1), 0);
+
+        double lsh = Similarity.lsh().withWordShingles(3).of(s1, s2);
+        assertEquals(17.0 / 23.0, lsh, 0);
+        double lshAsync = Similarity.lsh().withWordShingles(3).ofAsync(s1, s2).join();
+        assertEquals(lsh, lshAsync, 0);
+        assertTrue(Similarity.lsh().withWordShingles(3)
+                .of(s1, "completely unrelated text about something else") < 0.1);
+    }
+}
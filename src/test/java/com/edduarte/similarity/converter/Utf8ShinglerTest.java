@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.converter;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.hash.Murmur3;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class Utf8ShinglerTest {
+
+    private static final String s1 = "The Argus Panoptes, o gigante de cem olhos da mitologia grega ☃ 𝄞.";
+
+    private static final String s2 = "The Argus Panoptes, o gigante de mil olhos da mitologia grega ☃ 𝄞.";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void codePointShinglesTest() {
+        Utf8Shingler shingler = new Utf8Shingler(3);
+        int[] codePoints = s1.codePoints().toArray();
+        long[] expected = new long[codePoints.length - 2];
+        for (int i = 0; i < expected.length; i++) {
+            String shingle = new String(codePoints, i, 3);
+            expected[i] = Murmur3.hash64(shingle.getBytes(StandardCharsets.UTF_8),
+                    Utf8Shingler.SEED);
+        }
+
+        byte[] bytes = s1.getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, shingler.compute(ByteBuffer.wrap(bytes)));
+
+        // the byte order of the buffer does not matter
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        direct.position(4);
+        direct.put(bytes);
+        direct.position(4);
+        assertArrayEquals(expected, shingler.compute(direct));
+        assertEquals(4, direct.position());
+
+        assertEquals(0, shingler.compute(ByteBuffer.wrap("ab".getBytes(StandardCharsets.UTF_8))).length);
+        assertFalse(shingler.hasShingles(ByteBuffer.wrap("a☃".getBytes(StandardCharsets.UTF_8))));
+        assertTrue(shingler.hasShingles(ByteBuffer.wrap("a☃b".getBytes(StandardCharsets.UTF_8))));
+    }
+
+
+    @Test
+    public void fileTest() throws Exception {
+        Path file1 = folder.newFile().toPath();
+        Path file2 = folder.newFile().toPath();
+        Files.write(file1, s1.getBytes(StandardCharsets.UTF_8));
+        Files.write(file2, s2.getBytes(StandardCharsets.UTF_8));
+
+        Similarity.MinHashFactory minhash = Similarity.minhash()
+                .withShingleLength(3)
+                .withSignatureSize(200);
+        double files = minhash.of(file1, file2);
+        double buffers = minhash.of(
+                ByteBuffer.wrap(s1.getBytes(StandardCharsets.UTF_8)),
+                ByteBuffer.wrap(s2.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(buffers, files, 0);
+        assertEquals(files, minhash.ofAsync(
+                ByteBuffer.wrap(s1.getBytes(StandardCharsets.UTF_8)),
+                ByteBuffer.wrap(s2.getBytes(StandardCharsets.UTF_8))).join(), 0);
+        assertEquals(0.8, files, 0.15);
+        assertEquals(1.0, minhash.of(file1, file1), 0);
+    }
+}
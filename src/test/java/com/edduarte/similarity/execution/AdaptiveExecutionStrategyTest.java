@@ -0,0 +1,111 @@
+package com.edduarte.similarity.execution;
+
+import com.edduarte.similarity.Similarity;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class AdaptiveExecutionStrategyTest {
+
+    @Test
+    public void costModelTest() {
+        CostModel m = CostModel.thresholds(10, 100);
+        assertEquals(ExecutionMode.INLINE, m.select(9));
+        assertEquals(ExecutionMode.VIRTUAL, m.select(10));
+        assertEquals(ExecutionMode.VIRTUAL, m.select(99));
+        assertEquals(ExecutionMode.FORK_JOIN, m.select(100));
+    }
+
+
+    @Test
+    public void modeSelectionTest() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ExecutionStrategy s = ExecutionStrategy.adaptive()
+                    .withCostModel(CostModel.thresholds(10, 100))
+                    .withForkJoinPool(pool);
+
+            Thread caller = Thread.currentThread();
+            assertSame(caller, s.submit(Thread::currentThread, 1).get());
+            assertNotSame(caller, s.submit(Thread::currentThread, 50).get());
+
+            Thread fj = s.submit(Thread::currentThread, 1000).get();
+            assertTrue(fj instanceof ForkJoinWorkerThread);
+            assertSame(pool, ((ForkJoinWorkerThread) fj).getPool());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    @Test
+    public void backpressureTest() throws Exception {
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            ExecutionStrategy s = ExecutionStrategy.adaptive()
+                    .withCostModel(CostModel.thresholds(0, Long.MAX_VALUE))
+                    .withExecutor(exec)
+                    .withMaxQueueDepth(1);
+
+            // occupy the only slot, so the next task is run by the caller
+            CountDownLatch release = new CountDownLatch(1);
+            s.submit(() -> release.await(10, TimeUnit.SECONDS), 1);
+
+            Thread caller = Thread.currentThread();
+            assertSame(caller, s.submit(Thread::currentThread, 1).get());
+            release.countDown();
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+
+    @Test
+    public void immutableTest() {
+        AdaptiveExecutionStrategy defaults = (AdaptiveExecutionStrategy) ExecutionStrategy.defaults();
+        Executor before = defaults.executorFor(Long.MAX_VALUE);
+        AdaptiveExecutionStrategy copy = defaults
+                .withCostModel(cost -> ExecutionMode.INLINE)
+                .withMaxQueueDepth(1);
+
+        // the shared strategy is not reconfigured
+        assertNotSame(defaults, copy);
+        assertSame(before, defaults.executorFor(Long.MAX_VALUE));
+        assertNotSame(before, copy.executorFor(Long.MAX_VALUE));
+    }
+
+
+    @Test
+    public void sameResultsTest() {
+        String s1 = "is the of the 100-eyed giant in Greek mythology.";
+        String s2 = "Argus Panoptes is the name of the 100-eyed giant in Norse mythology.";
+
+        double inline = Similarity.minhash()
+                .withExecutionStrategy(ExecutionStrategy.inline())
+                .of(s1, s2);
+        double forkJoin = Similarity.minhash()
+                .withExecutionStrategy(ExecutionStrategy.adaptive()
+                        .withCostModel(cost -> ExecutionMode.FORK_JOIN))
+                .of(s1, s2);
+        double defaults = Similarity.minhash().of(s1, s2);
+
+        assertEquals(inline, forkJoin, 0);
+        assertEquals(inline, defaults, 0);
+    }
+}
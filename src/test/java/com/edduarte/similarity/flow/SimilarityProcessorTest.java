@@ -0,0 +1,194 @@
+package com.edduarte.similarity.flow;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.internal.JaccardStringSimilarity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class SimilarityProcessorTest {
+
+    @Test
+    public void orderedScoresTest() throws InterruptedException {
+        Similarity<String> jaccard = new JaccardStringSimilarity(
+                ExecutionStrategy.adaptive(), 2);
+        SimilarityProcessor<String> processor = new SimilarityProcessor<>(jaccard, 8);
+
+        List<ScoredPair<String>> results = new ArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        processor.subscribe(new Flow.Subscriber<ScoredPair<String>>() {
+            private Flow.Subscription s;
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                this.s = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(ScoredPair<String> item) {
+                results.add(item);
+                s.request(1);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                completed.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+
+        int count = 500;
+        RangePublisher publisher = new RangePublisher(count);
+        publisher.subscribe(processor);
+        assertTrue(completed.await(30, TimeUnit.SECONDS));
+
+        assertEquals(count, results.size());
+        for (int i = 0; i < count; i++) {
+            SimilarityPair<String> pair = results.get(i).getPair();
+            assertEquals("document " + i, pair.getFirst());
+            assertEquals(jaccard.calculate(pair.getFirst(), pair.getSecond()),
+                    results.get(i).getSimilarity(), 0);
+        }
+    }
+
+
+    @Test
+    public void boundedBufferTest() throws InterruptedException {
+        int capacity = 4;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Similarity<String> slow = new Similarity<String>() {
+            @Override
+            public double calculate(String t1, String t2) {
+                return 1;
+            }
+
+            @Override
+            public CompletableFuture<Double> calculateAsync(String t1, String t2) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                return CompletableFuture.supplyAsync(() -> 1.0, ForkJoinPool.commonPool());
+            }
+        };
+        SimilarityProcessor<String> processor = new SimilarityProcessor<>(slow, capacity);
+
+        RangePublisher publisher = new RangePublisher(1000);
+        publisher.subscribe(processor);
+
+        // nothing consumes the scores, so demand on upstream must stop once
+        // the buffer is full
+        CountDownLatch received = new CountDownLatch(10);
+        AtomicLong delivered = new AtomicLong();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        processor.subscribe(new Flow.Subscriber<ScoredPair<String>>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(ScoredPair<String> item) {
+                inFlight.decrementAndGet();
+                delivered.incrementAndGet();
+                received.countDown();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        Thread.sleep(200);
+        assertEquals(capacity, publisher.requested.get());
+        assertEquals(0, delivered.get());
+
+        subscription[0].request(10);
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(10, delivered.get());
+        assertEquals(10 + capacity, publisher.requested.get());
+        assertTrue(maxInFlight.get() <= capacity);
+        subscription[0].cancel();
+    }
+
+
+    /**
+     * Publishes pairs of documents on the requesting thread, honouring demand.
+     */
+    private static class RangePublisher implements Flow.Publisher<SimilarityPair<String>> {
+
+        private final int count;
+
+        private final AtomicLong requested = new AtomicLong();
+
+
+        private RangePublisher(int count) {
+            this.count = count;
+        }
+
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super SimilarityPair<String>> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private final AtomicLong demand = new AtomicLong();
+
+                private final AtomicInteger wip = new AtomicInteger();
+
+                private int next;
+
+                private volatile boolean cancelled;
+
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                    demand.addAndGet(n);
+                    if (wip.getAndIncrement() != 0) {
+                        return;
+                    }
+                    do {
+                        while (demand.get() > 0 && next < count && !cancelled) {
+                            demand.decrementAndGet();
+                            int i = next++;
+                            subscriber.onNext(new SimilarityPair<>("document " + i,
+                                    "document " + (i * 7 % 13)));
+                        }
+                        if (next == count && !cancelled) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                        }
+                    } while (wip.decrementAndGet() != 0);
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.hash;
+
+import com.edduarte.similarity.hash.HashProvider.HashMethod;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class Hash64Test {
+
+    @Test
+    public void referenceValuesTest() {
+        assertEquals(0xEF46DB3751D8E999L, XXHash64.hash64(new byte[0], 0));
+        assertEquals(0xD24EC4F1A98C6E5BL, XXHash64.hash64(bytes("a"), 0));
+        assertEquals(0x44BC2CF5AD770999L, XXHash64.hash64(bytes("abc"), 0));
+
+        assertEquals(0x0409638ee2bde459L, WyHash.hash64(new byte[0], 0));
+        assertEquals(0xa8412d091b5fe0a9L, WyHash.hash64(bytes("a"), 1));
+        assertEquals(0x32dd92e4b2915153L, WyHash.hash64(bytes("abc"), 2));
+        assertEquals(0x8619124089a3a16bL, WyHash.hash64(bytes("message digest"), 3));
+        assertEquals(0x7a43afb61d7f5f40L, WyHash.hash64(bytes("abcdefghijklmnopqrstuvwxyz"), 4));
+        assertEquals(0xc39cab13b115aad3L, WyHash.hash64(bytes("123456789012345678901234567890"
+                + "12345678901234567890123456789012345678901234567890"), 6));
+    }
+
+
+    @Test
+    public void streamingTest() {
+        Random random = new Random(3);
+        for (int length : new int[]{0, 1, 3, 4, 7, 8, 15, 16, 17, 31, 32, 33, 47, 48, 49, 63, 64, 65, 96, 97, 200, 1000}) {
+            byte[] bytes = new byte[length + 5];
+            random.nextBytes(bytes);
+            long seed = random.nextLong();
+
+            long xx = XXHash64.hash64(bytes, 5, length, seed);
+            long wy = WyHash.hash64(bytes, 5, length, seed);
+            for (int chunk : new int[]{1, 5, 16, 48, 100}) {
+                StreamingHash64 xxHash = XXHash64.newHash(seed);
+                StreamingHash64 wyHash = WyHash.newHash(seed);
+                for (int p = 0; p < length; p += chunk) {
+                    xxHash.update(bytes, 5 + p, Math.min(chunk, length - p));
+                    wyHash.update(bytes, 5 + p, Math.min(chunk, length - p));
+                }
+                assertEquals(length + "/" + chunk, xx, xxHash.getValue());
+                assertEquals(length + "/" + chunk, wy, wyHash.getValue());
+
+                xxHash.reset();
+                wyHash.reset();
+                assertEquals(xx, xxHash.update(bytes, 5, length).getValue());
+                assertEquals(wy, wyHash.update(bytes, 5, length).getValue());
+            }
+        }
+    }
+
+
+    @Test
+    public void primitiveAndCharSequenceTest() {
+        long value = 0x0123456789abcdefL;
+        byte[] bytes = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (value >>> (i << 3));
+        }
+        assertEquals(XXHash64.hash64(bytes, 7), XXHash64.hash64(value, 7));
+        assertEquals(WyHash.hash64(bytes, 7), WyHash.hash64(value, 7));
+
+        String s = "The Argus Panoptes, o gigante de cem olhos da mitologia grega ☃.";
+        byte[] utf16 = s.getBytes(StandardCharsets.UTF_16LE);
+        assertEquals(XXHash64.hash64(utf16, 0), XXHash64.hash64(s, 0, s.length(), 0));
+        assertEquals(WyHash.hash64(utf16, 0), WyHash.hash64(s, 0, s.length(), 0));
+
+        assertEquals(XXHash64.hash64(bytes, 0), HashMethod.XXHash64.getHash64Function().hash64(bytes, 0, 8));
+        assertEquals(WyHash.hash64(bytes, 0), HashMethod.WyHash.getHash64Function().hash64(bytes, 0, 8));
+    }
+
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
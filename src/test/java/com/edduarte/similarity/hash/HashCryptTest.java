@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.hash;
+
+import com.edduarte.similarity.hash.HashProvider.HashMethod;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class HashCryptTest {
+
+    private static final String[] METHODS = {"MD5", "SHA-1", "SHA-256", "SHA-512"};
+
+    private static final int[] RANGES = {1, 2, 7, 1000, 65536, 1 << 20, Integer.MAX_VALUE};
+
+
+    @Test
+    public void bitSetEquivalenceTest() throws Exception {
+        Random random = new Random(11);
+        for (String method : METHODS) {
+            for (int m : RANGES) {
+                for (int n = 0; n < 20; n++) {
+                    byte[] value = new byte[random.nextInt(40)];
+                    random.nextBytes(value);
+                    int k = 1 + random.nextInt(30);
+                    assertArrayEquals(method + " " + m,
+                            reference(value, m, k, method),
+                            HashProvider.hashCrypt(value, m, k, method));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void concurrentTest() throws Exception {
+        byte[] value = "concurrent".getBytes(StandardCharsets.UTF_8);
+        int[] expected = reference(value, 1000, 50, "SHA-256");
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(exec.submit(() -> {
+                    for (int n = 0; n < 500; n++) {
+                        assertArrayEquals(expected, HashMethod.SHA256.getHashFunction().hash(value, 1000, 50));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+
+    /**
+     * The original implementation, which slices a BitSet of every digest.
+     */
+    private static int[] reference(byte[] value, int m, int k, String method) throws Exception {
+        MessageDigest cryptHash = MessageDigest.getInstance(method);
+        int[] positions = new int[k];
+        int computedHashes = 0;
+        byte[] digest = new byte[0];
+        while (computedHashes < k) {
+            cryptHash.update(digest);
+            digest = cryptHash.digest(value);
+            BitSet hashed = BitSet.valueOf(digest);
+            int filterSize = 32 - Integer.numberOfLeadingZeros(m);
+            int hashBits = digest.length * 8;
+            for (int split = 0; split < hashBits / filterSize && computedHashes < k; split++) {
+                BitSet hashSlice = hashed.get(split * filterSize, (split + 1) * filterSize);
+                long[] longHash = hashSlice.toLongArray();
+                int intHash = longHash.length > 0 ? (int) longHash[0] : 0;
+                if (intHash < m) {
+                    positions[computedHashes] = intHash;
+                    computedHashes++;
+                }
+            }
+        }
+        return positions;
+    }
+}
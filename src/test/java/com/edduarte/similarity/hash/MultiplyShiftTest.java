@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.hash;
+
+import com.edduarte.similarity.hash.HashProvider.HashMethod;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class MultiplyShiftTest {
+
+    @Test
+    public void deterministicTest() {
+        byte[] value = "the quick brown fox".getBytes(StandardCharsets.UTF_8);
+
+        MultiplyShift family = new MultiplyShift(42);
+        int[] expected = family.hash(value, 1000, 10);
+
+        // growing the coefficients does not change the existing ones
+        MultiplyShift other = new MultiplyShift(42);
+        other.key(new byte[10_000], 0, 10_000);
+        other.hash(0, 0);
+        other.hash(5_000, 0);
+        int[] longer = other.hash(value, 1000, 20);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], longer[i]);
+        }
+
+        assertArrayEquals(HashMethod.MultiplyShift.getHashFunction().hash(value, 1000, 10),
+                HashProvider.hashMultiplyShift(value, 1000, 10));
+        assertNotEquals(family.key(value, 0, value.length),
+                new MultiplyShift(43).key(value, 0, value.length));
+
+        // trailing zeros change the key, as the length is hashed
+        assertNotEquals(family.key(new byte[3], 0, 3), family.key(new byte[4], 0, 4));
+    }
+
+
+    @Test
+    public void uniformityTest() {
+        Random random = new Random(7);
+        int m = 16;
+        int[] counts = new int[m];
+        int values = 16_000;
+        for (int n = 0; n < values; n++) {
+            byte[] value = new byte[1 + random.nextInt(12)];
+            random.nextBytes(value);
+            for (int p : HashProvider.hashMultiplyShift(value, m, 4)) {
+                assertTrue(p >= 0 && p < m);
+                counts[p]++;
+            }
+        }
+        double expected = values * 4.0 / m;
+        for (int count : counts) {
+            assertEquals(expected, count, expected * 0.1);
+        }
+    }
+}
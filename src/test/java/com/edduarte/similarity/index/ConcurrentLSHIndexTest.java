@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static com.edduarte.similarity.index.LSHIndexTest.mutate;
+import static com.edduarte.similarity.index.LSHIndexTest.randomSignature;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ConcurrentLSHIndexTest {
+
+    @Test
+    public void queryTest() {
+        Random random = new Random(23);
+        int[] query = randomSignature(random, 100);
+        LSHIndex expected = new LSHIndex(20, 5);
+        ConcurrentLSHIndex index = new ConcurrentLSHIndex(20, 5);
+        for (int i = 0; i < 2000; i++) {
+            long id = random.nextInt(300);
+            if (random.nextInt(5) == 0) {
+                assertEquals(expected.remove(id), index.remove(id));
+            } else {
+                int[] signature = mutate(random, query, random.nextInt(60));
+                expected.add(id, signature);
+                index.add(id, signature);
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        assertArrayEquals(expected.candidates(query), index.candidates(query));
+        assertArrayEquals(expected.query(query, 0.7), index.query(query, 0.7));
+        assertEquals(expected.topK(query, 20), index.topK(query, 20));
+        assertArrayEquals(expected.getSignature(7), index.getSignature(7));
+    }
+
+
+    @Test
+    public void contendedBucketTest() throws Exception {
+        // every document shares the same band keys
+        ConcurrentBandTable table = new ConcurrentBandTable();
+        long[] keys = {BandTable.key(0, 1), BandTable.key(1, 2)};
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long base = t * 10000L;
+                futures.add(pool.submit(() -> {
+                    for (long id = base; id < base + 1000; id++) {
+                        table.add(id, keys);
+                        if (id % 2 == 1) {
+                            table.remove(id - 1, keys);
+                        }
+                        // a reader never sees an id twice in a bucket
+                        long[] seen = table.candidates(new long[]{keys[0]});
+                        assertEquals(seen.length, LongStream.of(seen).distinct().count());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        long[] expected = LongStream.range(0, 4)
+                .flatMap(t -> LongStream.range(t * 10000, t * 10000 + 1000))
+                .filter(id -> id % 2 == 1)
+                .toArray();
+        assertArrayEquals(expected, table.candidates(keys));
+        assertEquals(2, table.bucketCount());
+
+        for (long id : expected) {
+            table.remove(id, keys);
+        }
+        assertEquals(0, table.bucketCount());
+    }
+
+
+    @Test
+    public void concurrentTest() throws Exception {
+        ConcurrentLSHIndex index = new ConcurrentLSHIndex(20, 5);
+        int[] query = randomSignature(new Random(2), 100);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                long base = t * 10000L;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(base);
+                    for (long id = base; id < base + 1000; id++) {
+                        index.add(id, mutate(random, query, 40));
+                        index.add(id, mutate(random, query, 40));
+                        if (id % 4 == 0) {
+                            index.remove(id);
+                        }
+                    }
+                    return null;
+                }));
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        List<Neighbor> top = index.topK(query, 5);
+                        assertTrue(top.size() <= 5);
+                        index.query(query, 0.8);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(1500, index.size());
+        for (long id = 0; id < 20000; id++) {
+            int[] signature = index.getSignature(id);
+            if (signature != null) {
+                long[] matches = index.query(signature, 1.0);
+                assertTrue(Arrays.binarySearch(matches, id) >= 0);
+            }
+        }
+        assertFalse(index.contains(10000));
+        assertTrue(index.contains(10001));
+    }
+}
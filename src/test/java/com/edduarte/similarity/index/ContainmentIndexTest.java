@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.converter.Set2SignatureConverter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ContainmentIndexTest {
+
+    @Test
+    public void containmentTest() {
+        Random random = new Random(23);
+        int universe = 1_000_000;
+        ContainmentIndex index = new ContainmentIndex(
+                new Set2SignatureConverter(universe, 256), 8);
+
+        // stored sets of very different sizes
+        List<Set<Integer>> sets = new ArrayList<>();
+        for (int id = 0; id < 200; id++) {
+            int size = 50 << random.nextInt(5);
+            Set<Integer> set = new HashSet<>();
+            while (set.size() < size) {
+                set.add(random.nextInt(universe));
+            }
+            sets.add(set);
+            index.add(id, set);
+        }
+        assertEquals(200, index.size());
+
+        int expectedTotal = 0;
+        int found = 0;
+        long candidateTotal = 0;
+        for (int n = 0; n < 40; n++) {
+            // a small query, mostly contained in a (possibly much larger) set
+            List<Integer> source = new ArrayList<>(sets.get(random.nextInt(sets.size())));
+            Set<Integer> query = new HashSet<>();
+            while (query.size() < 48) {
+                query.add(source.get(random.nextInt(source.size())));
+            }
+            while (query.size() < 50) {
+                query.add(random.nextInt(universe));
+            }
+
+            long[] candidates = index.query(query, 0.6);
+            candidateTotal += candidates.length;
+            for (int id = 0; id < sets.size(); id++) {
+                int common = 0;
+                for (Integer x : query) {
+                    if (sets.get(id).contains(x)) {
+                        common++;
+                    }
+                }
+                if (common >= 0.6 * query.size()) {
+                    expectedTotal++;
+                    if (Arrays.binarySearch(candidates, id) >= 0) {
+                        found++;
+                    }
+                }
+            }
+        }
+        assertTrue(expectedTotal >= 40);
+        // high recall, while returning a small fraction of the index
+        assertTrue(found + "/" + expectedTotal, found >= 0.8 * expectedTotal);
+        assertTrue("" + candidateTotal, candidateTotal < 40 * 200 / 4);
+    }
+
+
+    @Test
+    public void addAfterBuildTest() {
+        ContainmentIndex index = new ContainmentIndex(new Set2SignatureConverter(1000, 64), 2);
+        index.add(1, Arrays.asList(1, 2, 3, 4));
+        index.add(2, Arrays.asList(5, 6, 7, 8, 9, 10));
+        assertArrayEquals(new long[]{1}, index.query(Arrays.asList(1, 2, 3, 4), 1.0));
+
+        // larger than every partition
+        List<Integer> large = new ArrayList<>();
+        for (int i = 100; i < 200; i++) {
+            large.add(i);
+        }
+        index.add(3, large);
+        assertArrayEquals(new long[]{3}, index.query(large.subList(0, 50), 1.0));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noRowsTest() {
+        new ContainmentIndex(new Set2SignatureConverter(1000, 64), 2).withMaxRows(0);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noPartitionsTest() {
+        new ContainmentIndex(new Set2SignatureConverter(1000, 64), 0);
+    }
+}
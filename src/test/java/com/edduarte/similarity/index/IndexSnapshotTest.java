@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static com.edduarte.similarity.index.LSHIndexTest.mutate;
+import static com.edduarte.similarity.index.LSHIndexTest.randomSignature;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class IndexSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void restoreTest() throws IOException {
+        Random random = new Random(11);
+        LSHIndex index = new LSHIndex(20, 5);
+        int[][] queries = new int[20][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomSignature(random, 100);
+        }
+        for (long id = 0; id < 1000; id++) {
+            int[] query = queries[(int) (id % queries.length)];
+            index.add(id * 7, mutate(random, query, random.nextInt(60)));
+        }
+        index.remove(7);
+
+        Path file = folder.getRoot().toPath().resolve("index.snapshot");
+        IndexSnapshot.write(index, "Murmur3x64", file);
+        IndexSnapshot snapshot = IndexSnapshot.open(file);
+        assertEquals("Murmur3x64", snapshot.getHashFamily());
+        assertEquals(20, snapshot.getB());
+        assertEquals(5, snapshot.getR());
+        assertEquals(100, snapshot.getSignatureSize());
+        assertEquals(999, snapshot.size());
+
+        LSHIndex restored = snapshot.restore();
+        assertSameAnswers(index, restored, queries);
+        assertFalse(restored.contains(7));
+        assertArrayEquals(index.getSignature(14), restored.getSignature(14));
+
+        // changes after the restore are kept over the mapped state
+        for (LSHIndex i : new LSHIndex[]{index, restored}) {
+            assertTrue(i.remove(0));
+            i.add(14, queries[3]);
+            i.add(7, queries[4]);
+            i.add(100000, queries[5]);
+        }
+        assertSameAnswers(index, restored, queries);
+        assertNull(restored.getSignature(0));
+        assertArrayEquals(queries[3], restored.getSignature(14));
+
+        // a restored index can be written to a new snapshot
+        IndexSnapshot.write(restored, "Murmur3x64", file);
+        assertSameAnswers(index, IndexSnapshot.open(file).restore(), queries);
+    }
+
+
+    @Test
+    public void emptyTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("empty.snapshot");
+        IndexSnapshot.write(new LSHIndex(10, 2), "XXHash64", file);
+        LSHIndex restored = IndexSnapshot.open(file).restore();
+        assertEquals(0, restored.size());
+        restored.add(1, new int[20]);
+        assertArrayEquals(new long[]{1}, restored.candidates(new int[20]));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFileTest() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[1024]);
+        IndexSnapshot.open(file);
+    }
+
+
+    private static void assertSameAnswers(LSHIndex expected, LSHIndex actual, int[][] queries) {
+        assertEquals(expected.size(), actual.size());
+        for (int[] query : queries) {
+            assertArrayEquals(expected.candidates(query), actual.candidates(query));
+            assertArrayEquals(expected.query(query, 0.6), actual.query(query, 0.6));
+            assertEquals(expected.topK(query, 10), actual.topK(query, 10));
+        }
+    }
+}
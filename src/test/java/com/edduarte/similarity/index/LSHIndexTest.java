@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class LSHIndexTest {
+
+    static int[] randomSignature(Random random, int size) {
+        int[] signature = new int[size];
+        for (int i = 0; i < size; i++) {
+            signature[i] = random.nextInt();
+        }
+        return signature;
+    }
+
+
+    static int[] mutate(Random random, int[] signature, int slots) {
+        int[] copy = signature.clone();
+        for (int i = 0; i < slots; i++) {
+            copy[random.nextInt(copy.length)] = random.nextInt();
+        }
+        return copy;
+    }
+
+
+    @Test
+    public void queryTest() {
+        Random random = new Random(42);
+        LSHIndex index = new LSHIndex(20, 5);
+        int[] a = randomSignature(random, 100);
+        int[] b = mutate(random, a, 5);
+        index.add(1, a);
+        index.add(2, b);
+        for (long id = 3; id < 100; id++) {
+            index.add(id, randomSignature(random, 100));
+        }
+        assertEquals(99, index.size());
+
+        assertArrayEquals(new long[]{1, 2}, index.candidates(a));
+        assertArrayEquals(new long[]{1, 2}, index.query(a, 0.9));
+        assertArrayEquals(new long[]{1}, index.query(a, 1.0));
+
+        assertTrue(index.remove(2));
+        assertFalse(index.remove(2));
+        assertNull(index.getSignature(2));
+        assertArrayEquals(new long[]{1}, index.candidates(a));
+
+        // replacing a signature removes the old band keys
+        index.add(1, b);
+        assertArrayEquals(new long[]{1}, index.candidates(b));
+        assertEquals(0, index.candidates(randomSignature(random, 100)).length);
+    }
+
+
+    @Test
+    public void topKTest() {
+        Random random = new Random(7);
+        LSHIndex index = new LSHIndex(20, 5);
+        int[] query = randomSignature(random, 100);
+        for (long id = 0; id < 300; id++) {
+            // neighbors at every distance from the query
+            index.add(id, mutate(random, query, (int) (id % 60)));
+        }
+
+        List<Neighbor> all = new ArrayList<>();
+        for (long id : index.candidates(query)) {
+            all.add(new Neighbor(id, signatureIndex(index.getSignature(id), query)));
+        }
+        all.sort(Neighbor.BY_SIMILARITY);
+
+        for (int k : new int[]{1, 5, 30, 1000}) {
+            assertEquals(all.subList(0, Math.min(k, all.size())), index.topK(query, k));
+        }
+        assertTrue(index.topK(query, 0).isEmpty());
+
+        // re-ranking by an exact similarity that reverses the order of ids
+        List<Neighbor> reranked = index.topK(query, 3, 10, id -> id / 1000.0);
+        List<Neighbor> best = index.topK(query, 10);
+        best.sort((n1, n2) -> Long.compare(n2.getId(), n1.getId()));
+        assertEquals(3, reranked.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(best.get(i).getId(), reranked.get(i).getId());
+            assertEquals(best.get(i).getId() / 1000.0, reranked.get(i).getSimilarity(), 0);
+        }
+        assertTrue(index.topK(query, 0, 10, id -> 1).isEmpty());
+        assertTrue(index.topK(query, -1, 10, id -> 1).isEmpty());
+    }
+
+
+    private static double signatureIndex(int[] signature1, int[] signature2) {
+        int equal = 0;
+        for (int i = 0; i < signature1.length; i++) {
+            if (signature1[i] == signature2[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / signature1.length;
+    }
+}
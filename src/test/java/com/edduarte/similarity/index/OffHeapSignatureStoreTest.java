@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.Similarity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class OffHeapSignatureStoreTest {
+
+    @Test
+    public void storeTest() {
+        Random random = new Random(5);
+        // small chunks, so that signatures are spread across several buffers
+        OffHeapSignatureStore store = new OffHeapSignatureStore(64, 10);
+        List<int[]> expected = new ArrayList<>();
+        for (int i = 0; i < 35; i++) {
+            int[] signature = LSHIndexTest.randomSignature(random, 64);
+            expected.add(signature);
+            assertEquals(i, store.append(signature));
+        }
+        assertEquals(35, store.size());
+        assertEquals(4L * 10 * 64 * 4, store.getAllocatedBytes());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), store.get(i));
+            assertEquals(expected.get(i)[7], store.get(i, 7));
+        }
+
+        int[] near = LSHIndexTest.mutate(random, expected.get(12), 16);
+        store.set(33, near);
+        assertArrayEquals(near, store.get(33));
+        assertEquals(Similarity.signatureIndex(expected.get(12), near),
+                store.signatureIndex(12, 33), 0);
+        assertEquals(Similarity.signatureIndex(expected.get(3), near),
+                store.signatureIndex(3, near), 0);
+    }
+
+
+    @Test
+    public void growthTest() throws Exception {
+        // a few signatures do not reserve a whole chunk
+        OffHeapSignatureStore small = new OffHeapSignatureStore(64);
+        small.append(new int[64]);
+        assertTrue(small.getAllocatedBytes() <= 64 << 10);
+
+        // the first buffer doubles up to a chunk, while a reader checks
+        // every slot appended so far
+        Random random = new Random(7);
+        OffHeapSignatureStore store = new OffHeapSignatureStore(64, 1000);
+        int[][] expected = new int[2500][];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = LSHIndexTest.randomSignature(random, 64);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reads = reader.submit(() -> {
+                while (!done.get()) {
+                    int size = store.size();
+                    for (int slot = 0; slot < size; slot++) {
+                        assertArrayEquals(expected[slot], store.get(slot));
+                    }
+                }
+            });
+            for (int[] signature : expected) {
+                store.append(signature);
+            }
+            done.set(true);
+            reads.get();
+        } finally {
+            reader.shutdown();
+        }
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], store.get(i));
+        }
+        assertEquals(3000L * 64 * 4, store.getAllocatedBytes());
+    }
+
+
+    @Test
+    public void indexTest() {
+        Random random = new Random(9);
+        LSHIndex index = new LSHIndex(16, 4, new HashBandTable(),
+                new OffHeapSignatureStore(64, 8));
+        int[] a = LSHIndexTest.randomSignature(random, 64);
+        int[] b = LSHIndexTest.mutate(random, a, 3);
+        index.add(1, a);
+        index.add(2, b);
+        for (long id = 3; id < 30; id++) {
+            index.add(id, LSHIndexTest.randomSignature(random, 64));
+        }
+        assertArrayEquals(new long[]{1, 2}, index.query(a, 0.9));
+
+        // freed slots are reused
+        index.remove(1);
+        index.add(100, a);
+        assertArrayEquals(a, index.getSignature(100));
+        assertArrayEquals(new long[]{2, 100}, index.query(a, 0.9));
+    }
+}
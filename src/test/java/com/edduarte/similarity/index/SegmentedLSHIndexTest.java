@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.edduarte.similarity.index.LSHIndexTest.mutate;
+import static com.edduarte.similarity.index.LSHIndexTest.randomSignature;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class SegmentedLSHIndexTest {
+
+    @Test
+    public void churnTest() throws InterruptedException {
+        Random random = new Random(17);
+        int[][] queries = new int[10][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomSignature(random, 100);
+        }
+        LSHIndex expected = new LSHIndex(20, 5);
+        SegmentedLSHIndex index = new SegmentedLSHIndex(20, 5)
+                .withSegmentSize(50)
+                .withMaxSegments(3)
+                .withExecutionStrategy(ExecutionStrategy.inline());
+
+        for (int round = 0; round < 20; round++) {
+            for (int op = 0; op < 100; op++) {
+                long id = random.nextInt(400);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(id), index.remove(id));
+                } else {
+                    int[] query = queries[random.nextInt(queries.length)];
+                    int[] signature = mutate(random, query, random.nextInt(60));
+                    expected.add(id, signature);
+                    index.add(id, signature);
+                }
+            }
+            assertSameAnswers(expected, index, queries);
+            assertTrue(index.segmentCount() <= 3);
+        }
+
+        index.flush();
+        index.compact();
+        assertEquals(1, index.segmentCount());
+        assertSameAnswers(expected, index, queries);
+        for (long id = 0; id < 400; id++) {
+            assertEquals(expected.contains(id), index.contains(id));
+            assertArrayEquals(expected.getSignature(id), index.getSignature(id));
+        }
+        assertFalse(index.remove(1000));
+    }
+
+
+    @Test
+    public void pendingSegmentTest() {
+        Random random = new Random(19);
+        int[][] queries = new int[5][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomSignature(random, 100);
+        }
+        // freezes and merges run only when the test says so
+        List<Runnable> deferred = new ArrayList<>();
+        LSHIndex expected = new LSHIndex(20, 5);
+        SegmentedLSHIndex index = new SegmentedLSHIndex(20, 5)
+                .withSegmentSize(40)
+                .withExecutionStrategy(cost -> deferred::add);
+
+        for (int round = 0; round < 3; round++) {
+            for (int op = 0; op < 150; op++) {
+                long id = random.nextInt(200);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(id), index.remove(id));
+                } else {
+                    int[] signature = mutate(random, queries[random.nextInt(queries.length)],
+                            random.nextInt(60));
+                    expected.add(id, signature);
+                    index.add(id, signature);
+                }
+            }
+            // full segments are still queried while they are being frozen
+            assertFalse(deferred.isEmpty());
+            assertSameAnswers(expected, index, queries);
+            for (long id = 0; id < 200; id++) {
+                assertArrayEquals(expected.getSignature(id), index.getSignature(id));
+            }
+
+            while (!deferred.isEmpty()) {
+                deferred.remove(0).run();
+            }
+            assertSameAnswers(expected, index, queries);
+        }
+    }
+
+
+    @Test
+    public void concurrentTest() throws Exception {
+        SegmentedLSHIndex index = new SegmentedLSHIndex(20, 5)
+                .withSegmentSize(100)
+                .withMaxSegments(2);
+        int[] query = randomSignature(new Random(1), 100);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                long base = t * 10000L;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(base);
+                    for (long id = base; id < base + 1000; id++) {
+                        index.add(id, mutate(random, query, 10));
+                        if (id % 3 == 0) {
+                            index.remove(id - 1);
+                        }
+                    }
+                    return null;
+                }));
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        index.topK(query, 10);
+                        index.query(query, 0.8);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        index.compact();
+        // a third of the ids were removed by the writers
+        assertEquals(2000 - 2 * 333, index.size());
+        assertEquals(index.size(), index.candidates(query).length);
+    }
+
+
+    private static void assertSameAnswers(LSHIndex expected, SegmentedLSHIndex actual,
+                                          int[][] queries) {
+        assertEquals(expected.size(), actual.size());
+        for (int[] query : queries) {
+            assertArrayEquals(expected.candidates(query), actual.candidates(query));
+            assertArrayEquals(expected.query(query, 0.6), actual.query(query, 0.6));
+            assertEquals(expected.topK(query, 10), actual.topK(query, 10));
+        }
+    }
+
+
+    @Test
+    public void sizeLimitTest() {
+        // 22M documents with signatures of 100 values overflow an int array
+        assertEquals(21474836, FrozenSegment.maxSize(100, 25));
+        try {
+            FrozenSegment.checkSize(22_000_000L, 100, 25);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new SegmentedLSHIndex(25, 4).withSegmentSize(22_000_000);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
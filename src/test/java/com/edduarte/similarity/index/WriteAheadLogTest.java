@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.edduarte.similarity.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.edduarte.similarity.index.LSHIndexTest.randomSignature;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class WriteAheadLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void replayTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("index.log");
+        Random random = new Random(3);
+        int[][] signatures = new int[50][];
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            for (int id = 0; id < signatures.length; id++) {
+                signatures[id] = randomSignature(random, 40);
+                log.insert(id, signatures[id]);
+            }
+            log.delete(10);
+            signatures[20] = randomSignature(random, 40);
+            log.insert(20, signatures[20]);
+        }
+
+        LSHIndex index = new LSHIndex(10, 4);
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertEquals(52, log.replay(index));
+        }
+        assertEquals(49, index.size());
+        assertNull(index.getSignature(10));
+        assertArrayEquals(signatures[20], index.getSignature(20));
+        assertArrayEquals(new long[]{30}, index.query(signatures[30], 1.0));
+    }
+
+
+    @Test
+    public void tornRecordTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("index.log");
+        Random random = new Random(5);
+        long complete;
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.insert(1, randomSignature(random, 40));
+            log.insert(2, randomSignature(random, 40));
+            complete = log.length();
+            log.insert(3, randomSignature(random, 40));
+        }
+        // a crash in the middle of the last record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(complete + 30);
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertEquals(complete, log.length());
+            log.insert(4, randomSignature(random, 40));
+        }
+        // a corrupted record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), complete + 20);
+        }
+
+        LSHIndex index = new LSHIndex(10, 4);
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertEquals(2, log.replay(index));
+        }
+        assertEquals(2, index.size());
+        assertFalse(index.contains(4));
+    }
+
+
+    @Test
+    public void unclosedTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("index.log");
+        Random random = new Random(7);
+        int[][] signatures = new int[20][];
+        // records that are not synced yet, as if the process was killed
+        WriteAheadLog unclosed = new WriteAheadLog(file)
+                .withSyncBatch(1000, 1, TimeUnit.HOURS);
+        for (int id = 0; id < signatures.length; id++) {
+            signatures[id] = randomSignature(random, 40);
+            unclosed.insert(id, signatures[id]);
+        }
+        unclosed.delete(5);
+
+        LSHIndex index = new LSHIndex(10, 4);
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertEquals(21, log.replay(index));
+        } finally {
+            unclosed.close();
+        }
+        assertEquals(19, index.size());
+        assertNull(index.getSignature(5));
+        assertArrayEquals(signatures[12], index.getSignature(12));
+    }
+
+
+    @Test
+    public void groupCommitTest() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("index.log");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(thread);
+                    for (int i = 0; i < 100; i++) {
+                        log.insert(thread * 1000 + i, randomSignature(random, 40));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        LSHIndex index = new LSHIndex(10, 4);
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertEquals(400, log.replay(index));
+        }
+        assertEquals(400, index.size());
+    }
+
+
+    @Test
+    public void snapshotTest() throws IOException {
+        Path logFile = folder.getRoot().toPath().resolve("index.log");
+        Path snapshotFile = folder.getRoot().toPath().resolve("index.snapshot");
+        Random random = new Random(9);
+        LSHIndex index = new LSHIndex(10, 4);
+        try (WriteAheadLog log = new WriteAheadLog(logFile)
+                .withSyncBatch(16, 1, TimeUnit.MINUTES)) {
+            for (int id = 0; id < 100; id++) {
+                int[] signature = randomSignature(random, 40);
+                log.insert(id, signature);
+                index.add(id, signature);
+            }
+            log.sync();
+            IndexSnapshot.write(index, "Murmur3x64", snapshotFile);
+            log.reset();
+
+            for (int id = 0; id < 100; id += 3) {
+                log.delete(id);
+                index.remove(id);
+            }
+            int[] signature = randomSignature(random, 40);
+            log.insert(1000, signature);
+            index.add(1000, signature);
+        }
+
+        LSHIndex restored = IndexSnapshot.open(snapshotFile).restore();
+        try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+            assertEquals(35, log.replay(restored));
+        }
+        assertEquals(index.size(), restored.size());
+        for (long id = 0; id <= 1000; id++) {
+            assertArrayEquals(index.getSignature(id), restored.getSignature(id));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.index.shard;
+
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.index.BandTable;
+import com.edduarte.similarity.index.HashBandTable;
+import com.edduarte.similarity.index.LSHIndex;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ShardedBandTableTest {
+
+    @Test
+    public void inProcessTest() {
+        List<BandTable> shards = Arrays.asList(
+                new HashBandTable(), new HashBandTable(), new HashBandTable());
+        assertSameAsSingleTable(new ShardedBandTable(shards));
+
+        // every shard got a share of the keys
+        for (BandTable shard : shards) {
+            assertTrue(((HashBandTable) shard).bucketCount() > 0);
+        }
+    }
+
+
+    @Test
+    public void socketTest() throws Exception {
+        List<BandTableServer> servers = new ArrayList<>();
+        List<BandTable> clients = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (int i = 0; i < 3; i++) {
+                BandTableServer server = new BandTableServer(new HashBandTable(), 0);
+                servers.add(server);
+                clients.add(new SocketBandTable("localhost", server.getPort()));
+            }
+            try (ShardedBandTable table = new ShardedBandTable(clients,
+                    ExecutionStrategy.of(pool))) {
+                assertSameAsSingleTable(table);
+            }
+        } finally {
+            pool.shutdown();
+            for (BandTableServer server : servers) {
+                server.close();
+            }
+        }
+    }
+
+
+    @Test
+    public void oversizedFrameTest() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeInt(Integer.MAX_VALUE);
+        try {
+            Protocol.readLongs(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())), Protocol.MAX_KEYS);
+            fail();
+        } catch (IOException ex) {
+            // rejected before allocating the array
+        }
+
+        try (BandTableServer server = new BandTableServer(new HashBandTable(), 0)) {
+            assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+            try (Socket socket = new Socket(server.getAddress().getAddress(), server.getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(Protocol.ADD);
+                out.writeLong(1);
+                out.writeInt(Integer.MAX_VALUE);
+                out.flush();
+                // the server drops the connection instead of running out of
+                // memory
+                assertEquals(-1, socket.getInputStream().read());
+            }
+
+            // and keeps serving other clients
+            try (SocketBandTable client = new SocketBandTable("localhost", server.getPort())) {
+                client.add(1, new long[]{5});
+                assertArrayEquals(new long[]{1}, client.candidates(new long[]{5}));
+            }
+        }
+    }
+
+
+    private static void assertSameAsSingleTable(ShardedBandTable table) {
+        Random random = new Random(7);
+        LSHIndex sharded = new LSHIndex(10, 5, table);
+        LSHIndex single = new LSHIndex(10, 5);
+        List<int[]> signatures = new ArrayList<>();
+        for (long id = 0; id < 200; id++) {
+            int[] signature = new int[50];
+            for (int i = 0; i < signature.length; i++) {
+                // few distinct values, so that many documents collide
+                signature[i] = random.nextInt(3);
+            }
+            signatures.add(signature);
+            sharded.add(id, signature);
+            single.add(id, signature);
+        }
+        for (long id = 0; id < 200; id += 3) {
+            sharded.remove(id);
+            single.remove(id);
+        }
+        for (int[] signature : signatures) {
+            assertArrayEquals(single.candidates(signature),
+                    sharded.candidates(signature));
+        }
+    }
+}
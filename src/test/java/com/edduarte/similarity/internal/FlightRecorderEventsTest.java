@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.internal;
+
+import com.edduarte.similarity.Similarity;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class FlightRecorderEventsTest {
+
+    private static final String s1 = "is the of the 100-eyed giant in Greek mythology.";
+
+
+    @Test
+    public void lshEventsTest() throws Exception {
+        Path file = Files.createTempFile("similarity", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.edduarte.similarity.Stage").withoutThreshold();
+            recording.enable("com.edduarte.similarity.Calculation").withoutThreshold();
+            recording.start();
+
+            Similarity.lsh().withShingleLength(3).of(s1, s1);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        List<RecordedEvent> stages = events.stream()
+                .filter(e -> e.getEventType().getName()
+                        .equals("com.edduarte.similarity.Stage"))
+                .collect(Collectors.toList());
+        List<RecordedEvent> calculations = events.stream()
+                .filter(e -> e.getEventType().getName()
+                        .equals("com.edduarte.similarity.Calculation"))
+                .collect(Collectors.toList());
+
+        assertEquals(2, stages.stream()
+                .filter(e -> e.getString("stage").equals("SIGNING")).count());
+        assertEquals(2, stages.stream()
+                .filter(e -> e.getString("stage").equals("BANDING")).count());
+        assertFalse(stages.stream()
+                .filter(e -> e.getString("stage").equals("SHINGLING"))
+                .anyMatch(e -> e.getLong("outputSize") == 0));
+
+        assertEquals(1, calculations.size());
+        RecordedEvent calculation = calculations.get(0);
+        assertEquals("LSHStringSimilarity", calculation.getString("engine"));
+        assertEquals(s1.length(), calculation.getInt("inputSize1"));
+        assertTrue(calculation.getInt("signatureSize") > 0);
+        assertTrue(calculation.getBoolean("candidate"));
+        assertEquals(1.0, calculation.getDouble("similarity"), 0);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.internal;
+
+import com.edduarte.similarity.converter.TokenShingler;
+import com.edduarte.similarity.execution.ExecutionStrategy;
+import com.edduarte.similarity.hash.HashProvider.HashMethod;
+import com.edduarte.similarity.metrics.SimilarityMetrics;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class LazyBandsTest {
+
+    private static final String WORDS = "the argus panoptes is a giant with a hundred eyes"
+            + " in greek mythology who was a servant of hera and guarded io";
+
+
+    @Test
+    public void sameDecisionTest() {
+        ExecutionStrategy inline = ExecutionStrategy.inline();
+        LSHStringSimilarity eager = new LSHStringSimilarity(inline, 20, 5, 0.5,
+                HashMethod.Murmur3x64, 3, SimilarityMetrics.NOOP, false);
+        LSHStringSimilarity lazy = new LSHStringSimilarity(inline, 20, 5, 0.5,
+                HashMethod.Murmur3x64, 3, SimilarityMetrics.NOOP, true);
+        LSHTokenSimilarity eagerTokens = new LSHTokenSimilarity(inline, 20, 5, 0.5,
+                new TokenShingler(2), SimilarityMetrics.NOOP, false);
+        LSHTokenSimilarity lazyTokens = new LSHTokenSimilarity(inline, 20, 5, 0.5,
+                new TokenShingler(2), SimilarityMetrics.NOOP, true);
+
+        Random random = new Random(9);
+        int candidates = 0;
+        for (int n = 0; n < 200; n++) {
+            String s1 = mutate(random, WORDS, random.nextInt(40));
+            String s2 = mutate(random, WORDS, random.nextInt(40));
+            boolean candidate = eager.isCandidatePair(s1, s2);
+            assertEquals(candidate, lazy.isCandidatePair(s1, s2));
+            assertEquals(eager.calculate(s1, s2), lazy.calculate(s1, s2), 0);
+            assertEquals(eager.calculate(s1, s2), lazy.calculateAsync(s1, s2).join(), 0);
+            assertEquals(eagerTokens.calculate(s1, s2), lazyTokens.calculate(s1, s2), 0);
+            if (candidate) {
+                candidates++;
+            }
+        }
+        // both outcomes were exercised
+        assertTrue(candidates > 0 && candidates < 200);
+    }
+
+
+    @Test
+    public void earlyExitTest() {
+        long[] evaluations = new long[2];
+        for (int i = 0; i < 2; i++) {
+            int slot = i;
+            SimilarityMetrics metrics = new SimilarityMetrics() {
+                @Override
+                public void onSigning(long nanos, int elements, long hashEvaluations) {
+                    evaluations[slot] += hashEvaluations;
+                }
+            };
+            new LSHStringSimilarity(ExecutionStrategy.inline(), 20, 5, 0.5,
+                    HashMethod.Murmur3x64, 3, metrics, i == 1).isCandidatePair(WORDS, WORDS);
+        }
+        // identical strings match on the first of the 20 bands
+        assertEquals(evaluations[0] / 20, evaluations[1]);
+    }
+
+
+    private static String mutate(Random random, String s, int edits) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < edits; i++) {
+            chars[random.nextInt(chars.length)] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.join;
+
+import com.edduarte.similarity.Similarity;
+import com.edduarte.similarity.converter.Signature2BandsConverter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class ExternalBandJoinTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void spillingJoinTest() throws Exception {
+        Random random = new Random(11);
+        List<int[]> signatures = new ArrayList<>();
+        for (int id = 0; id < 300; id++) {
+            int[] signature = new int[50];
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = random.nextInt(4);
+            }
+            signatures.add(signature);
+        }
+
+        // expected pairs, from the bands of every pair of documents
+        Signature2BandsConverter bandp = new Signature2BandsConverter(10, 5);
+        TreeSet<String> expected = new TreeSet<>();
+        for (int i = 0; i < signatures.size(); i++) {
+            for (int j = i + 1; j < signatures.size(); j++) {
+                if (Similarity.isCandidatePair(
+                        bandp.compute(signatures.get(i)),
+                        bandp.compute(signatures.get(j)))) {
+                    expected.add(i + "-" + j);
+                }
+            }
+        }
+        assertTrue(expected.size() > 0);
+
+        // a small budget forces several runs and merge passes
+        List<String> actual = new ArrayList<>();
+        try (ExternalBandJoin join = new ExternalBandJoin(10, 5,
+                folder.getRoot().toPath(), 16 * 1024)) {
+            for (int id = 0; id < signatures.size(); id++) {
+                join.add(id, signatures.get(id));
+            }
+            long count = join.candidates((id1, id2) -> actual.add(id1 + "-" + id2));
+            assertEquals(expected.size(), count);
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, new TreeSet<>(actual));
+
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+
+    @Test
+    public void verifiedJoinTest() throws Exception {
+        Random random = new Random(3);
+        List<int[]> signatures = new ArrayList<>();
+        int[] base = new int[100];
+        for (int i = 0; i < base.length; i++) {
+            base[i] = random.nextInt();
+        }
+        signatures.add(base);
+        int[] near = base.clone();
+        near[0] = 1;
+        signatures.add(near);
+        for (int id = 2; id < 50; id++) {
+            int[] signature = new int[100];
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = random.nextInt();
+            }
+            signatures.add(signature);
+        }
+
+        List<String> actual = new ArrayList<>();
+        try (ExternalBandJoin join = new ExternalBandJoin(20, 5,
+                folder.getRoot().toPath(), 1024 * 1024)) {
+            for (int id = 0; id < signatures.size(); id++) {
+                join.add(id, signatures.get(id));
+            }
+            join.join(ExternalBandJoin.signatures(id -> signatures.get((int) id)),
+                    0.9, (id1, id2, similarity) ->
+                            actual.add(id1 + "-" + id2 + ":" + similarity));
+        }
+        assertEquals(1, actual.size());
+        assertEquals("0-1:0.99", actual.get(0));
+    }
+}
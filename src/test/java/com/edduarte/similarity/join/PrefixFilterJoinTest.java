@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Eduardo Duarte
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.edduarte.similarity.join;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class PrefixFilterJoinTest {
+
+    @Test
+    public void bruteForceTest() {
+        Random random = new Random(17);
+        List<long[]> sets = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            if (n > 0 && random.nextInt(3) == 0) {
+                // a near-duplicate of an earlier set
+                long[] base = sets.get(random.nextInt(sets.size()));
+                long[] set = base.clone();
+                for (int e = random.nextInt(4); e > 0 && set.length > 0; e--) {
+                    set[random.nextInt(set.length)] = random.nextInt(500);
+                }
+                sets.add(set);
+            } else {
+                long[] set = new long[1 + random.nextInt(30)];
+                for (int i = 0; i < set.length; i++) {
+                    // skewed frequencies, with a few very common elements
+                    set[i] = random.nextBoolean() ? random.nextInt(10) : random.nextInt(500);
+                }
+                sets.add(set);
+            }
+        }
+
+        for (double threshold : new double[]{0.3, 0.5, 0.8, 0.9, 1.0}) {
+            TreeMap<String, Double> expected = new TreeMap<>();
+            for (int i = 0; i < sets.size(); i++) {
+                for (int j = i + 1; j < sets.size(); j++) {
+                    double similarity = jaccard(sets.get(i), sets.get(j));
+                    if (similarity >= threshold) {
+                        expected.put(i + "-" + j, similarity);
+                    }
+                }
+            }
+
+            for (int depth : new int[]{0, 2, 4}) {
+                PrefixFilterJoin join = new PrefixFilterJoin(threshold)
+                        .withSuffixFilterDepth(depth);
+                for (int i = 0; i < sets.size(); i++) {
+                    join.add(i, sets.get(i));
+                }
+                TreeMap<String, Double> actual = new TreeMap<>();
+                long pairs = join.join((id1, id2, similarity) -> {
+                    assertTrue(id1 < id2);
+                    actual.put(id1 + "-" + id2, similarity);
+                });
+                assertEquals(threshold + "/" + depth, expected, actual);
+                assertEquals(expected.size(), pairs);
+                // the filters pruned most of the quadratic number of pairs
+                assertTrue(join.getCandidates() < sets.size() * (sets.size() - 1) / 4);
+            }
+        }
+    }
+
+
+    @Test
+    public void numberSetsTest() {
+        PrefixFilterJoin join = new PrefixFilterJoin(0.5);
+        join.add(1, Arrays.asList(1, 2, 3, 4, 4));
+        join.add(2, Arrays.asList(2, 3, 4, 5));
+        join.add(3, Arrays.asList(6L, 7L, 8L));
+        List<String> pairs = new ArrayList<>();
+        join.join((id1, id2, similarity) -> pairs.add(id1 + "-" + id2 + "=" + similarity));
+        assertEquals(Arrays.asList("1-2=0.6"), pairs);
+    }
+
+
+    private static double jaccard(long[] a, long[] b) {
+        Set<Long> s1 = new HashSet<>();
+        Set<Long> s2 = new HashSet<>();
+        for (long x : a) {
+            s1.add(x);
+        }
+        for (long x : b) {
+            s2.add(x);
+        }
+        Set<Long> union = new HashSet<>(s1);
+        union.addAll(s2);
+        s1.retainAll(s2);
+        return (double) s1.size() / union.size();
+    }
+}
@@ -0,0 +1,61 @@
+package com.edduarte.similarity.metrics;
+
+import com.edduarte.similarity.Similarity;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Eduardo Duarte (<a href="mailto:hi@edduarte.com">hi@edduarte.com</a>)
+ * @version 0.0.2
+ * @since 0.0.2
+ */
+public class RecordingMetricsTest {
+
+    private static final String s1 = "is the of the 100-eyed giant in Greek mythology.";
+
+    private static final String s2 = "is the of the 100-eyed giant in Greek mythology .";
+
+
+    @Test
+    public void lshStagesTest() {
+        RecordingMetrics metrics = new RecordingMetrics();
+        Similarity.LSHFactory s = Similarity.lsh()
+                .withShingleLength(3)
+                .withMetrics(metrics);
+        double sync = s.of(s1, s1);
+        double async = s.ofAsync(s1, s2).join();
+        assertEquals(1.0, sync, 0);
+
+        // two calls, each shingling, signing and banding two strings
+        assertEquals(4, metrics.getHistogram(Stage.SIGNING).getCount());
+        assertEquals(4, metrics.getHistogram(Stage.BANDING).getCount());
+        assertTrue(metrics.getHistogram(Stage.SHINGLING).getCount() >= 4);
+        assertTrue(metrics.getShingleCount() > 0);
+        assertTrue(metrics.getHashEvaluationCount() > 0);
+
+        // identical strings are always candidates
+        long verifications = metrics.getHistogram(Stage.VERIFICATION).getCount();
+        assertEquals(async > 0 ? 2 : 1, verifications);
+        assertEquals(async > 0 ? 1.0 : 0.5, metrics.getCandidateRate(), 0);
+        assertEquals(1.0, metrics.getVerificationRate(), 0);
+    }
+
+
+    @Test
+    public void histogramTest() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1000);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(100_000, h.getMaxNanos());
+        assertEquals(50_500, h.getMeanNanos(), 0);
+
+        // percentiles are reported as the upper bound of their bucket
+        long p50 = h.getPercentileNanos(50);
+        assertTrue(p50 >= 50_000 && p50 < 100_000);
+        assertTrue(h.getPercentileNanos(100) >= 100_000);
+    }
+}